@@ -1,12 +1,17 @@
 package nixchats;
 
+import java.util.OptionalLong;
+
 import nixchats.util.DateFormatter;
+import nixchats.util.StringPool;
 
 /**
  * Represents a deadline task.
  */
 public class DeadlineTask extends Task {
     private final String by;
+    // Worked out once, since date searches and indexes ask for it far more often than tasks are created
+    private final OptionalLong endDay;
 
     /**
      * Constructs a DeadlineTask object.
@@ -18,7 +23,23 @@ public class DeadlineTask extends Task {
         super(description, isDone);
         assert by != null : "Deadline 'by' date cannot be null";
         assert !by.trim().isEmpty() : "Deadline 'by' date cannot be empty";
-        this.by = by;
+        this.by = StringPool.intern(by);
+        this.endDay = DateFormatter.toEpochDay(by);
+    }
+
+    /**
+     * Constructs a DeadlineTask object with a known ID.
+     * @param id Stable ID of the task.
+     * @param description Description of the task.
+     * @param isDone Whether the task is done or not.
+     * @param by Date by which the task must be completed.
+     */
+    public DeadlineTask(long id, String description, boolean isDone, String by) {
+        super(id, description, isDone);
+        assert by != null : "Deadline 'by' date cannot be null";
+        assert !by.trim().isEmpty() : "Deadline 'by' date cannot be empty";
+        this.by = StringPool.intern(by);
+        this.endDay = DateFormatter.toEpochDay(by);
     }
 
     public String getBy() {
@@ -26,6 +47,11 @@ public class DeadlineTask extends Task {
         return by;
     }
 
+    @Override
+    public OptionalLong getEndDay() {
+        return endDay;
+    }
+
     @Override
     public String toString() {
         return "[D]" + super.toString() + " (by: " + DateFormatter.formatDate(by) + ")";
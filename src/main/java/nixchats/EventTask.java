@@ -1,6 +1,9 @@
 package nixchats;
 
+import java.util.OptionalLong;
+
 import nixchats.util.DateFormatter;
+import nixchats.util.StringPool;
 
 /**
  * Represents an event task.
@@ -8,6 +11,8 @@ import nixchats.util.DateFormatter;
 public class EventTask extends Task {
     private final String from;
     private final String to;
+    // Worked out once, since date searches and indexes ask for it far more often than tasks are created
+    private final OptionalLong endDay;
 
     /**
      * Constructs an EventTask object.
@@ -22,8 +27,28 @@ public class EventTask extends Task {
         assert to != null : "Event 'to' date cannot be null";
         assert !from.trim().isEmpty() : "Event 'from' date cannot be empty";
         assert !to.trim().isEmpty() : "Event 'to' date cannot be empty";
-        this.from = from;
-        this.to = to;
+        this.from = StringPool.intern(from);
+        this.to = StringPool.intern(to);
+        this.endDay = DateFormatter.toEpochDay(to);
+    }
+
+    /**
+     * Constructs an EventTask object with a known ID.
+     * @param id Stable ID of the task.
+     * @param description Description of the task.
+     * @param isDone Whether the task is done or not.
+     * @param from Start date of the task.
+     * @param to End date of the task.
+     */
+    public EventTask(long id, String description, boolean isDone, String from, String to) {
+        super(id, description, isDone);
+        assert from != null : "Event 'from' date cannot be null";
+        assert to != null : "Event 'to' date cannot be null";
+        assert !from.trim().isEmpty() : "Event 'from' date cannot be empty";
+        assert !to.trim().isEmpty() : "Event 'to' date cannot be empty";
+        this.from = StringPool.intern(from);
+        this.to = StringPool.intern(to);
+        this.endDay = DateFormatter.toEpochDay(to);
     }
 
     public String getFrom() {
@@ -36,6 +61,11 @@ public class EventTask extends Task {
         return to;
     }
 
+    @Override
+    public OptionalLong getEndDay() {
+        return endDay;
+    }
+
     @Override
     public String toString() {
         return "[E]" + super.toString() + " (from: " + DateFormatter.formatDate(from)
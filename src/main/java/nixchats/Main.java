@@ -1,19 +1,46 @@
 package nixchats;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
+import nixchats.storage.DurabilityMode;
+import nixchats.storage.Storage;
+import nixchats.storage.StorageSettings;
+import nixchats.storage.TaskStorage;
 
 /**
  * A GUI for Duke using FXML.
  */
 public class Main extends Application {
 
-    private NixChats nixchats = new NixChats();
+    private NixChats nixchats = createNixChats();
+
+    /**
+     * Creates a NixChats instance that saves in the background, so the JavaFX thread never waits on disk I/O,
+     * and picks up edits made to the data file while the app is running.
+     * Other storage options come from the settings file; with a journal or a database, each save only writes
+     * the latest changes, so saves stay synchronous and external edits are not picked up.
+     */
+    private static NixChats createNixChats() {
+        try {
+            StorageSettings settings = StorageSettings.load(StorageSettings.DEFAULT_PATH);
+            TaskStorage storage = settings.open(Paths.get("data", "NixChatHistory.txt"));
+            if (storage instanceof Storage fileStorage && !fileStorage.isJournaled()) {
+                fileStorage.enableAsyncSave(DurabilityMode.FSYNC_INTERVAL);
+            }
+            NixChats nixchats = new NixChats(storage);
+            nixchats.watchForExternalEdits(Platform::runLater);
+            return nixchats;
+        } catch (IOException e) {
+            return new NixChats();
+        }
+    }
 
     @Override
     public void start(Stage stage) {
@@ -28,4 +55,9 @@ public class Main extends Application {
             e.printStackTrace();
         }
     }
+
+    @Override
+    public void stop() {
+        nixchats.close();
+    }
 }
@@ -1,11 +1,21 @@
 package nixchats;
 
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Stack;
+import java.util.concurrent.Executor;
+import java.util.stream.Stream;
 
 import nixchats.command.UndoableCommand;
 import nixchats.command.AddTaskCommand;
+import nixchats.command.BatchCommand;
 import nixchats.command.DeleteTaskCommand;
 import nixchats.command.MarkTaskCommand;
 import nixchats.command.UnmarkTaskCommand;
@@ -13,15 +23,24 @@ import nixchats.data.TaskList;
 import nixchats.exception.InputException;
 import nixchats.exception.NixChatsException;
 import nixchats.parser.Parser;
+import nixchats.parser.Query;
+import nixchats.storage.SqlStorage;
 import nixchats.storage.Storage;
+import nixchats.storage.StorageSettings;
+import nixchats.storage.TaskStorage;
+import nixchats.util.DateFormatter;
+import nixchats.util.StringPool;
 
 
 /**
  * Main class for the NixChats chatbot.
  */
 public class NixChats {
+    /** Number of tasks read from the database at a time when listing them. */
+    private static final int LIST_PAGE_SIZE = 500;
+
     private TaskList taskList;
-    private Storage storage;
+    private TaskStorage storage;
     private String lastCommandType = "info";
     private Stack<UndoableCommand> commandHistory = new Stack<>();
 
@@ -31,7 +50,7 @@ public class NixChats {
     public NixChats() {
         try {
             Path filePath = Paths.get("data", "NixChatHistory.txt");
-            storage = new Storage(filePath);
+            storage = StorageSettings.load(StorageSettings.DEFAULT_PATH).open(filePath);
             taskList = storage.load();
         } catch (Exception e) {
             taskList = new TaskList();
@@ -41,6 +60,20 @@ public class NixChats {
         assert storage != null : "Storage should never be null after construction";
     }
 
+    /**
+     * Constructor for a preconfigured storage, e.g. one with journal mode enabled.
+     * @param storage Storage to load tasks from and save them to.
+     */
+    public NixChats(TaskStorage storage) {
+        assert storage != null : "Storage cannot be null";
+        this.storage = storage;
+        try {
+            taskList = storage.load();
+        } catch (NixChatsException e) {
+            taskList = new TaskList(storage.getListBacking(), storage.isConcurrentList());
+        }
+    }
+
     /**
      * Processes user input and returns the chatbot's response.
      * Also sets the lastCommandType for GUI styling.
@@ -78,17 +111,20 @@ public class NixChats {
     /**
      * Processes the given command and updates response.
      */
-    private void processCommand(String command, String line, StringBuilder response) {
+    private void processCommand(String command, String line, StringBuilder response) throws NixChatsException {
         switch (command) {
         case "bye":
             handleByeCommand(response);
             break;
         case "list":
-            handleListCommand(response);
+            handleListCommand(line, response);
             break;
         case "find":
             handleFindCommand(line, response);
             break;
+        case "find~":
+            handleFuzzyFindCommand(line, response);
+            break;
         case "mark":
             handleMarkCommand(line, response);
             break;
@@ -101,6 +137,27 @@ public class NixChats {
         case "undo":
             handleUndoCommand(response);
             break;
+        case "archive":
+            handleArchiveCommand(line, response);
+            break;
+        case "due":
+            handleDueCommand(line, response);
+            break;
+        case "between":
+            handleBetweenCommand(line, response);
+            break;
+        case "overdue":
+            handleOverdueCommand(response);
+            break;
+        case "next":
+            handleNextCommand(line, response);
+            break;
+        case "stats":
+            handleStatsCommand(response);
+            break;
+        case "query":
+            handleQueryCommand(line, response);
+            break;
         default:
             handleAddCommand(line, response);
             break;
@@ -116,22 +173,43 @@ public class NixChats {
     }
 
     /**
-     * Handles the list command.
+     * Handles the list command, optionally restricted to pending or done tasks.
      */
-    private void handleListCommand(StringBuilder response) {
+    private void handleListCommand(String line, StringBuilder response) throws NixChatsException {
         lastCommandType = "list";
-        response.append("Here are the tasks in your list:\n");
-        if (taskList.isEmpty()) {
-            response.append("No tasks found.");
-        } else {
-            response.append(getTaskListString());
+        String filter = Parser.getKeyword(line).toLowerCase();
+        if (filter.isEmpty()) {
+            response.append("Here are the tasks in your list:\n");
+            if (taskList.isEmpty()) {
+                response.append("No tasks found.");
+            } else {
+                response.append(getTaskListString());
+            }
+            return;
+        }
+        if (!filter.equals("pending") && !filter.equals("done")) {
+            response.append("Please use \"list\", \"list pending\" or \"list done\".");
+            lastCommandType = "error";
+            return;
+        }
+        boolean isDone = filter.equals("done");
+        int count = isDone ? taskList.countDone() : taskList.countPending();
+        response.append("You have ").append(count).append(" ").append(filter).append(" task(s)");
+        if (count == 0) {
+            response.append(".");
+            return;
+        }
+        response.append(":");
+        BitSet mask = taskList.getStatusMask(isDone);
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            response.append("\n").append(i + 1).append(".").append(taskList.getTask(i));
         }
     }
 
     /**
      * Handles the find command.
      */
-    private void handleFindCommand(String line, StringBuilder response) {
+    private void handleFindCommand(String line, StringBuilder response) throws NixChatsException {
         lastCommandType = "find";
         String keyword = Parser.getKeyword(line);
         if (keyword.isEmpty()) {
@@ -141,12 +219,112 @@ public class NixChats {
         }
     }
 
+    /**
+     * Handles the find~ command, which tolerates typos in the search term.
+     */
+    private void handleFuzzyFindCommand(String line, StringBuilder response) {
+        lastCommandType = "find";
+        try {
+            String term = Parser.parseFuzzyTerm(line);
+            int maxEdits = Parser.parseMaxEdits(line);
+            response.append(getDatedTasksString("Here are the tasks with words like \"" + term + "\"",
+                    taskList.findSimilarTasks(term, maxEdits)));
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
+    /**
+     * Handles the due command.
+     */
+    private void handleDueCommand(String line, StringBuilder response) {
+        lastCommandType = "find";
+        try {
+            long day = Parser.parseDueDay(line);
+            response.append(getDatedTasksString("Here are the tasks due by " + DateFormatter.fromEpochDay(day),
+                    taskList.findPendingTasksDueBy(day)));
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
+    /**
+     * Handles the between command.
+     */
+    private void handleBetweenCommand(String line, StringBuilder response) {
+        lastCommandType = "find";
+        try {
+            long[] days = Parser.parseDayRange(line);
+            response.append(getDatedTasksString("Here are the tasks ending between "
+                    + DateFormatter.fromEpochDay(days[0]) + " and " + DateFormatter.fromEpochDay(days[1]),
+                    taskList.findTasksBetween(days[0], days[1])));
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
+    /**
+     * Handles the overdue command.
+     */
+    private void handleOverdueCommand(StringBuilder response) {
+        lastCommandType = "find";
+        long yesterday = LocalDate.now().toEpochDay() - 1;
+        response.append(getDatedTasksString("Here are your overdue tasks",
+                taskList.findPendingTasksDueBy(yesterday)));
+    }
+
+    /**
+     * Handles the next command, which lists the pending tasks that end soonest.
+     */
+    private void handleNextCommand(String line, StringBuilder response) {
+        lastCommandType = "find";
+        try {
+            int k = Parser.parseNextCount(line);
+            response.append(getDatedTasksString("Here are your upcoming tasks", taskList.findNextTasks(k)));
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
+    /**
+     * Handles the query command, e.g. "query type:D done:false due<2026-12-01 sort:due limit:20".
+     */
+    private void handleQueryCommand(String line, StringBuilder response) {
+        lastCommandType = "find";
+        try {
+            Query query = Query.parse(Parser.getKeyword(line));
+            response.append(getDatedTasksString("Here are the tasks matching your query", taskList.query(query)));
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
+    /**
+     * Handles the stats command.
+     */
+    private void handleStatsCommand(StringBuilder response) {
+        lastCommandType = "list";
+        response.append(String.format("You have %d task(s): %d pending, %d done.%n",
+                taskList.size(), taskList.countPending(), taskList.countDone()));
+        response.append(String.format("Shared text: %.1f%% hit rate over %d lookup(s).",
+                StringPool.getHitRate() * 100, StringPool.getLookupCount()));
+    }
+
     /**
      * Handles the mark command.
      */
     private void handleMarkCommand(String line, StringBuilder response) {
         lastCommandType = "mark";
         try {
+            if (Parser.isBulkSelection(line)) {
+                handleBulkCommand("mark", line, response);
+                return;
+            }
             int idx = Parser.parseTaskIndex(line, taskList.size());
             MarkTaskCommand command = new MarkTaskCommand(taskList, idx);
             command.execute();
@@ -165,6 +343,10 @@ public class NixChats {
     private void handleUnmarkCommand(String line, StringBuilder response) {
         lastCommandType = "unmark";
         try {
+            if (Parser.isBulkSelection(line)) {
+                handleBulkCommand("unmark", line, response);
+                return;
+            }
             int idx = Parser.parseTaskIndex(line, taskList.size());
             UnmarkTaskCommand command = new UnmarkTaskCommand(taskList, idx);
             command.execute();
@@ -183,6 +365,10 @@ public class NixChats {
     private void handleDeleteCommand(String line, StringBuilder response) {
         lastCommandType = "delete";
         try {
+            if (Parser.isBulkSelection(line)) {
+                handleBulkCommand("delete", line, response);
+                return;
+            }
             int idx = Parser.parseTaskIndex(line, taskList.size());
             Task deletedTask = taskList.getTask(idx);
             DeleteTaskCommand command = new DeleteTaskCommand(taskList, idx);
@@ -195,6 +381,52 @@ public class NixChats {
         }
     }
 
+    /**
+     * Handles a mark, unmark or delete command that selects several tasks, e.g. "mark 1,4,7-30" or
+     * "delete where \"report\"", as one batch that a single undo reverts.
+     */
+    private void handleBulkCommand(String command, String line, StringBuilder response) {
+        Optional<String> keyword = Parser.parseWhereKeyword(line);
+        BitSet selection = keyword.isPresent()
+                ? taskList.getKeywordMask(keyword.get())
+                : Parser.parseTaskSelection(line, taskList.size());
+        if (selection.isEmpty()) {
+            assert keyword.isPresent() : "Task numbers always select at least one task";
+            response.append("No tasks match \"").append(keyword.get()).append("\".");
+            return;
+        }
+        List<Task> selectedTasks = taskList.getTasks(selection);
+        List<UndoableCommand> commands = new ArrayList<>();
+        if (command.equals("delete")) {
+            // Back to front, so deleting a task never shifts the tasks still to be deleted
+            for (int i = selection.length() - 1; i >= 0; i = selection.previousSetBit(i - 1)) {
+                commands.add(new DeleteTaskCommand(taskList, i, false));
+            }
+        } else {
+            for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+                commands.add(command.equals("mark")
+                        ? new MarkTaskCommand(taskList, i, false)
+                        : new UnmarkTaskCommand(taskList, i, false));
+            }
+        }
+        BatchCommand batch = new BatchCommand(commands, command + " " + commands.size() + " task(s)");
+        batch.execute();
+        commandHistory.push(batch);
+
+        if (command.equals("delete")) {
+            response.append("Got it, deleted ").append(commands.size()).append(" task(s):");
+        } else {
+            // Tasks of a columnar or off-heap list are views, so fetch them again to show their new status
+            selectedTasks = taskList.getTasks(selection);
+            response.append(command.equals("mark")
+                    ? "Nice! I've marked these " + commands.size() + " task(s) as done:"
+                    : "OK, I've marked these " + commands.size() + " task(s) as not done yet:");
+        }
+        for (Task task : selectedTasks) {
+            response.append("\n  ").append(task);
+        }
+    }
+
     /**
      * Handles adding a new task.
      */
@@ -212,6 +444,30 @@ public class NixChats {
         }
     }
 
+    /**
+     * Handles the archive command.
+     */
+    private void handleArchiveCommand(String line, StringBuilder response) throws NixChatsException {
+        lastCommandType = "archive";
+        try {
+            OptionalInt minAgeDays = Parser.parseArchiveAge(line);
+            int count = minAgeDays.isPresent()
+                    ? storage.archive(taskList, minAgeDays.getAsInt())
+                    : storage.archive(taskList);
+            if (count == 0) {
+                response.append("No completed tasks to archive.");
+                return;
+            }
+            // Archiving shifts task numbers, so earlier commands can no longer be undone
+            commandHistory.clear();
+            response.append("Archived ").append(count).append(" completed task(s). ")
+                    .append("Use \"find\" to search them.");
+        } catch (IllegalArgumentException e) {
+            response.append(e.getMessage());
+            lastCommandType = "error";
+        }
+    }
+
     /**
      * Handles the undo command.
      */
@@ -230,7 +486,10 @@ public class NixChats {
      * Saves the task list if the command modified data.
      */
     private void saveIfModified(String command) throws NixChatsException {
-        boolean isReadOnlyCommand = command.equals("list") || command.equals("find") || command.equals("bye");
+        boolean isReadOnlyCommand = command.equals("list") || command.equals("find") || command.equals("bye")
+                || command.equals("find~") || command.equals("due") || command.equals("between")
+                || command.equals("overdue") || command.equals("next") || command.equals("stats")
+                || command.equals("query");
         // Note: undo commands modify data but we still want to save the new state
         if (!isReadOnlyCommand) {
             assert storage != null : "Storage should be available for saving";
@@ -239,6 +498,34 @@ public class NixChats {
         }
     }
 
+    /**
+     * Applies changes that other programs make to the data file while NixChats is running.
+     * Task numbers may change, so the undo history is cleared whenever a change is applied.
+     * Does nothing unless the tasks are kept in a text history file without a journal.
+     * @param executor Executor that runs commands, so changes never race with them.
+     */
+    public void watchForExternalEdits(Executor executor) {
+        if (!(storage instanceof Storage fileStorage) || !fileStorage.isWatchable()) {
+            return;
+        }
+        try {
+            fileStorage.watch(taskList, executor, commandHistory::clear);
+        } catch (NixChatsException e) {
+            System.err.println("Warning: External edits will not be picked up: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes any pending changes and releases the storage.
+     */
+    public void close() {
+        try {
+            storage.close();
+        } catch (NixChatsException e) {
+            System.err.println("Error saving data: " + e.getMessage());
+        }
+    }
+
     /**
      * Returns the type of the last executed command for GUI styling.
      */
@@ -249,10 +536,24 @@ public class NixChats {
 
     /**
      * Helper method to get task list as string.
+     * Tasks kept in a database are read from it a page at a time.
      */
-    private String getTaskListString() {
+    private String getTaskListString() throws NixChatsException {
         assert taskList != null : "TaskList should not be null";
-        
+        if (storage instanceof SqlStorage database && database.isTracking(taskList)) {
+            StringBuilder sb = new StringBuilder();
+            List<Task> page;
+            int offset = 0;
+            do {
+                page = database.listTasks(offset, LIST_PAGE_SIZE);
+                for (Task t : page) {
+                    sb.append(offset == 0 ? "" : "\n").append(t);
+                    offset++;
+                }
+            } while (page.size() == LIST_PAGE_SIZE);
+            return sb.toString();
+        }
+
         return java.util.stream.IntStream.range(0, taskList.size())
                 .mapToObj(i -> taskList.getTask(i).toString())
                 .collect(java.util.stream.Collectors.joining("\n"));
@@ -261,15 +562,26 @@ public class NixChats {
     /**
      * Helper method to get find results as string.
      */
-    private String getFindResultsString(String keyword) {
-        java.util.List<Task> matchingTasks = taskList.findTasks(keyword);
+    private String getFindResultsString(String keyword) throws NixChatsException {
+        // The database answers from its trigram index
+        java.util.List<Task> matchingTasks = storage instanceof SqlStorage database && database.isTracking(taskList)
+                ? database.findTasks(keyword, 0, Integer.MAX_VALUE)
+                : taskList.findTasks(keyword);
+        java.util.List<Task> archivedTasks;
+        try (Stream<Task> archived = storage.findArchived(keyword)) {
+            archivedTasks = archived.collect(java.util.stream.Collectors.toList());
+        } catch (UncheckedIOException e) {
+            throw new NixChatsException("Failed to load tasks.", e.getCause());
+        }
 
-        if (matchingTasks.isEmpty()) {
+        if (matchingTasks.isEmpty() && archivedTasks.isEmpty()) {
             return "No matching tasks found.";
         }
 
         StringBuilder sb = new StringBuilder();
-        sb.append("Here are the matching tasks in your list:\n");
+        if (!matchingTasks.isEmpty()) {
+            sb.append("Here are the matching tasks in your list:\n");
+        }
         
         for (int i = 0; i < matchingTasks.size(); i++) {
             if (i > 0) {
@@ -278,6 +590,28 @@ public class NixChats {
             sb.append((i + 1)).append(".").append(matchingTasks.get(i).toString());
         }
 
+        if (!archivedTasks.isEmpty()) {
+            if (!matchingTasks.isEmpty()) {
+                sb.append("\n");
+            }
+            sb.append("Matching archived tasks:");
+            archivedTasks.forEach(t -> sb.append("\n  ").append(t));
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Helper method to get dated tasks, in date order, as string.
+     */
+    private String getDatedTasksString(String header, java.util.List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return "No matching tasks found.";
+        }
+        StringBuilder sb = new StringBuilder(header).append(":");
+        for (int i = 0; i < tasks.size(); i++) {
+            sb.append("\n").append(i + 1).append(".").append(tasks.get(i));
+        }
         return sb.toString();
     }
 
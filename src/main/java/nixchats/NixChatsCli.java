@@ -3,14 +3,21 @@ package nixchats;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.OptionalInt;
 import java.util.Scanner;
 
 import nixchats.data.TaskList;
 import nixchats.exception.InputException;
 import nixchats.exception.NixChatsException;
 import nixchats.parser.Parser;
-import nixchats.storage.Storage;
+import nixchats.parser.Query;
+import nixchats.storage.StorageSettings;
+import nixchats.storage.TaskStorage;
 import nixchats.ui.TextUi;
+import nixchats.util.StringPool;
 
 /**
  * CLI interface for NixChats.
@@ -25,7 +32,7 @@ public class NixChatsCli {
     public static void chat() throws NixChatsException, IOException {
         Scanner sc = new Scanner(System.in);
         Path filePath = Paths.get("data", "NixChatHistory.txt");
-        Storage storage = new Storage(filePath);
+        TaskStorage storage = StorageSettings.load(StorageSettings.DEFAULT_PATH).open(filePath);
         TaskList list = storage.load();
 
         if (list.isEmpty()) {
@@ -46,6 +53,14 @@ public class NixChatsCli {
                     break;
                 case "list":
                     printWithDivider(() -> {
+                        String filter = Parser.getKeyword(line).toLowerCase();
+                        if (filter.equals("pending") || filter.equals("done")) {
+                            boolean isDone = filter.equals("done");
+                            System.out.println("You have " + (isDone ? list.countDone() : list.countPending())
+                                    + " " + filter + " task(s).");
+                            list.getTasks(list.getStatusMask(isDone)).forEach(System.out::println);
+                            return;
+                        }
                         System.out.println("Here are the tasks in your list:");
                         list.printTasks();
                     });
@@ -60,22 +75,78 @@ public class NixChatsCli {
                         }
                     });
                     continue;
+                case "find~":
+                    printWithDivider(() -> list.findSimilarTasks(Parser.parseFuzzyTerm(line),
+                            Parser.parseMaxEdits(line)).forEach(System.out::println));
+                    continue;
                 case "mark":
                     printWithDivider(() -> {
-                        int idx = Parser.parseTaskIndex(line, list.size());
-                        list.getTask(idx).markAsDone();
+                        BitSet selection = selectTasks(list, line);
+                        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+                            list.markTask(i);
+                        }
                     });
                     continue;
                 case "unmark":
                     printWithDivider(() -> {
-                        int idx = Parser.parseTaskIndex(line, list.size());
-                        list.getTask(idx).unmarkAsNotDone();
+                        BitSet selection = selectTasks(list, line);
+                        for (int i = selection.nextSetBit(0); i >= 0; i = selection.nextSetBit(i + 1)) {
+                            list.unmarkTask(i);
+                        }
+                    });
+                    continue;
+                case "archive":
+                    printWithDivider(() -> {
+                        try {
+                            OptionalInt minAgeDays = Parser.parseArchiveAge(line);
+                            int count = minAgeDays.isPresent()
+                                    ? storage.archive(list, minAgeDays.getAsInt())
+                                    : storage.archive(list);
+                            System.out.println("Archived " + count + " completed task(s).");
+                        } catch (NixChatsException e) {
+                            System.out.println(e.getMessage());
+                        }
+                    });
+                    continue;
+                case "due":
+                    printWithDivider(() -> {
+                        long day = Parser.parseDueDay(line);
+                        list.findPendingTasksDueBy(day).forEach(System.out::println);
+                    });
+                    continue;
+                case "between":
+                    printWithDivider(() -> {
+                        long[] days = Parser.parseDayRange(line);
+                        list.findTasksBetween(days[0], days[1]).forEach(System.out::println);
+                    });
+                    continue;
+                case "overdue":
+                    printWithDivider(() -> list.findPendingTasksDueBy(LocalDate.now().toEpochDay() - 1)
+                            .forEach(System.out::println));
+                    continue;
+                case "next":
+                    printWithDivider(() -> list.findNextTasks(Parser.parseNextCount(line))
+                            .forEach(System.out::println));
+                    continue;
+                case "query":
+                    printWithDivider(() -> list.query(Query.parse(Parser.getKeyword(line)))
+                            .forEach(System.out::println));
+                    continue;
+                case "stats":
+                    printWithDivider(() -> {
+                        System.out.println("You have " + list.size() + " task(s): " + list.countPending()
+                                + " pending, " + list.countDone() + " done.");
+                        System.out.printf("Shared text: %.1f%% hit rate over %d lookup(s).%n",
+                                StringPool.getHitRate() * 100, StringPool.getLookupCount());
                     });
                     continue;
                 case "delete":
                     printWithDivider(() -> {
-                        int idx = Parser.parseTaskIndex(line, list.size());
-                        list.deleteTask(idx);
+                        BitSet selection = selectTasks(list, line);
+                        // Back to front, so deleting a task never shifts the tasks still to be deleted
+                        for (int i = selection.length() - 1; i >= 0; i = selection.previousSetBit(i - 1)) {
+                            list.deleteTask(i);
+                        }
                     });
                     continue;
                 default:
@@ -99,9 +170,25 @@ public class NixChatsCli {
             }
         }
         storage.save(list);
+        storage.close();
         sc.close();
     }
 
+    /**
+     * Returns the indexes selected by a command like "mark 2", "mark 1,4,7-30" or "mark where \"report\"".
+     */
+    private static BitSet selectTasks(TaskList list, String line) {
+        if (!Parser.isBulkSelection(line)) {
+            BitSet selection = new BitSet();
+            selection.set(Parser.parseTaskIndex(line, list.size()));
+            return selection;
+        }
+        Optional<String> keyword = Parser.parseWhereKeyword(line);
+        return keyword.isPresent()
+                ? list.getKeywordMask(keyword.get())
+                : Parser.parseTaskSelection(line, list.size());
+    }
+
     /**
      * Executes the given action and wraps the output with dividers.
      */
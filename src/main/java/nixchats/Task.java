@@ -1,22 +1,57 @@
 package nixchats;
 
+import java.util.OptionalLong;
+import java.util.concurrent.atomic.AtomicLong;
+
+import nixchats.util.StringPool;
+
 /**
  * Represents a task.
  */
 public abstract class Task {
+    // Next ID to hand out, always above every ID seen so far, including those read back from storage
+    private static final AtomicLong nextId = new AtomicLong(1);
+
     private final String description;
     private boolean isDone;
+    private long id;
 
     /**
-     * Constructs a Task object.
+     * Constructs a Task object with a new ID.
      * @param description Description of the task.
      * @param isDone Whether the task is done or not.
      */
     public Task(String description, boolean isDone) {
+        this(nextId.getAndIncrement(), description, isDone);
+    }
+
+    /**
+     * Constructs a Task object with a known ID, e.g. one read back from storage.
+     * @param id Stable ID of the task.
+     * @param description Description of the task.
+     * @param isDone Whether the task is done or not.
+     */
+    public Task(long id, String description, boolean isDone) {
         assert description != null : "Task description cannot be null";
         assert !description.trim().isEmpty() : "Task description cannot be empty";
-        this.description = description;
+        this.description = StringPool.intern(description);
         this.isDone = isDone;
+        this.id = id;
+        nextId.accumulateAndGet(id + 1, Math::max);
+    }
+
+    /**
+     * Returns the ID of the task, which stays the same as the task moves around its list and is saved with it.
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Gives the task a new ID, e.g. because a hand-edited file repeats the ID of another task in its list.
+     */
+    public void assignNewId() {
+        id = nextId.getAndIncrement();
     }
 
     public String getStatusIcon() {
@@ -41,6 +76,14 @@ public abstract class Task {
         System.out.println("  " + this.toString());
     }
 
+    /**
+     * Sets the completion status without printing a confirmation.
+     * @param isDone Whether the task is done or not.
+     */
+    public void setDone(boolean isDone) {
+        this.isDone = isDone;
+    }
+
     public String getDescription() {
         assert description != null : "Description should never be null after construction";
         return description;
@@ -50,6 +93,14 @@ public abstract class Task {
         return isDone;
     }
 
+    /**
+     * Returns the epoch day on which the task ends, i.e. the deadline or the last day of the event.
+     * @return The epoch day, or empty if the task has no date or its date cannot be parsed.
+     */
+    public OptionalLong getEndDay() {
+        return OptionalLong.empty();
+    }
+
     @Override
     public String toString() {
         return "[" + getStatusIcon() + "] " + description;
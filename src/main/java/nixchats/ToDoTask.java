@@ -8,6 +8,10 @@ public class ToDoTask extends Task {
         super(description, isDone);
     }
 
+    public ToDoTask(long id, String description, boolean isDone) {
+        super(id, description, isDone);
+    }
+
     @Override
     public String toString() {
         return "[T]" + super.toString();
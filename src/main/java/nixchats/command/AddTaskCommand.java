@@ -22,10 +22,10 @@ public class AddTaskCommand implements UndoableCommand {
 
     @Override
     public void undo() {
-        // Remove the last added task (which should be this task)
-        int lastIndex = taskList.size() - 1;
-        if (lastIndex >= 0 && taskList.getTask(lastIndex).equals(task)) {
-            taskList.deleteTask(lastIndex, false); // false = don't print message
+        // Found by ID, so tasks added or deleted since do not matter
+        int index = taskList.indexOf(task.getId());
+        if (index >= 0) {
+            taskList.deleteTask(index, false); // false = don't print message
         }
     }
 
@@ -0,0 +1,39 @@
+package nixchats.command;
+
+import java.util.List;
+
+/**
+ * Command that runs several commands as one, e.g. for "mark 1,4,7-30", so a single undo reverts them all.
+ */
+public class BatchCommand implements UndoableCommand {
+    private final List<UndoableCommand> commands;
+    private final String description;
+
+    /**
+     * Constructs a batch of the given commands.
+     * @param commands Commands in the order to execute them; they are undone in reverse order.
+     * @param description Description of the whole batch, e.g. "mark 3 tasks".
+     */
+    public BatchCommand(List<UndoableCommand> commands, String description) {
+        assert commands != null && !commands.isEmpty() : "Batch must contain at least one command";
+        this.commands = List.copyOf(commands);
+        this.description = description;
+    }
+
+    @Override
+    public void execute() {
+        commands.forEach(UndoableCommand::execute);
+    }
+
+    @Override
+    public void undo() {
+        for (int i = commands.size() - 1; i >= 0; i--) {
+            commands.get(i).undo();
+        }
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+}
@@ -9,25 +9,43 @@ import nixchats.data.TaskList;
 public class DeleteTaskCommand implements UndoableCommand {
     private final TaskList taskList;
     private final int index;
+    private final boolean showMessage;
     private Task deletedTask;
+    private Task nextTask;
 
     public DeleteTaskCommand(TaskList taskList, int index) {
+        this(taskList, index, true);
+    }
+
+    /**
+     * Constructs a command to delete the task at the given index.
+     * @param showMessage Whether to print a confirmation message, e.g. false when part of a batch.
+     */
+    public DeleteTaskCommand(TaskList taskList, int index, boolean showMessage) {
         this.taskList = taskList;
         this.index = index;
+        this.showMessage = showMessage;
     }
 
     @Override
     public void execute() {
-        // Save the task before deleting so we can restore it
+        // Save the task and its successor before deleting so we can restore it in place
         deletedTask = taskList.getTask(index);
-        taskList.deleteTask(index, true); // Show deletion message
+        nextTask = index + 1 < taskList.size() ? taskList.getTask(index + 1) : null;
+        taskList.deleteTask(index, showMessage);
     }
 
     @Override
     public void undo() {
-        if (deletedTask != null) {
-            // Insert the task back at its original position
-            taskList.insertTask(index, deletedTask);
+        if (deletedTask == null) {
+            return;
+        }
+        // Insert the task back in front of its old successor, wherever that has moved since
+        int nextIndex = nextTask == null ? -1 : taskList.indexOf(nextTask.getId());
+        if (nextIndex >= 0) {
+            taskList.insertTask(nextIndex, deletedTask);
+        } else {
+            taskList.insertTask(Math.min(index, taskList.size()), deletedTask);
         }
     }
 
@@ -5,36 +5,59 @@ import nixchats.data.TaskList;
 
 /**
  * Command to unmark a task that can be undone.
+ * The task is remembered by its ID, so undo finds it even after other tasks were added or deleted.
  */
 public class UnmarkTaskCommand implements UndoableCommand {
     private final TaskList taskList;
-    private final int index;
+    private final Task task;
+    private final boolean showMessage;
     private boolean isPreviousState;
 
     public UnmarkTaskCommand(TaskList taskList, int index) {
+        this(taskList, index, true);
+    }
+
+    /**
+     * Constructs a command for the task at the given index.
+     * @param showMessage Whether to print a confirmation message, e.g. false when part of a batch.
+     */
+    public UnmarkTaskCommand(TaskList taskList, int index, boolean showMessage) {
         this.taskList = taskList;
-        this.index = index;
+        this.task = taskList.getTask(index);
+        this.showMessage = showMessage;
     }
 
     @Override
     public void execute() {
-        Task task = taskList.getTask(index);
         isPreviousState = task.isDone(); // Save the previous state
-        task.unmarkAsNotDone();
+        int index = taskList.indexOf(task.getId());
+        if (index < 0) {
+            return;
+        }
+        if (showMessage) {
+            taskList.unmarkTask(index);
+        } else {
+            taskList.setTaskDone(index, false);
+        }
     }
 
     @Override
     public void undo() {
-        Task task = taskList.getTask(index);
-        if (isPreviousState) {
-            task.markAsDone();
+        int index = taskList.indexOf(task.getId());
+        if (index < 0) {
+            return;
+        }
+        if (!showMessage) {
+            taskList.setTaskDone(index, isPreviousState);
+        } else if (isPreviousState) {
+            taskList.markTask(index);
         } else {
-            task.unmarkAsNotDone();
+            taskList.unmarkTask(index);
         }
     }
 
     @Override
     public String getDescription() {
-        return "unmark task: " + taskList.getTask(index).getDescription();
+        return "unmark task: " + task.getDescription();
     }
 }
@@ -0,0 +1,396 @@
+package nixchats.data;
+
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.OptionalLong;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.ToDoTask;
+import nixchats.util.DateFormatter;
+
+/**
+ * List of tasks stored column by column instead of as one object per task: a type byte, a done bit,
+ * the ID, the dates as epoch days and the offset of the description in one shared UTF-8 buffer.
+ * A task costs about 40 bytes plus its description, and searches scan the columns without touching
+ * any objects.
+ * <p>
+ * {@link #get(int)} creates a new {@link Task} view of the row on every call. Views of the same row are
+ * different objects, and changing a view does not change the row; use {@link #set(int, Task)} or
+ * {@link #setDone(int, boolean)} instead. Inserting or deleting a row shifts the columns above it,
+ * like an array list.
+ */
+class ColumnarTaskStore extends AbstractList<Task> implements TaskRowStore {
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    /** Flag for rows whose dates are not in the stored format and are kept as text after the description. */
+    private static final byte TEXT_DATES = 4;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private long[] ids = new long[INITIAL_CAPACITY];
+    // Epoch days, or for rows with TEXT_DATES the encoded lengths of the date texts
+    private int[] firstDays = new int[INITIAL_CAPACITY];
+    private int[] secondDays = new int[INITIAL_CAPACITY];
+    private int[] textStarts = new int[INITIAL_CAPACITY];
+    private int[] descriptionLengths = new int[INITIAL_CAPACITY];
+    private StatusIndex done = new StatusIndex();
+    private final RowIdIndex rowIds = new RowIdIndex(i -> ids[i]);
+    private byte[] text = new byte[INITIAL_CAPACITY * 16];
+    private int textLength;
+    private int garbageLength;
+    private int size;
+
+    ColumnarTaskStore() {
+    }
+
+    /**
+     * Constructs a store holding the given tasks, copying the columns if they are another store.
+     * @param tasks Tasks in list order.
+     */
+    ColumnarTaskStore(Collection<? extends Task> tasks) {
+        this();
+        if (tasks instanceof ColumnarTaskStore other) {
+            copyColumns(other);
+        } else {
+            tasks.forEach(this::add);
+        }
+    }
+
+    private void copyColumns(ColumnarTaskStore other) {
+        int capacity = Math.max(INITIAL_CAPACITY, other.size);
+        types = Arrays.copyOf(other.types, capacity);
+        ids = Arrays.copyOf(other.ids, capacity);
+        firstDays = Arrays.copyOf(other.firstDays, capacity);
+        secondDays = Arrays.copyOf(other.secondDays, capacity);
+        textStarts = Arrays.copyOf(other.textStarts, capacity);
+        descriptionLengths = Arrays.copyOf(other.descriptionLengths, capacity);
+        text = Arrays.copyOf(other.text, other.text.length);
+        textLength = other.textLength;
+        garbageLength = other.garbageLength;
+        for (int i = 0; i < other.size; i++) {
+            done.inserted(i, other.done.isDone(i));
+        }
+        size = other.size;
+        for (int i = 0; i < size; i++) {
+            rowIds.inserted(i, ids[i]);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        long id = ids[index];
+        String description = decode(textStarts[index], descriptionLengths[index]);
+        boolean isDone = done.isDone(index);
+        switch (types[index] & ~TEXT_DATES) {
+        case DEADLINE:
+            return new DeadlineTask(id, description, isDone, firstDate(index));
+        case EVENT:
+            return new EventTask(id, description, isDone, firstDate(index), secondDate(index));
+        default:
+            return new ToDoTask(id, description, isDone);
+        }
+    }
+
+    @Override
+    public Task set(int index, Task task) {
+        Task previous = get(index);
+        long oldId = ids[index];
+        garbageLength += rowTextLength(index);
+        writeRow(index, task);
+        rowIds.replaced(index, oldId, task.getId());
+        done.set(index, task.isDone());
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        checkIndex(index, size + 1);
+        assert task != null : "Task cannot be null";
+        if (size == types.length) {
+            grow();
+        }
+        shift(index, index + 1, size - index);
+        size++;
+        writeRow(index, task);
+        rowIds.inserted(index, task.getId());
+        done.inserted(index, task.isDone());
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task removed = get(index);
+        long id = ids[index];
+        garbageLength += rowTextLength(index);
+        shift(index + 1, index, size - index - 1);
+        size--;
+        rowIds.removed(index, id);
+        done.deleted(index);
+        modCount++;
+        if (garbageLength > INITIAL_CAPACITY * 16 && garbageLength > textLength / 2) {
+            compactText();
+        }
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        textLength = 0;
+        garbageLength = 0;
+        done = new StatusIndex();
+        rowIds.clear();
+        modCount++;
+    }
+
+    @Override
+    public boolean isDone(int index) {
+        checkIndex(index, size);
+        return done.isDone(index);
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        checkIndex(index, size);
+        done.set(index, isDone);
+    }
+
+    @Override
+    public boolean containsId(long id) {
+        return rowIds.contains(id);
+    }
+
+    /**
+     * Returns the row of the task with the given ID, or -1 if there is none.
+     */
+    @Override
+    public int indexOfId(long id) {
+        return rowIds.indexOf(id);
+    }
+
+    /**
+     * Returns the rows whose description contains the case-folded keyword.
+     * Descriptions that are all ASCII are compared in place; others are decoded and folded like
+     * {@link String#toLowerCase()}.
+     * @param folded Keyword in lower case.
+     */
+    @Override
+    public BitSet findRows(String folded) {
+        BitSet rows = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            if (containsFolded(textStarts[i], descriptionLengths[i], folded)) {
+                rows.set(i);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Returns the rows of tasks ending within the given days, sorted by date and then by row.
+     * @param firstDay First epoch day, inclusive.
+     * @param lastDay Last epoch day, inclusive.
+     * @param isPendingOnly Whether to skip done tasks.
+     */
+    @Override
+    public int[] findRowsEndingBetween(long firstDay, long lastDay, boolean isPendingOnly) {
+        long[] keys = new long[16];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            if (isPendingOnly && done.isDone(i)) {
+                continue;
+            }
+            OptionalLong day = endDay(i);
+            if (day.isPresent() && day.getAsLong() >= firstDay && day.getAsLong() <= lastDay) {
+                if (count == keys.length) {
+                    keys = Arrays.copyOf(keys, count * 2);
+                }
+                // Epoch days fit in an int, so the day in the high half sorts before the row in the low half
+                keys[count++] = day.getAsLong() << 32 | i;
+            }
+        }
+        Arrays.sort(keys, 0, count);
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    private OptionalLong endDay(int index) {
+        byte type = types[index];
+        if ((type & TEXT_DATES) != 0) {
+            // Rare rows with dates that are not in the stored format
+            return DateFormatter.toEpochDay(type == (EVENT | TEXT_DATES) ? secondDate(index) : firstDate(index));
+        }
+        if (type == DEADLINE) {
+            return OptionalLong.of(firstDays[index]);
+        }
+        if (type == EVENT) {
+            return OptionalLong.of(secondDays[index]);
+        }
+        return OptionalLong.empty();
+    }
+
+    private boolean containsFolded(int start, int length, String folded) {
+        int last = start + length - folded.length();
+        for (int i = start; i < start + length; i++) {
+            if (text[i] < 0) {
+                return decode(start, length).toLowerCase().contains(folded);
+            }
+        }
+        for (int i = start; i <= last; i++) {
+            int j = 0;
+            while (j < folded.length() && toLowerAscii(text[i + j]) == folded.charAt(j)) {
+                j++;
+            }
+            if (j == folded.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char toLowerAscii(byte b) {
+        return (char) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+    }
+
+    private void writeRow(int index, Task task) {
+        String first = null;
+        String second = null;
+        byte type = TODO;
+        if (task instanceof DeadlineTask d) {
+            type = DEADLINE;
+            first = d.getBy();
+        } else if (task instanceof EventTask e) {
+            type = EVENT;
+            first = e.getFrom();
+            second = e.getTo();
+        }
+        int firstDay = toStoredDay(first);
+        int secondDay = toStoredDay(second);
+        boolean isText = firstDay == Integer.MIN_VALUE || secondDay == Integer.MIN_VALUE;
+        String description = task.getDescription();
+
+        textStarts[index] = textLength;
+        descriptionLengths[index] = appendText(description);
+        if (isText) {
+            type |= TEXT_DATES;
+            firstDay = appendText(first);
+            secondDay = appendText(second);
+        }
+        types[index] = type;
+        firstDays[index] = firstDay;
+        secondDays[index] = secondDay;
+        ids[index] = task.getId();
+    }
+
+    /**
+     * Returns the epoch day of a date in the stored format, 0 for no date, or Integer.MIN_VALUE for
+     * a date that would not be written back the same way and so has to be kept as text.
+     */
+    private static int toStoredDay(String date) {
+        if (date == null) {
+            return 0;
+        }
+        OptionalLong day = DateFormatter.toEpochDay(date);
+        if (day.isEmpty() || !DateFormatter.fromEpochDay(day.getAsLong()).equals(date)) {
+            return Integer.MIN_VALUE;
+        }
+        return (int) day.getAsLong();
+    }
+
+    private String firstDate(int index) {
+        if ((types[index] & TEXT_DATES) != 0) {
+            return decode(textStarts[index] + descriptionLengths[index], firstDays[index]);
+        }
+        return DateFormatter.fromEpochDay(firstDays[index]);
+    }
+
+    private String secondDate(int index) {
+        if ((types[index] & TEXT_DATES) != 0) {
+            int start = textStarts[index] + descriptionLengths[index] + firstDays[index];
+            return decode(start, secondDays[index]);
+        }
+        return DateFormatter.fromEpochDay(secondDays[index]);
+    }
+
+    private int rowTextLength(int index) {
+        boolean isText = (types[index] & TEXT_DATES) != 0;
+        return descriptionLengths[index] + (isText ? firstDays[index] + secondDays[index] : 0);
+    }
+
+    private String decode(int start, int length) {
+        return new String(text, start, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Appends the given text, if any, to the buffer.
+     * @return The number of bytes appended.
+     */
+    private int appendText(String s) {
+        if (s == null) {
+            return 0;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (textLength + bytes.length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + bytes.length));
+        }
+        System.arraycopy(bytes, 0, text, textLength, bytes.length);
+        textLength += bytes.length;
+        return bytes.length;
+    }
+
+    /**
+     * Rewrites the text buffer without the text of removed and replaced rows.
+     */
+    private void compactText() {
+        byte[] compacted = new byte[Math.max(INITIAL_CAPACITY * 16, (textLength - garbageLength) * 2)];
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            int rowLength = rowTextLength(i);
+            System.arraycopy(text, textStarts[i], compacted, length, rowLength);
+            textStarts[i] = length;
+            length += rowLength;
+        }
+        text = compacted;
+        textLength = length;
+        garbageLength = 0;
+    }
+
+    private void shift(int from, int to, int count) {
+        System.arraycopy(types, from, types, to, count);
+        System.arraycopy(ids, from, ids, to, count);
+        System.arraycopy(firstDays, from, firstDays, to, count);
+        System.arraycopy(secondDays, from, secondDays, to, count);
+        System.arraycopy(textStarts, from, textStarts, to, count);
+        System.arraycopy(descriptionLengths, from, descriptionLengths, to, count);
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        firstDays = Arrays.copyOf(firstDays, capacity);
+        secondDays = Arrays.copyOf(secondDays, capacity);
+        textStarts = Arrays.copyOf(textStarts, capacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, capacity);
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+        }
+    }
+}
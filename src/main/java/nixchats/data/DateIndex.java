@@ -0,0 +1,107 @@
+package nixchats.data;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.TreeMap;
+
+import nixchats.Task;
+
+/**
+ * Sorted index from epoch days to the dated tasks ending on them,
+ * i.e. deadlines by their due date and events by their last day.
+ * Pending and done tasks are kept apart, so queries for pending tasks never visit done ones.
+ * Tasks without a recognisable date are not indexed.
+ */
+class DateIndex {
+    // Values are stored as described in Postings
+    private final NavigableMap<Long, Object> pendingByDay = new TreeMap<>();
+    private final NavigableMap<Long, Object> doneByDay = new TreeMap<>();
+
+    void add(Task task) {
+        OptionalLong day = task.getEndDay();
+        if (day.isPresent()) {
+            byDay(task.isDone()).merge(day.getAsLong(), task, Postings::union);
+        }
+    }
+
+    void remove(Task task) {
+        OptionalLong day = task.getEndDay();
+        if (day.isPresent()) {
+            pendingByDay.computeIfPresent(day.getAsLong(), (d, tasks) -> Postings.without(tasks, task));
+            doneByDay.computeIfPresent(day.getAsLong(), (d, tasks) -> Postings.without(tasks, task));
+        }
+    }
+
+    /**
+     * Moves a task whose status may have changed to the side matching its current status.
+     */
+    void statusChanged(Task task) {
+        remove(task);
+        add(task);
+    }
+
+    /**
+     * Returns the tasks ending within the given days, grouped by day in ascending order.
+     * @param firstDay First epoch day, inclusive.
+     * @param lastDay Last epoch day, inclusive.
+     * @param isPendingOnly Whether to leave out done tasks.
+     * @return One list of tasks per day that has any, in no particular order within a day.
+     */
+    List<List<Task>> between(long firstDay, long lastDay, boolean isPendingOnly) {
+        List<List<Task>> days = new ArrayList<>();
+        daysBetween(firstDay, lastDay, isPendingOnly).forEachRemaining(days::add);
+        return days;
+    }
+
+    /**
+     * Same as {@link #between(long, long, boolean)}, but collects the tasks of each day only when the
+     * iterator reaches it, so a caller that stops early never visits the later days.
+     */
+    Iterator<List<Task>> daysBetween(long firstDay, long lastDay, boolean isPendingOnly) {
+        Iterator<Map.Entry<Long, Object>> pending =
+                pendingByDay.subMap(firstDay, true, lastDay, true).entrySet().iterator();
+        Iterator<Map.Entry<Long, Object>> done = isPendingOnly
+                ? null : doneByDay.subMap(firstDay, true, lastDay, true).entrySet().iterator();
+        return new Iterator<>() {
+            private Map.Entry<Long, Object> nextPending = DateIndex.next(pending);
+            private Map.Entry<Long, Object> nextDone = DateIndex.next(done);
+
+            @Override
+            public boolean hasNext() {
+                return nextPending != null || nextDone != null;
+            }
+
+            @Override
+            public List<Task> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long day = Math.min(nextPending == null ? Long.MAX_VALUE : nextPending.getKey(),
+                        nextDone == null ? Long.MAX_VALUE : nextDone.getKey());
+                List<Task> tasks = new ArrayList<>();
+                if (nextPending != null && nextPending.getKey() == day) {
+                    Postings.tasks(nextPending.getValue()).forEach(tasks::add);
+                    nextPending = DateIndex.next(pending);
+                }
+                if (nextDone != null && nextDone.getKey() == day) {
+                    Postings.tasks(nextDone.getValue()).forEach(tasks::add);
+                    nextDone = DateIndex.next(done);
+                }
+                return tasks;
+            }
+        };
+    }
+
+    private NavigableMap<Long, Object> byDay(boolean isDone) {
+        return isDone ? doneByDay : pendingByDay;
+    }
+
+    private static Map.Entry<Long, Object> next(Iterator<Map.Entry<Long, Object>> entries) {
+        return entries != null && entries.hasNext() ? entries.next() : null;
+    }
+}
@@ -0,0 +1,173 @@
+package nixchats.data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nixchats.Task;
+
+/**
+ * BK-tree over the case-folded words of task descriptions, for finding tasks that contain a word
+ * within a few edits of a search term.
+ * Every node holds a distinct word, and hangs off its parent under its edit distance to the parent's word.
+ * By the triangle inequality, a word within k edits of a term that is d edits from a node can only be
+ * under that node's children d - k to d + k, so a search visits a small part of the tree.
+ * A word stays in the tree after its last task is removed, until such words outnumber the others
+ * and the tree is rebuilt.
+ */
+class FuzzyIndex {
+    private final Map<String, Node> nodes = new HashMap<>();
+    private Node root;
+    private int emptyCount;
+
+    private static final class Node {
+        private final String word;
+        // Stored as described in Postings, or null if no task has the word any more
+        private Object tasks;
+        private Node[] children = new Node[0];
+
+        Node(String word) {
+            this.word = word;
+        }
+    }
+
+    void add(Task task) {
+        for (String word : words(task)) {
+            Node node = nodes.get(word);
+            if (node == null) {
+                node = new Node(word);
+                nodes.put(word, node);
+                insert(node);
+            } else if (node.tasks == null) {
+                emptyCount--;
+            }
+            node.tasks = node.tasks == null ? task : Postings.union(node.tasks, task);
+        }
+    }
+
+    void remove(Task task) {
+        for (String word : words(task)) {
+            Node node = nodes.get(word);
+            if (node == null || node.tasks == null) {
+                continue;
+            }
+            node.tasks = Postings.without(node.tasks, task);
+            if (node.tasks == null) {
+                emptyCount++;
+            }
+        }
+        if (emptyCount > nodes.size() / 2) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Returns the tasks with a word within the given number of edits of the term, each with its
+     * smallest distance to the term.
+     * @param folded Lowercased search term.
+     * @param maxEdits Largest number of single-character insertions, deletions and substitutions.
+     */
+    Map<Task, Integer> search(String folded, int maxEdits) {
+        Map<Task, Integer> result = new IdentityHashMap<>();
+        if (root == null) {
+            return result;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(folded, node.word);
+            if (distance <= maxEdits && node.tasks != null) {
+                for (Task task : Postings.tasks(node.tasks)) {
+                    result.merge(task, distance, Math::min);
+                }
+            }
+            int last = Math.min(distance + maxEdits, node.children.length - 1);
+            for (int i = Math.max(1, distance - maxEdits); i <= last; i++) {
+                if (node.children[i] != null) {
+                    pending.push(node.children[i]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distinct case-folded words of the task's description.
+     */
+    static Set<String> words(Task task) {
+        Set<String> words = new LinkedHashSet<>();
+        for (String word : task.getDescription().toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the Levenshtein distance between two words.
+     */
+    static int distance(String a, String b) {
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length(); j++) {
+                int substitution = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private void insert(Node node) {
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node parent = root;
+        while (true) {
+            int distance = distance(node.word, parent.word);
+            assert distance > 0 : "Words in the tree must be distinct";
+            if (distance >= parent.children.length) {
+                parent.children = Arrays.copyOf(parent.children, distance + 1);
+            }
+            if (parent.children[distance] == null) {
+                parent.children[distance] = node;
+                return;
+            }
+            parent = parent.children[distance];
+        }
+    }
+
+    private void rebuild() {
+        List<Node> live = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (node.tasks != null) {
+                node.children = new Node[0];
+                live.add(node);
+            }
+        }
+        nodes.clear();
+        root = null;
+        emptyCount = 0;
+        for (Node node : live) {
+            nodes.put(node.word, node);
+            insert(node);
+        }
+    }
+}
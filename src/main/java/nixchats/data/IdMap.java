@@ -0,0 +1,115 @@
+package nixchats.data;
+
+/**
+ * Open-addressing hash map from task IDs to values, e.g. the tasks of a list.
+ * Slots are probed linearly from a Fibonacci hash of the ID, the table is kept at most half full,
+ * and removals shift later entries of the probe run back, so no tombstones are left behind.
+ * @param <V> Type of the values.
+ */
+class IdMap<V> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    // A null value marks an empty slot, so every long is a valid ID
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * Returns the value for the given ID, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    V get(long id) {
+        int mask = values.length - 1;
+        for (int i = slot(id, mask); values[i] != null; i = (i + 1) & mask) {
+            if (ids[i] == id) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Adds a value under an ID, which must not be in the map yet.
+     */
+    void put(long id, V value) {
+        assert value != null : "Value cannot be null";
+        assert get(id) == null : "Task ID must be unique: " + id;
+        if (2 * (size + 1) > values.length) {
+            resize(values.length * 2);
+        }
+        insert(id, value);
+        size++;
+    }
+
+    /**
+     * Replaces the value for an ID that is already in the map.
+     */
+    void replace(long id, V value) {
+        assert value != null : "Value cannot be null";
+        int mask = values.length - 1;
+        for (int i = slot(id, mask); values[i] != null; i = (i + 1) & mask) {
+            if (ids[i] == id) {
+                values[i] = value;
+                return;
+            }
+        }
+        throw new AssertionError("Task ID must be in the map: " + id);
+    }
+
+    /**
+     * Removes the value for the given ID, if there is one.
+     */
+    void remove(long id) {
+        int mask = values.length - 1;
+        int i = slot(id, mask);
+        while (values[i] != null && ids[i] != id) {
+            i = (i + 1) & mask;
+        }
+        if (values[i] == null) {
+            return;
+        }
+        // Move back every later entry of the run that would otherwise become unreachable
+        int gap = i;
+        for (int j = (i + 1) & mask; values[j] != null; j = (j + 1) & mask) {
+            int home = slot(ids[j], mask);
+            boolean isHomeAfterGap = gap <= j ? gap < home && home <= j : gap < home || home <= j;
+            if (!isHomeAfterGap) {
+                ids[gap] = ids[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+        }
+        values[gap] = null;
+        size--;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void insert(long id, Object value) {
+        int mask = values.length - 1;
+        int i = slot(id, mask);
+        while (values[i] != null) {
+            i = (i + 1) & mask;
+        }
+        ids[i] = id;
+        values[i] = value;
+    }
+
+    private void resize(int capacity) {
+        long[] oldIds = ids;
+        Object[] oldValues = values;
+        ids = new long[capacity];
+        values = new Object[capacity];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                insert(oldIds[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int slot(long id, int mask) {
+        return (int) ((id * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+}
@@ -0,0 +1,517 @@
+package nixchats.data;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.OptionalLong;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.ToDoTask;
+import nixchats.util.DateFormatter;
+
+/**
+ * List of tasks kept outside the Java heap, as encoded records in direct or memory-mapped {@link ByteBuffer}
+ * slabs, so that millions of tasks leave the garbage collector almost nothing to trace.
+ * <p>
+ * Records are allocated in power-of-two blocks from {@value #SLAB_SIZE}-byte slabs. Freed blocks go on a
+ * free list per block size, threaded through the blocks themselves, and are reused before the slabs grow.
+ * A row table maps each index to the address of its record, and inserting or deleting a row shifts the
+ * addresses above it, like an array list.
+ * <p>
+ * A record holds the type and done flag, the ID, the epoch day the task ends on, and the description and
+ * dates as UTF-8. {@link #get(int)} decodes a new {@link Task} view of the record on every call.
+ * <p>
+ * A store opened with {@link #openMapped(Path)} keeps its slabs in that file and its row table in a
+ * ".rows" file next to it, so {@link #flush()} is all it takes to persist it, and reopening the files
+ * restores the list without decoding a single task.
+ */
+class OffHeapTaskStore extends AbstractList<Task> implements TaskRowStore {
+    static final int SLAB_SIZE = 1 << 20;
+
+    private static final int SLAB_SHIFT = 20;
+    private static final int MIN_BLOCK_SHIFT = 5;
+    private static final int BLOCK_CLASSES = SLAB_SHIFT - MIN_BLOCK_SHIFT + 1;
+    private static final long NO_BLOCK = -1;
+    private static final int NO_DAY = Integer.MIN_VALUE;
+
+    private static final byte TODO = 0;
+    private static final byte DEADLINE = 1;
+    private static final byte EVENT = 2;
+    private static final byte TYPE_MASK = 3;
+    private static final byte DONE = 8;
+
+    // Record layout: block class, flags, ID, end day, then a length and UTF-8 bytes per text field
+    private static final int CLASS_OFFSET = 0;
+    private static final int FLAGS_OFFSET = 1;
+    private static final int ID_OFFSET = 2;
+    private static final int END_DAY_OFFSET = 10;
+    private static final int TEXT_OFFSET = 14;
+    // A free block keeps its class and the address of the next free block of that class
+    private static final int NEXT_FREE_OFFSET = 2;
+
+    // Row table layout: header, then the address of each row's record
+    private static final int MAGIC = 0x4E435453;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int SIZE_OFFSET = 4;
+    private static final int BUMP_OFFSET = 8;
+    private static final int FREE_HEADS_OFFSET = 16;
+    private static final int ROWS_OFFSET = FREE_HEADS_OFFSET + 8 * BLOCK_CLASSES;
+    private static final int INITIAL_ROW_CAPACITY = 16;
+
+    private final Path file;
+    private final Path rowsFile;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private ByteBuffer rows;
+    private final RowIdIndex rowIds = new RowIdIndex(i -> readId(address(i)));
+    private int size;
+
+    OffHeapTaskStore() {
+        this.file = null;
+        this.rowsFile = null;
+        this.rows = ByteBuffer.allocateDirect(ROWS_OFFSET + 8 * INITIAL_ROW_CAPACITY);
+        initRows();
+    }
+
+    /**
+     * Constructs a store in direct buffers holding the given tasks, copying the slabs if they are another store.
+     * @param tasks Tasks in list order.
+     */
+    OffHeapTaskStore(Collection<? extends Task> tasks) {
+        this();
+        if (tasks instanceof OffHeapTaskStore other) {
+            copyStore(other);
+        } else {
+            tasks.forEach(this::add);
+        }
+    }
+
+    private OffHeapTaskStore(Path file) throws IOException {
+        this.file = file;
+        this.rowsFile = file.resolveSibling(file.getFileName() + ".rows");
+        try (FileChannel channel = FileChannel.open(rowsFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            boolean isNew = channel.size() == 0;
+            long length = Math.max(channel.size(), ROWS_OFFSET + 8 * INITIAL_ROW_CAPACITY);
+            rows = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            if (isNew) {
+                initRows();
+            } else if (channel.size() < ROWS_OFFSET || rows.getInt(MAGIC_OFFSET) != MAGIC) {
+                throw new IOException("Not a task store: " + rowsFile);
+            }
+        }
+        size = rows.getInt(SIZE_OFFSET);
+        long bump = rows.getLong(BUMP_OFFSET);
+        if (size < 0 || ROWS_OFFSET + 8L * size > rows.capacity() || bump < 0) {
+            throw new IOException("Corrupted task store: " + rowsFile);
+        }
+        while ((long) slabs.size() * SLAB_SIZE < bump) {
+            addSlab();
+        }
+        for (int i = 0; i < size; i++) {
+            rowIds.inserted(i, readId(address(i)));
+        }
+    }
+
+    /**
+     * Opens the store kept in the given file and the ".rows" file next to it, creating both if needed.
+     * @throws IOException if the files cannot be mapped or do not hold a store.
+     */
+    static OffHeapTaskStore openMapped(Path file) throws IOException {
+        return new OffHeapTaskStore(file);
+    }
+
+    boolean isMapped() {
+        return file != null;
+    }
+
+    /**
+     * Writes the mapped slabs and row table back to their files; does nothing for a store in direct buffers.
+     */
+    void flush() {
+        if (!isMapped()) {
+            return;
+        }
+        slabs.forEach(OffHeapTaskStore::force);
+        force(rows);
+    }
+
+    private void initRows() {
+        rows.putInt(MAGIC_OFFSET, MAGIC);
+        rows.putInt(SIZE_OFFSET, 0);
+        rows.putLong(BUMP_OFFSET, 0);
+        for (int i = 0; i < BLOCK_CLASSES; i++) {
+            rows.putLong(FREE_HEADS_OFFSET + 8 * i, NO_BLOCK);
+        }
+    }
+
+    private void copyStore(OffHeapTaskStore other) {
+        long bump = other.rows.getLong(BUMP_OFFSET);
+        for (int i = 0; (long) i * SLAB_SIZE < bump; i++) {
+            ByteBuffer slab = addSlab();
+            slab.put(0, other.slabs.get(i), 0, (int) Math.min(SLAB_SIZE, bump - (long) i * SLAB_SIZE));
+        }
+        ensureRowCapacity(other.size);
+        rows.put(0, other.rows, 0, ROWS_OFFSET + 8 * other.size);
+        size = other.size;
+        for (int i = 0; i < size; i++) {
+            rowIds.inserted(i, readId(address(i)));
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Task get(int index) {
+        checkIndex(index, size);
+        long address = address(index);
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        byte flags = slab.get(offset + FLAGS_OFFSET);
+        long id = slab.getLong(offset + ID_OFFSET);
+        boolean isDone = (flags & DONE) != 0;
+        int position = offset + TEXT_OFFSET;
+        String description = readText(slab, position);
+        switch (flags & TYPE_MASK) {
+        case DEADLINE:
+            return new DeadlineTask(id, description, isDone, readText(slab, skipText(slab, position)));
+        case EVENT:
+            int fromAt = skipText(slab, position);
+            return new EventTask(id, description, isDone, readText(slab, fromAt),
+                    readText(slab, skipText(slab, fromAt)));
+        default:
+            return new ToDoTask(id, description, isDone);
+        }
+    }
+
+    @Override
+    public Task set(int index, Task task) {
+        Task previous = get(index);
+        long old = address(index);
+        long oldId = readId(old);
+        free(old);
+        setAddress(index, writeRecord(task));
+        rowIds.replaced(index, oldId, task.getId());
+        return previous;
+    }
+
+    @Override
+    public void add(int index, Task task) {
+        checkIndex(index, size + 1);
+        assert task != null : "Task cannot be null";
+        long address = writeRecord(task);
+        ensureRowCapacity(size + 1);
+        int start = ROWS_OFFSET + 8 * index;
+        rows.put(start + 8, rows, start, 8 * (size - index));
+        setAddress(index, address);
+        setSize(size + 1);
+        rowIds.inserted(index, task.getId());
+        modCount++;
+    }
+
+    @Override
+    public Task remove(int index) {
+        Task removed = get(index);
+        long address = address(index);
+        long id = readId(address);
+        free(address);
+        int start = ROWS_OFFSET + 8 * index;
+        rows.put(start, rows, start + 8, 8 * (size - index - 1));
+        setSize(size - 1);
+        rowIds.removed(index, id);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public void clear() {
+        // The slabs are kept for reuse, and a mapped file keeps its length
+        initRows();
+        size = 0;
+        rowIds.clear();
+        modCount++;
+    }
+
+    @Override
+    public boolean isDone(int index) {
+        checkIndex(index, size);
+        long address = address(index);
+        return (slab(address).get(offset(address) + FLAGS_OFFSET) & DONE) != 0;
+    }
+
+    @Override
+    public void setDone(int index, boolean isDone) {
+        checkIndex(index, size);
+        long address = address(index);
+        ByteBuffer slab = slab(address);
+        int at = offset(address) + FLAGS_OFFSET;
+        byte flags = slab.get(at);
+        slab.put(at, (byte) (isDone ? flags | DONE : flags & ~DONE));
+    }
+
+    @Override
+    public boolean containsId(long id) {
+        return rowIds.contains(id);
+    }
+
+    /**
+     * Returns the row of the task with the given ID, or -1 if there is none.
+     */
+    @Override
+    public int indexOfId(long id) {
+        return rowIds.indexOf(id);
+    }
+
+    /**
+     * Returns the rows whose description contains the case-folded keyword.
+     * Descriptions that are all ASCII are compared in the slab; others are decoded and folded like
+     * {@link String#toLowerCase()}.
+     * @param folded Keyword in lower case.
+     */
+    @Override
+    public BitSet findRows(String folded) {
+        BitSet result = new BitSet(size);
+        for (int i = 0; i < size; i++) {
+            long address = address(i);
+            if (containsFolded(slab(address), offset(address) + TEXT_OFFSET, folded)) {
+                result.set(i);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public int[] findRowsEndingBetween(long firstDay, long lastDay, boolean isPendingOnly) {
+        long[] keys = new long[16];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            long address = address(i);
+            ByteBuffer slab = slab(address);
+            int offset = offset(address);
+            int day = slab.getInt(offset + END_DAY_OFFSET);
+            if (day == NO_DAY || day < firstDay || day > lastDay
+                    || isPendingOnly && (slab.get(offset + FLAGS_OFFSET) & DONE) != 0) {
+                continue;
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+            }
+            // The day in the high half sorts before the row in the low half
+            keys[count++] = (long) day << 32 | i;
+        }
+        Arrays.sort(keys, 0, count);
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = (int) keys[i];
+        }
+        return result;
+    }
+
+    private boolean containsFolded(ByteBuffer slab, int position, String folded) {
+        int start = position + 4;
+        int length = textLength(slab, position);
+        for (int i = start; i < start + length; i++) {
+            if (slab.get(i) < 0) {
+                return readText(slab, position).toLowerCase().contains(folded);
+            }
+        }
+        for (int i = start; i <= start + length - folded.length(); i++) {
+            int j = 0;
+            while (j < folded.length() && toLowerAscii(slab.get(i + j)) == folded.charAt(j)) {
+                j++;
+            }
+            if (j == folded.length()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char toLowerAscii(byte b) {
+        return (char) (b >= 'A' && b <= 'Z' ? b + ('a' - 'A') : b);
+    }
+
+    /**
+     * Encodes the task into a newly allocated block.
+     * @return The address of the block.
+     */
+    private long writeRecord(Task task) {
+        byte type = TODO;
+        String[] texts;
+        String end = null;
+        if (task instanceof DeadlineTask d) {
+            type = DEADLINE;
+            texts = new String[] {task.getDescription(), d.getBy()};
+            end = d.getBy();
+        } else if (task instanceof EventTask e) {
+            type = EVENT;
+            texts = new String[] {task.getDescription(), e.getFrom(), e.getTo()};
+            end = e.getTo();
+        } else {
+            texts = new String[] {task.getDescription()};
+        }
+        byte[][] encoded = new byte[texts.length][];
+        int length = TEXT_OFFSET;
+        for (int i = 0; i < texts.length; i++) {
+            encoded[i] = texts[i] == null ? new byte[0] : texts[i].getBytes(StandardCharsets.UTF_8);
+            length += 4 + encoded[i].length;
+        }
+        OptionalLong endDay = DateFormatter.toEpochDay(end);
+
+        long address = allocate(length);
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        slab.put(offset + FLAGS_OFFSET, (byte) (task.isDone() ? type | DONE : type));
+        slab.putLong(offset + ID_OFFSET, task.getId());
+        slab.putInt(offset + END_DAY_OFFSET, endDay.isPresent() ? (int) endDay.getAsLong() : NO_DAY);
+        int position = offset + TEXT_OFFSET;
+        for (byte[] bytes : encoded) {
+            slab.putInt(position, bytes.length);
+            slab.put(position + 4, bytes);
+            position += 4 + bytes.length;
+        }
+        return address;
+    }
+
+    private String readText(ByteBuffer slab, int position) {
+        byte[] bytes = new byte[textLength(slab, position)];
+        slab.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int skipText(ByteBuffer slab, int position) {
+        return position + 4 + textLength(slab, position);
+    }
+
+    private int textLength(ByteBuffer slab, int position) {
+        int length = slab.getInt(position);
+        // Also stops a read that overlapped a write, or a corrupted file, from allocating a huge array
+        if (length < 0 || length > SLAB_SIZE - TEXT_OFFSET) {
+            throw new IllegalStateException("Corrupted task record");
+        }
+        return length;
+    }
+
+    /**
+     * Allocates a block of at least the given length, from its free list if possible.
+     * @return The address of the block.
+     */
+    private long allocate(int length) {
+        int blockClass = Math.max(0, 32 - Integer.numberOfLeadingZeros(length - 1) - MIN_BLOCK_SHIFT);
+        if (blockClass >= BLOCK_CLASSES) {
+            throw new IllegalArgumentException("Task is too long to store off-heap: " + length + " bytes");
+        }
+        int blockSize = 1 << (blockClass + MIN_BLOCK_SHIFT);
+        int headAt = FREE_HEADS_OFFSET + 8 * blockClass;
+        long address = rows.getLong(headAt);
+        if (address != NO_BLOCK) {
+            rows.putLong(headAt, slab(address).getLong(offset(address) + NEXT_FREE_OFFSET));
+        } else {
+            address = rows.getLong(BUMP_OFFSET);
+            if (offset(address) + blockSize > SLAB_SIZE) {
+                // Blocks never span slabs; the rest of this slab is left unused
+                address = ((address >>> SLAB_SHIFT) + 1) << SLAB_SHIFT;
+            }
+            while ((long) slabs.size() << SLAB_SHIFT <= address) {
+                addSlab();
+            }
+            rows.putLong(BUMP_OFFSET, address + blockSize);
+        }
+        slab(address).put(offset(address) + CLASS_OFFSET, (byte) blockClass);
+        return address;
+    }
+
+    private void free(long address) {
+        ByteBuffer slab = slab(address);
+        int offset = offset(address);
+        int headAt = FREE_HEADS_OFFSET + 8 * slab.get(offset + CLASS_OFFSET);
+        slab.putLong(offset + NEXT_FREE_OFFSET, rows.getLong(headAt));
+        rows.putLong(headAt, address);
+    }
+
+    private ByteBuffer addSlab() {
+        ByteBuffer slab;
+        if (isMapped()) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                slab = channel.map(FileChannel.MapMode.READ_WRITE, (long) slabs.size() << SLAB_SHIFT, SLAB_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+        }
+        slabs.add(slab);
+        return slab;
+    }
+
+    private void ensureRowCapacity(int capacity) {
+        if (ROWS_OFFSET + 8L * capacity <= rows.capacity()) {
+            return;
+        }
+        int length = Math.max(rows.capacity() * 2, ROWS_OFFSET + 8 * capacity);
+        if (isMapped()) {
+            // The file already holds the rows, so mapping a longer region of it keeps them
+            try (FileChannel channel = FileChannel.open(rowsFile, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                rows = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            ByteBuffer grown = ByteBuffer.allocateDirect(length);
+            grown.put(0, rows, 0, ROWS_OFFSET + 8 * size);
+            rows = grown;
+        }
+    }
+
+    private static void force(ByteBuffer buffer) {
+        ((MappedByteBuffer) buffer).force();
+    }
+
+    private long readId(long address) {
+        return slab(address).getLong(offset(address) + ID_OFFSET);
+    }
+
+    private long address(int index) {
+        return rows.getLong(ROWS_OFFSET + 8 * index);
+    }
+
+    private void setAddress(int index, long address) {
+        rows.putLong(ROWS_OFFSET + 8 * index, address);
+    }
+
+    private void setSize(int size) {
+        this.size = size;
+        rows.putInt(SIZE_OFFSET, size);
+    }
+
+    private ByteBuffer slab(long address) {
+        return slabs.get((int) (address >>> SLAB_SHIFT));
+    }
+
+    private static int offset(long address) {
+        return (int) (address & (SLAB_SIZE - 1));
+    }
+
+    private static void checkIndex(int index, int bound) {
+        if (index < 0 || index >= bound) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + bound);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package nixchats.data;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import nixchats.Task;
+
+/**
+ * Helpers for the values of the task indexes. Most keys map to a single task, so a value is
+ * either that task itself or, once a second task is added, an identity set of tasks.
+ */
+class Postings {
+    private Postings() {
+    }
+
+    /**
+     * Returns the value with the task added, suitable for {@link java.util.Map#merge}.
+     */
+    static Object union(Object existing, Object task) {
+        if (existing instanceof Set) {
+            @SuppressWarnings("unchecked")
+            Set<Object> set = (Set<Object>) existing;
+            set.add(task);
+            return set;
+        }
+        if (existing == task) {
+            return existing;
+        }
+        Set<Object> set = Collections.newSetFromMap(new IdentityHashMap<>(4));
+        set.add(existing);
+        set.add(task);
+        return set;
+    }
+
+    /**
+     * Returns the value without the task, or null if nothing is left.
+     */
+    static Object without(Object existing, Object task) {
+        if (!(existing instanceof Set)) {
+            return existing == task ? null : existing;
+        }
+        Set<?> set = (Set<?>) existing;
+        set.remove(task);
+        if (set.size() > 1) {
+            return set;
+        }
+        return set.isEmpty() ? null : set.iterator().next();
+    }
+
+    static int size(Object value) {
+        return value instanceof Set ? ((Set<?>) value).size() : 1;
+    }
+
+    static boolean contains(Object value, Object task) {
+        return value instanceof Set ? ((Set<?>) value).contains(task) : value == task;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Iterable<Task> tasks(Object value) {
+        return value instanceof Set ? (Set<Task>) value : List.of((Task) value);
+    }
+}
@@ -0,0 +1,102 @@
+package nixchats.data;
+
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Index from task IDs to rows for the row stores, so a task is found by ID without scanning the rows.
+ * Like {@link TaskOrder}, each row has a sparse order key, and a task inserted between two others takes
+ * the midpoint of their keys. The keys are kept in a column in row order, shifted along with the store's
+ * own columns, so the row of an ID is found by a binary search for its key and no rows are renumbered
+ * on insert or delete until there is no gap left.
+ * <p>
+ * A lookup by ID is therefore O(log n), not O(1): every insert or delete shifts the rows after it, so
+ * keeping each ID's row up to date would cost O(n) per change, and commands need the row to change a task.
+ * Lookups only read the index, so they are safe alongside other readers.
+ */
+class RowIdIndex {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final IntToLongFunction idAt;
+    private IdMap<Long> keys = new IdMap<>();
+    // Order keys in row order, so always ascending
+    private long[] order = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param idAt Returns the ID of the task in a row of the store.
+     */
+    RowIdIndex(IntToLongFunction idAt) {
+        this.idAt = idAt;
+    }
+
+    boolean contains(long id) {
+        return keys.get(id) != null;
+    }
+
+    /**
+     * Returns the row of the task with the given ID in O(log n), or -1 if there is none.
+     */
+    int indexOf(long id) {
+        Long key = keys.get(id);
+        if (key == null) {
+            return -1;
+        }
+        int row = Arrays.binarySearch(order, 0, size, key);
+        assert row >= 0 : "Order keys and IDs must agree";
+        return row;
+    }
+
+    /**
+     * Records a task inserted at the given row, once the store holds it there.
+     */
+    void inserted(int index, long id) {
+        if (size == order.length) {
+            order = Arrays.copyOf(order, size * 2);
+        }
+        System.arraycopy(order, index, order, index + 1, size - index);
+        size++;
+        boolean hasNext = index + 1 < size;
+        long previous;
+        if (index > 0) {
+            previous = order[index - 1];
+        } else {
+            previous = hasNext ? order[index + 1] - 2 * TaskOrder.GAP : 0;
+        }
+        long next = hasNext ? order[index + 1] : previous + 2 * TaskOrder.GAP;
+        order[index] = previous + (next - previous) / 2;
+        keys.put(id, order[index]);
+        if (next - previous < 2) {
+            renumber();
+        }
+    }
+
+    /**
+     * Records a task removed from the given row.
+     */
+    void removed(int index, long id) {
+        keys.remove(id);
+        System.arraycopy(order, index + 1, order, index, size - index - 1);
+        size--;
+    }
+
+    /**
+     * Records the task in the given row being replaced by another, which may have a different ID.
+     */
+    void replaced(int index, long oldId, long newId) {
+        keys.remove(oldId);
+        keys.put(newId, order[index]);
+    }
+
+    void clear() {
+        keys = new IdMap<>();
+        size = 0;
+    }
+
+    private void renumber() {
+        for (int i = 0; i < size; i++) {
+            order[i] = i * TaskOrder.GAP;
+            keys.replace(idAt.applyAsLong(i), order[i]);
+        }
+    }
+}
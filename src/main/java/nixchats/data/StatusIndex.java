@@ -0,0 +1,89 @@
+package nixchats.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Done flags of the tasks of a list, one bit per position, with a running count of done tasks.
+ * Inserting or deleting a position shifts the bits above it by one, 64 positions per word operation.
+ */
+class StatusIndex {
+    private long[] words = new long[4];
+    private int size;
+    private int doneCount;
+
+    /**
+     * Makes room for a task inserted at the given position.
+     */
+    void inserted(int index, boolean isDone) {
+        assert index >= 0 && index <= size : "Index must be within bounds: " + index;
+        if (size == words.length * Long.SIZE) {
+            words = Arrays.copyOf(words, words.length * 2);
+        }
+        int word = index >>> 6;
+        for (int i = size >>> 6; i > word; i--) {
+            words[i] = words[i] << 1 | words[i - 1] >>> 63;
+        }
+        long low = lowBits(index);
+        words[word] = words[word] & low | (words[word] & ~low) << 1;
+        size++;
+        if (isDone) {
+            words[word] |= 1L << index;
+            doneCount++;
+        }
+    }
+
+    /**
+     * Closes the gap left by the task deleted from the given position.
+     */
+    void deleted(int index) {
+        assert index >= 0 && index < size : "Index must be within bounds: " + index;
+        if (isDone(index)) {
+            doneCount--;
+        }
+        int word = index >>> 6;
+        int lastWord = (size - 1) >>> 6;
+        long low = lowBits(index);
+        words[word] = words[word] & low | words[word] >>> 1 & ~low;
+        for (int i = word; i < lastWord; i++) {
+            words[i] |= words[i + 1] << 63;
+            words[i + 1] >>>= 1;
+        }
+        size--;
+    }
+
+    void set(int index, boolean isDone) {
+        assert index >= 0 && index < size : "Index must be within bounds: " + index;
+        if (isDone(index) == isDone) {
+            return;
+        }
+        words[index >>> 6] ^= 1L << index;
+        doneCount += isDone ? 1 : -1;
+    }
+
+    boolean isDone(int index) {
+        return (words[index >>> 6] & 1L << index) != 0;
+    }
+
+    int doneCount() {
+        return doneCount;
+    }
+
+    /**
+     * Returns the positions of the done tasks, or of the pending ones.
+     */
+    BitSet positions(boolean isDone) {
+        BitSet done = BitSet.valueOf(Arrays.copyOf(words, (size + 63) >>> 6));
+        if (!isDone) {
+            done.flip(0, size);
+        }
+        return done;
+    }
+
+    /**
+     * Returns a mask of the bits below the given position within its word.
+     */
+    private static long lowBits(int index) {
+        return (1L << index) - 1;
+    }
+}
@@ -1,21 +1,293 @@
 package nixchats.data;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import nixchats.Task;
 import nixchats.exception.InputException;
 import nixchats.parser.Parser;
+import nixchats.parser.Query;
 
 /**
  * Represents a list of tasks.
+ * <p>
+ * A list constructed in concurrent mode can be shared between threads. Counts such as {@link #size()}
+ * are read under an optimistic {@link StampedLock} stamp, so they never block each other or a writer,
+ * and are only read again under the read lock if a write overlapped them. Lookups, searches and
+ * iteration walk structures that a writer may be halfway through changing, so they take the read lock,
+ * which still never blocks other readers. Mutations take the write lock.
  */
 public class TaskList implements Iterable<Task> {
-    private final List<Task> taskList;
+    private final TaskListBacking backing;
+    private final StampedLock lock;
+    // Writers about to queue on the lock; new readers queue behind them, since StampedLock alone lets readers barge
+    private final AtomicInteger waitingWriters = new AtomicInteger();
+    private List<Task> taskList;
+    private final List<TaskListListener> listeners = new ArrayList<>();
+    private final List<TaskListSnapshot> liveSnapshots = new CopyOnWriteArrayList<>();
+    private final StatusIndex status = new StatusIndex();
+    private final IdMap<Task> ids = new IdMap<>();
+    // Each index is built by the first search that needs it and maintained from then on
+    private TaskOrder order;
+    private TrigramIndex trigramIndex;
+    private DateIndex dateIndex;
+    private FuzzyIndex fuzzyIndex;
+    private UpcomingQueue upcoming;
 
     public TaskList() {
-        this.taskList = new ArrayList<>();
+        this(TaskListBacking.ARRAY);
+    }
+
+    /**
+     * Constructs an empty list that keeps its tasks in the given structure.
+     * @param backing {@link TaskListBacking#TREE} for large lists with frequent inserts and deletes.
+     */
+    public TaskList(TaskListBacking backing) {
+        this(backing, false);
+    }
+
+    /**
+     * Constructs an empty list that keeps its tasks in the given structure.
+     * @param backing {@link TaskListBacking#TREE} for large lists with frequent inserts and deletes.
+     * @param isConcurrent Whether the list can be read and modified from several threads.
+     */
+    public TaskList(TaskListBacking backing, boolean isConcurrent) {
+        assert backing != null : "Backing cannot be null";
+        this.backing = backing;
+        this.lock = isConcurrent ? new StampedLock() : null;
+        this.taskList = copyOf(Collections.emptyList());
+    }
+
+    /**
+     * Opens a list kept off-heap in a memory-mapped file, creating the file if it does not exist.
+     * Changes are written to the mapping as they are made, and {@link #flush()} persists them;
+     * the next call with the same file restores the list without decoding its tasks.
+     * @param file File holding the task records; the row order is kept in a ".rows" file next to it.
+     * @param isConcurrent Whether the list can be read and modified from several threads.
+     * @throws IOException if the file cannot be mapped or does not hold a task list.
+     */
+    public static TaskList openMapped(Path file, boolean isConcurrent) throws IOException {
+        assert file != null : "File cannot be null";
+        TaskList list = new TaskList(TaskListBacking.OFF_HEAP, isConcurrent);
+        OffHeapTaskStore store = OffHeapTaskStore.openMapped(file);
+        for (int i = 0; i < store.size(); i++) {
+            list.status.inserted(i, store.isDone(i));
+        }
+        list.taskList = store;
+        return list;
+    }
+
+    /**
+     * Writes the changes of a list opened with {@link #openMapped(Path, boolean)} back to its file.
+     * Does nothing for other lists.
+     */
+    public void flush() {
+        if (lock == null) {
+            flushMapped();
+            return;
+        }
+        long stamp = lock.readLock();
+        try {
+            flushMapped();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void flushMapped() {
+        if (isMapped()) {
+            ((OffHeapTaskStore) taskList).flush();
+        }
+    }
+
+    public TaskListBacking getBacking() {
+        return backing;
+    }
+
+    public boolean isConcurrent() {
+        return lock != null;
+    }
+
+    /**
+     * Runs a read that must not modify the list under the read lock, after any writer that is waiting for the lock.
+     * Reads never call other reads, so a reader holding the lock never waits here for a writer waiting on it.
+     */
+    private <T> T read(Supplier<T> reader) {
+        if (lock == null) {
+            return reader.get();
+        }
+        // Behind a waiting writer, queue for the write lock like it does and turn it into a read lock once granted
+        long stamp = waitingWriters.get() > 0 ? lock.tryConvertToReadLock(lock.writeLock()) : lock.readLock();
+        try {
+            return reader.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Reads a count under an optimistic stamp, and again under the read lock if a write overlapped it.
+     * Only for reads of a few fields, which cannot throw or loop however a concurrent write left them;
+     * anything that walks a structure goes through {@link #read(Supplier)}.
+     */
+    private int readCount(IntSupplier reader) {
+        if (lock == null) {
+            return reader.getAsInt();
+        }
+        long stamp = lock.tryOptimisticRead();
+        int result = reader.getAsInt();
+        if (stamp != 0 && lock.validate(stamp)) {
+            return result;
+        }
+        stamp = lock.readLock();
+        try {
+            return reader.getAsInt();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private void write(Runnable writer) {
+        if (lock == null) {
+            writer.run();
+            return;
+        }
+        waitingWriters.incrementAndGet();
+        long stamp;
+        try {
+            stamp = lock.writeLock();
+        } finally {
+            waitingWriters.decrementAndGet();
+        }
+        try {
+            writer.run();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private List<Task> copyOf(List<Task> tasks) {
+        switch (backing) {
+        case TREE:
+            return new TreeList<>(tasks);
+        case PERSISTENT:
+            return new PersistentList<>(tasks);
+        case COLUMNAR:
+            return new ColumnarTaskStore(tasks);
+        case OFF_HEAP:
+            return new OffHeapTaskStore(tasks);
+        default:
+            return new ArrayList<>(tasks);
+        }
+    }
+
+    /**
+     * Registers a listener to be notified of every mutation of this list.
+     * @param listener The listener to register.
+     */
+    public void addListener(TaskListListener listener) {
+        assert listener != null : "Listener cannot be null";
+        write(() -> listeners.add(listener));
+    }
+
+    /**
+     * Unregisters a previously registered listener.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(TaskListListener listener) {
+        write(() -> listeners.remove(listener));
+    }
+
+    /**
+     * Takes a copy-on-write snapshot of the list, e.g. for saving on a background thread.
+     * Taking the snapshot is O(1); the first structural change afterwards copies the backing list,
+     * which is also O(1) for {@link TaskListBacking#PERSISTENT} lists. Lists opened with
+     * {@link #openMapped(Path, boolean)} copy their slabs when the snapshot is taken instead.
+     * Status changes made directly on a {@link Task} rather than through this list are not isolated.
+     * @return A snapshot that must be released once no longer needed.
+     */
+    public TaskListSnapshot snapshot() {
+        if (lock == null) {
+            return newSnapshot();
+        }
+        // Registering the snapshot must not interleave with a write, but may with other snapshots
+        long stamp = lock.readLock();
+        try {
+            return newSnapshot();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Takes a snapshot like {@link #snapshot()} and runs the given action before any write can follow it,
+     * e.g. to start a new journal that holds exactly the changes made after the snapshot.
+     * The action must not modify this list.
+     * @param whileLocked Action to run right after the snapshot is taken.
+     * @return A snapshot that must be released once no longer needed.
+     */
+    public TaskListSnapshot snapshot(Runnable whileLocked) {
+        assert whileLocked != null : "Action cannot be null";
+        if (lock == null) {
+            TaskListSnapshot snapshot = newSnapshot();
+            whileLocked.run();
+            return snapshot;
+        }
+        long stamp = lock.readLock();
+        try {
+            TaskListSnapshot snapshot = newSnapshot();
+            whileLocked.run();
+            return snapshot;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private TaskListSnapshot newSnapshot() {
+        // A mapped list must stay the live one, so its snapshots take a copy of the slabs right away
+        TaskListSnapshot snapshot = new TaskListSnapshot(this, isMapped() ? copyOf(taskList) : taskList);
+        liveSnapshots.add(snapshot);
+        return snapshot;
+    }
+
+    void release(TaskListSnapshot snapshot) {
+        liveSnapshots.remove(snapshot);
+    }
+
+    private void beforeStructuralChange() {
+        for (TaskListSnapshot snapshot : liveSnapshots) {
+            if (snapshot.shares(taskList)) {
+                taskList = copyOf(taskList);
+                return;
+            }
+        }
+    }
+
+    private void beforeStatusChange(Task task) {
+        for (TaskListSnapshot snapshot : liveSnapshots) {
+            snapshot.preserveStatus(task);
+        }
     }
 
     /**
@@ -24,7 +296,7 @@ public class TaskList implements Iterable<Task> {
      * @throws InputException if the task command is invalid.
      */
     public void addTask(String task) throws InputException {
-        taskList.add(Parser.parseTask(task));
+        addTask(Parser.parseTask(task));
     }
 
     /**
@@ -33,7 +305,13 @@ public class TaskList implements Iterable<Task> {
      */
     public void addTask(Task task) {
         assert task != null : "Task cannot be null";
-        taskList.add(task);
+        write(() -> {
+            beforeStructuralChange();
+            assignUniqueId(task);
+            taskList.add(task);
+            indexInserted(taskList.size() - 1, task);
+            listeners.forEach(l -> l.taskInserted(taskList.size() - 1, task));
+        });
     }
 
     /**
@@ -43,8 +321,14 @@ public class TaskList implements Iterable<Task> {
      */
     public void insertTask(int index, Task task) {
         assert task != null : "Task cannot be null";
-        assert index >= 0 && index <= taskList.size() : "Index must be within bounds: " + index;
-        taskList.add(index, task);
+        write(() -> {
+            assert index >= 0 && index <= taskList.size() : "Index must be within bounds: " + index;
+            beforeStructuralChange();
+            assignUniqueId(task);
+            taskList.add(index, task);
+            indexInserted(index, task);
+            listeners.forEach(l -> l.taskInserted(index, task));
+        });
     }
 
     /**
@@ -61,19 +345,131 @@ public class TaskList implements Iterable<Task> {
      * @param showMessage Whether to print a confirmation message.
      */
     public void deleteTask(int index, boolean showMessage) {
-        assert index >= 0 && index < taskList.size() : "Index must be within bounds: " + index;
-        if (showMessage) {
-            System.out.println("Got it, deleted task " + taskList.get(index));
+        write(() -> {
+            assert index >= 0 && index < taskList.size() : "Index must be within bounds: " + index;
+            if (showMessage) {
+                System.out.println("Got it, deleted task " + taskList.get(index));
+            }
+            beforeStructuralChange();
+            Task removed = taskList.remove(index);
+            status.deleted(index);
+            if (!isRowStore()) {
+                ids.remove(removed.getId());
+            }
+            if (order != null) {
+                order.deleted(removed);
+            }
+            if (trigramIndex != null) {
+                trigramIndex.remove(removed);
+            }
+            if (dateIndex != null) {
+                dateIndex.remove(removed);
+            }
+            if (fuzzyIndex != null) {
+                fuzzyIndex.remove(removed);
+            }
+            if (upcoming != null) {
+                upcoming.remove(removed);
+            }
+            listeners.forEach(l -> l.taskDeleted(index, removed));
+        });
+    }
+
+    private void assignUniqueId(Task task) {
+        // Only tasks read from a hand-edited file can repeat an ID
+        if (isRowStore()) {
+            while (rows().containsId(task.getId())) {
+                task.assignNewId();
+            }
+        } else {
+            while (ids.get(task.getId()) != null) {
+                task.assignNewId();
+            }
         }
-        taskList.remove(index);
+    }
+
+    private void indexInserted(int index, Task task) {
+        status.inserted(index, task.isDone());
+        if (isRowStore()) {
+            return;
+        }
+        ids.put(task.getId(), task);
+        if (order != null) {
+            order.inserted(index, task, taskList);
+        }
+        if (trigramIndex != null) {
+            trigramIndex.add(task);
+        }
+        if (dateIndex != null) {
+            dateIndex.add(task);
+        }
+        if (fuzzyIndex != null) {
+            fuzzyIndex.add(task);
+        }
+        if (upcoming != null) {
+            upcoming.add(task);
+        }
+    }
+
+    private void indexStatusChanged(int index, Task task) {
+        status.set(index, task.isDone());
+        if (dateIndex != null) {
+            dateIndex.statusChanged(task);
+        }
+        if (upcoming != null) {
+            upcoming.statusChanged(task);
+        }
+    }
+
+    /**
+     * Marks the task at the given index as done.
+     * @param index Index of the task to be marked.
+     */
+    public void markTask(int index) {
+        changeStatus(index, Task::markAsDone);
+    }
+
+    /**
+     * Marks the task at the given index as not done.
+     * @param index Index of the task to be unmarked.
+     */
+    public void unmarkTask(int index) {
+        changeStatus(index, Task::unmarkAsNotDone);
+    }
+
+    /**
+     * Sets the status of the task at the given index without printing a confirmation.
+     * @param index Index of the task to be updated.
+     * @param isDone Whether the task is done or not.
+     */
+    public void setTaskDone(int index, boolean isDone) {
+        changeStatus(index, task -> task.setDone(isDone));
+    }
+
+    private void changeStatus(int index, Consumer<Task> change) {
+        write(() -> {
+            assert index >= 0 && index < taskList.size() : "Index must be within bounds: " + index;
+            Task task = taskList.get(index);
+            if (isRowStore()) {
+                // Views are created per call, so snapshots cannot remember their status; copy the rows instead
+                beforeStructuralChange();
+                change.accept(task);
+                rows().setDone(index, task.isDone());
+            } else {
+                beforeStatusChange(task);
+                change.accept(task);
+            }
+            indexStatusChanged(index, task);
+            listeners.forEach(l -> l.taskStatusChanged(index, task));
+        });
     }
 
     public boolean isEmpty() {
-        return taskList.isEmpty();
+        return size() == 0;
     }
 
     public void printTasks() {
-        taskList.forEach(System.out::println);
+        forEach(System.out::println);
     }
 
     /**
@@ -81,7 +477,21 @@ public class TaskList implements Iterable<Task> {
      * @return The size of the task list.
      */
     public int size() {
-        return taskList.size();
+        return readCount(() -> taskList.size());
+    }
+
+    /**
+     * Returns the number of done tasks in O(1).
+     */
+    public int countDone() {
+        return readCount(status::doneCount);
+    }
+
+    /**
+     * Returns the number of tasks that are not done yet in O(1).
+     */
+    public int countPending() {
+        return readCount(() -> taskList.size() - status.doneCount());
     }
 
     /**
@@ -90,30 +500,410 @@ public class TaskList implements Iterable<Task> {
      * @return The task at the specified index.
      */
     public Task getTask(int index) {
-        assert index >= 0 && index < taskList.size() : "Index must be within bounds: " + index;
-        return taskList.get(index);
+        return read(() -> {
+            assert index >= 0 && index < taskList.size() : "Index must be within bounds: " + index;
+            return taskList.get(index);
+        });
+    }
+
+    /**
+     * Gets the task with the given ID in O(1), or O(log n) for {@link TaskListBacking#COLUMNAR}
+     * and {@link TaskListBacking#OFF_HEAP} lists, which find the row of the ID first.
+     * @param id ID of the task.
+     * @return The task, or null if no task in the list has that ID.
+     */
+    public Task getTaskById(long id) {
+        if (isRowStore()) {
+            return read(() -> {
+                int index = rows().indexOfId(id);
+                return index < 0 ? null : taskList.get(index);
+            });
+        }
+        return read(() -> ids.get(id));
+    }
+
+    /**
+     * Returns the current index of the task with the given ID, wherever earlier changes moved it.
+     * The task is found in O(1), but its index by a binary search over sparse order keys, in O(log n) lookups
+     * of the list, since the indexes of all later tasks shift with every insert or delete.
+     * @param id ID of the task.
+     * @return The index, or -1 if no task in the list has that ID.
+     */
+    public int indexOf(long id) {
+        if (isRowStore()) {
+            return read(() -> rows().indexOfId(id));
+        }
+        buildIndexes(false, false);
+        return read(() -> {
+            Task task = ids.get(id);
+            return task == null ? -1 : order.indexOf(task, taskList);
+        });
     }
 
     /**
      * Returns an iterator over the tasks in the list.
+     * In concurrent mode the iterator walks a copy of the list, so it never sees a half-applied change.
      * @return An iterator for the task list.
      */
     public Iterator<Task> iterator() {
         assert taskList != null : "TaskList should never be null";
-        return taskList.iterator();
+        if (lock == null) {
+            return taskList.iterator();
+        }
+        return read(() -> List.of(taskList.toArray(new Task[0]))).iterator();
     }
 
     /**
      * Finds tasks that contain the given keyword.
+     * The trigrams of the keyword are looked up in an index that is built on the first search,
+     * so only tasks containing all of them are compared against the keyword.
      * @param keyword Keyword to be searched for.
      * @return List of tasks that match the keyword (case-insensitive).
      */
     public java.util.List<Task> findTasks(String keyword) {
         assert keyword != null : "Keyword cannot be null";
         assert !keyword.trim().isEmpty() : "Keyword cannot be empty after trimming";
-        
-        return taskList.stream()
-                .filter(task -> task.getDescription().toLowerCase().contains(keyword.toLowerCase()))
+
+        if (isRowStore()) {
+            return read(() -> tasksAt(rows().findRows(keyword.toLowerCase())));
+        }
+        buildIndexes(true, false);
+        return read(() -> matching(keyword.toLowerCase()));
+    }
+
+    private List<Task> matching(String folded) {
+        // Past a quarter of the list, comparing every task is cheaper than collecting and sorting candidates
+        Set<Task> candidates = trigramIndex.candidates(folded, taskList.size() / 4);
+        java.util.Collection<Task> source = candidates == null ? taskList : sorted(candidates);
+        return source.stream()
+                .filter(task -> trigramIndex.folded(task).contains(folded))
                 .collect(java.util.stream.Collectors.toList());
     }
+
+    /**
+     * Finds tasks ending within the given days, i.e. deadlines due and events ending on one of them.
+     * @param firstDay First epoch day, inclusive.
+     * @param lastDay Last epoch day, inclusive.
+     * @return Matching tasks sorted by date, in list order within the same day.
+     */
+    public List<Task> findTasksBetween(long firstDay, long lastDay) {
+        return findTasksBetween(firstDay, lastDay, false);
+    }
+
+    /**
+     * Finds tasks that are not done yet and are due on or before the given day.
+     * @param lastDay Last epoch day, inclusive.
+     * @return Matching tasks sorted by date, in list order within the same day.
+     */
+    public List<Task> findPendingTasksDueBy(long lastDay) {
+        return findTasksBetween(Long.MIN_VALUE, lastDay, true);
+    }
+
+    private List<Task> findTasksBetween(long firstDay, long lastDay, boolean isPendingOnly) {
+        assert firstDay <= lastDay : "First day must not be after the last day";
+        if (isRowStore()) {
+            return read(() -> {
+                List<Task> result = new ArrayList<>();
+                for (int row : rows().findRowsEndingBetween(firstDay, lastDay, isPendingOnly)) {
+                    result.add(taskList.get(row));
+                }
+                return result;
+            });
+        }
+        buildIndexes(false, true);
+        return read(() -> between(firstDay, lastDay, isPendingOnly));
+    }
+
+    private List<Task> between(long firstDay, long lastDay, boolean isPendingOnly) {
+        List<Task> result = new ArrayList<>();
+        for (List<Task> day : dateIndex.between(firstDay, lastDay, isPendingOnly)) {
+            if (day.size() > 1) {
+                day.sort(order.comparator());
+            }
+            result.addAll(day);
+        }
+        return result;
+    }
+
+    /**
+     * Finds the k pending tasks that end soonest, e.g. the next five deadlines.
+     * Pending dated tasks are kept in a heap that is built on the first such search,
+     * so the tasks are read off its top without sorting the rest.
+     * Columnar and off-heap lists sort the rows of all pending dated tasks instead.
+     * @param k Largest number of tasks to return.
+     * @return The soonest pending tasks, sorted by date, in list order within the same day.
+     */
+    public List<Task> findNextTasks(int k) {
+        assert k > 0 : "Number of tasks must be positive: " + k;
+        if (isRowStore()) {
+            return read(() -> {
+                int[] rows = rows().findRowsEndingBetween(Long.MIN_VALUE, Long.MAX_VALUE, true);
+                List<Task> result = new ArrayList<>();
+                for (int i = 0; i < Math.min(k, rows.length); i++) {
+                    result.add(taskList.get(rows[i]));
+                }
+                return result;
+            });
+        }
+        buildIndexes(false, false);
+        boolean isBuilt = read(() -> upcoming != null);
+        if (!isBuilt) {
+            write(() -> {
+                if (upcoming == null) {
+                    upcoming = new UpcomingQueue(order.comparator());
+                    taskList.forEach(upcoming::add);
+                }
+            });
+        }
+        return read(() -> upcoming.peek(k));
+    }
+
+    /**
+     * Finds tasks with a word within the given number of edits of the term, e.g. "meeting" for "metting".
+     * The words of all descriptions are kept in a BK-tree that is built on the first such search,
+     * so a search only measures the distance to a small part of the distinct words.
+     * Columnar and off-heap lists compare the term against every word instead.
+     * @param term Word to search for.
+     * @param maxEdits Largest number of single-character insertions, deletions and substitutions.
+     * @return Matching tasks, closest first, in list order among equally close ones.
+     */
+    public List<Task> findSimilarTasks(String term, int maxEdits) {
+        assert term != null && !term.isBlank() : "Term cannot be empty";
+        assert maxEdits >= 0 : "Max edits must be non-negative: " + maxEdits;
+        String folded = term.trim().toLowerCase();
+        if (isRowStore()) {
+            return read(() -> {
+                Map<Task, Integer> distances = new IdentityHashMap<>();
+                List<Task> result = new ArrayList<>();
+                for (Task task : taskList) {
+                    int distance = FuzzyIndex.words(task).stream()
+                            .mapToInt(word -> FuzzyIndex.distance(folded, word)).min().orElse(Integer.MAX_VALUE);
+                    if (distance <= maxEdits) {
+                        result.add(task);
+                        distances.put(task, distance);
+                    }
+                }
+                // The sort is stable, so equally close tasks stay in list order
+                result.sort(Comparator.comparing(distances::get));
+                return result;
+            });
+        }
+        buildIndexes(false, false);
+        boolean isBuilt = read(() -> fuzzyIndex != null);
+        if (!isBuilt) {
+            write(() -> {
+                if (fuzzyIndex == null) {
+                    fuzzyIndex = new FuzzyIndex();
+                    taskList.forEach(fuzzyIndex::add);
+                }
+            });
+        }
+        return read(() -> {
+            Map<Task, Integer> distances = fuzzyIndex.search(folded, maxEdits);
+            List<Task> result = new ArrayList<>(distances.keySet());
+            result.sort(Comparator.comparing((Task task) -> distances.get(task)).thenComparing(order.comparator()));
+            return result;
+        });
+    }
+
+    /**
+     * Runs a query, e.g. one parsed from "query type:D done:false due<2026-12-01 sort:due limit:20".
+     * The query compiles to a lazy stream that starts from the most selective index it can use:
+     * the date index for queries with a date bound or sorted by date, the trigram index for queries
+     * with words, or the status index for queries on done or pending tasks. The other filters are
+     * applied task by task, and the stream stops as soon as the limit is reached, except that tasks found
+     * by date for a query not sorted by date are first put back in list order.
+     * @param query The parsed query.
+     * @return The matching tasks, in the order and up to the number the query asks for.
+     */
+    public List<Task> query(Query query) {
+        assert query != null : "Query cannot be null";
+        if (query.getFirstDay() > query.getLastDay()) {
+            return new ArrayList<>();
+        }
+        boolean isByDate = query.hasDueBound() || query.getSort() == Query.Sort.DUE;
+        if (!isRowStore()) {
+            buildIndexes(!isByDate && !query.getKeywords().isEmpty(), isByDate);
+        }
+        return read(() -> {
+            Stream<Task> matches = candidates(query, isByDate).filter(query::matches);
+            if (query.getSort() == Query.Sort.DESCRIPTION) {
+                matches = matches.sorted(Comparator.comparing(Task::getDescription, String.CASE_INSENSITIVE_ORDER));
+            }
+            return matches.limit(query.getLimit()).collect(Collectors.toList());
+        });
+    }
+
+    /**
+     * Returns a lazy stream of the tasks that may match the query, sorted by date if the query is sorted
+     * by date and in list order otherwise.
+     */
+    private Stream<Task> candidates(Query query, boolean isByDate) {
+        boolean isPendingOnly = Boolean.FALSE.equals(query.getDone());
+        if (isByDate && query.getSort() != Query.Sort.DUE) {
+            // Only the date bound narrows the tasks, so the limit still keeps the first matches in the list
+            return datedTasksInListOrder(query.getFirstDay(), query.getLastDay(), isPendingOnly);
+        }
+        if (isByDate) {
+            Stream<Task> dated = datedTasks(query.getFirstDay(), query.getLastDay(), isPendingOnly);
+            if (query.hasDueBound()) {
+                return dated;
+            }
+            // Sorting by date puts the undated tasks last
+            return Stream.concat(dated, taskList.stream().filter(task -> task.getEndDay().isEmpty()));
+        }
+        if (!query.getKeywords().isEmpty()) {
+            String folded = query.getKeywords().get(0);
+            return isRowStore()
+                    ? rows().findRows(folded).stream().mapToObj(taskList::get)
+                    : matching(folded).stream();
+        }
+        if (query.getDone() != null) {
+            return status.positions(query.getDone()).stream().mapToObj(taskList::get);
+        }
+        return taskList.stream();
+    }
+
+    private Stream<Task> datedTasks(long firstDay, long lastDay, boolean isPendingOnly) {
+        if (isRowStore()) {
+            return Arrays.stream(rows().findRowsEndingBetween(firstDay, lastDay, isPendingOnly))
+                    .mapToObj(taskList::get);
+        }
+        Iterator<List<Task>> days = dateIndex.daysBetween(firstDay, lastDay, isPendingOnly);
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(days, Spliterator.ORDERED), false)
+                .flatMap(day -> {
+                    if (day.size() > 1) {
+                        day.sort(order.comparator());
+                    }
+                    return day.stream();
+                });
+    }
+
+    private Stream<Task> datedTasksInListOrder(long firstDay, long lastDay, boolean isPendingOnly) {
+        if (isRowStore()) {
+            int[] rowIndexes = rows().findRowsEndingBetween(firstDay, lastDay, isPendingOnly);
+            Arrays.sort(rowIndexes);
+            return Arrays.stream(rowIndexes).mapToObj(taskList::get);
+        }
+        List<Task> dated = datedTasks(firstDay, lastDay, isPendingOnly).collect(Collectors.toList());
+        dated.sort(order.comparator());
+        return dated.stream();
+    }
+
+    /**
+     * Returns the indexes of the done tasks, or of the pending ones.
+     * Masks can be combined with {@link BitSet#and} and {@link BitSet#or} and turned back into tasks
+     * with {@link #getTasks(BitSet)}.
+     * @param isDone Whether to return the done tasks rather than the pending ones.
+     * @return A new mask with one bit set per matching index.
+     */
+    public BitSet getStatusMask(boolean isDone) {
+        return read(() -> status.positions(isDone));
+    }
+
+    /**
+     * Returns the indexes of the tasks found by {@link #findTasks(String)}, for combining with other masks.
+     * @param keyword Keyword to be searched for.
+     * @return A new mask with one bit set per matching index.
+     */
+    public BitSet getKeywordMask(String keyword) {
+        assert keyword != null && !keyword.trim().isEmpty() : "Keyword cannot be empty";
+        if (isRowStore()) {
+            return read(() -> rows().findRows(keyword.toLowerCase()));
+        }
+        buildIndexes(true, false);
+        return read(() -> toMask(matching(keyword.toLowerCase())));
+    }
+
+    /**
+     * Returns the indexes of the tasks found by {@link #findTasksBetween(long, long)}, for combining with other masks.
+     * @param firstDay First epoch day, inclusive.
+     * @param lastDay Last epoch day, inclusive.
+     * @return A new mask with one bit set per matching index.
+     */
+    public BitSet getDateMask(long firstDay, long lastDay) {
+        assert firstDay <= lastDay : "First day must not be after the last day";
+        if (isRowStore()) {
+            return read(() -> {
+                BitSet mask = new BitSet(taskList.size());
+                for (int row : rows().findRowsEndingBetween(firstDay, lastDay, false)) {
+                    mask.set(row);
+                }
+                return mask;
+            });
+        }
+        buildIndexes(false, true);
+        return read(() -> toMask(between(firstDay, lastDay, false)));
+    }
+
+    /**
+     * Returns the tasks at the indexes set in the mask, in list order.
+     * @param mask Mask of indexes, e.g. a combination of the masks returned by this list.
+     * @return The selected tasks.
+     */
+    public List<Task> getTasks(BitSet mask) {
+        return read(() -> {
+            assert mask.length() <= taskList.size() : "Mask must not select indexes beyond the list";
+            return tasksAt(mask);
+        });
+    }
+
+    private List<Task> tasksAt(BitSet mask) {
+        List<Task> result = new ArrayList<>(mask.cardinality());
+        for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+            result.add(taskList.get(i));
+        }
+        return result;
+    }
+
+    private BitSet toMask(List<Task> tasks) {
+        BitSet mask = new BitSet(taskList.size());
+        for (Task task : tasks) {
+            mask.set(order.indexOf(task, taskList));
+        }
+        return mask;
+    }
+
+    /**
+     * Builds the order index, and the trigram and date index if asked to, unless they exist already.
+     * Building an index counts as a write, so that reads never change the list's state.
+     */
+    private void buildIndexes(boolean needsTrigrams, boolean needsDates) {
+        boolean isBuilt = read(() -> order != null
+                && (!needsTrigrams || trigramIndex != null) && (!needsDates || dateIndex != null));
+        if (isBuilt) {
+            return;
+        }
+        write(() -> {
+            if (order == null) {
+                order = new TaskOrder(taskList);
+            }
+            if (needsTrigrams && trigramIndex == null) {
+                trigramIndex = new TrigramIndex();
+                taskList.forEach(trigramIndex::add);
+            }
+            if (needsDates && dateIndex == null) {
+                dateIndex = new DateIndex();
+                taskList.forEach(dateIndex::add);
+            }
+        });
+    }
+
+    private boolean isRowStore() {
+        return backing == TaskListBacking.COLUMNAR || backing == TaskListBacking.OFF_HEAP;
+    }
+
+    private TaskRowStore rows() {
+        return (TaskRowStore) taskList;
+    }
+
+    private boolean isMapped() {
+        return taskList instanceof OffHeapTaskStore store && store.isMapped();
+    }
+
+    private List<Task> sorted(Set<Task> tasks) {
+        List<Task> result = new ArrayList<>(tasks);
+        Collections.sort(result, order.comparator());
+        return result;
+    }
 }
@@ -0,0 +1,29 @@
+package nixchats.data;
+
+/**
+ * Structures a {@link TaskList} can keep its tasks in.
+ */
+public enum TaskListBacking {
+    /** An array: O(1) access by index, but inserting or deleting shifts every later task. */
+    ARRAY,
+    /** A balanced tree: O(log n) access, insert and delete by index, for large lists that change often. */
+    TREE,
+    /**
+     * A persistent tree: O(log n) like {@link #TREE}, but changes copy only the path to the changed
+     * task, so snapshots stay O(1) even when the list is changed while they are live.
+     */
+    PERSISTENT,
+    /**
+     * Columns of primitive arrays instead of one object per task, for million-task lists: about 40 bytes
+     * per task plus its description, and searches scan the columns instead of building indexes.
+     * {@link TaskList#getTask(int)} returns a new view of the task on every call, so tasks of the list
+     * must be changed through the list, and compared by ID rather than by identity.
+     */
+    COLUMNAR,
+    /**
+     * Encoded records in direct buffers outside the Java heap, so even millions of tasks add almost nothing
+     * for the garbage collector to trace. Tasks are views like with {@link #COLUMNAR}. See also
+     * {@link TaskList#openMapped(java.nio.file.Path, boolean)}, which keeps the records in a mapped file.
+     */
+    OFF_HEAP
+}
@@ -0,0 +1,30 @@
+package nixchats.data;
+
+import nixchats.Task;
+
+/**
+ * Receives notifications about mutations of a {@link TaskList}.
+ * Listeners are called after the mutation has been applied.
+ */
+public interface TaskListListener {
+    /**
+     * Called after a task has been added or inserted.
+     * @param index Position the task now occupies.
+     * @param task The task that was inserted.
+     */
+    void taskInserted(int index, Task task);
+
+    /**
+     * Called after a task has been deleted.
+     * @param index Position the task occupied before deletion.
+     * @param task The task that was deleted.
+     */
+    void taskDeleted(int index, Task task);
+
+    /**
+     * Called after a task has been marked or unmarked.
+     * @param index Position of the task.
+     * @param task The task whose status changed.
+     */
+    void taskStatusChanged(int index, Task task);
+}
@@ -0,0 +1,57 @@
+package nixchats.data;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nixchats.Task;
+
+/**
+ * Point-in-time view of a {@link TaskList} that can be read from another thread.
+ * The snapshot shares the list's backing storage until the list is structurally modified
+ * (copy-on-write), and remembers the original status of any task that is marked or unmarked
+ * through the list while the snapshot is live. Call {@link #release()} once done with it.
+ */
+public class TaskListSnapshot {
+    private final TaskList owner;
+    private final List<Task> tasks;
+    private final Map<Task, Boolean> originalStatus = new IdentityHashMap<>();
+
+    TaskListSnapshot(TaskList owner, List<Task> tasks) {
+        this.owner = owner;
+        this.tasks = tasks;
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public Task getTask(int index) {
+        return tasks.get(index);
+    }
+
+    /**
+     * Returns whether the task at the given index was done when the snapshot was taken.
+     * @param index Index of the task.
+     */
+    public synchronized boolean isDone(int index) {
+        Task task = tasks.get(index);
+        Boolean original = originalStatus.get(task);
+        return original != null ? original : task.isDone();
+    }
+
+    /**
+     * Stops tracking changes on behalf of this snapshot.
+     */
+    public void release() {
+        owner.release(this);
+    }
+
+    boolean shares(List<Task> backing) {
+        return tasks == backing;
+    }
+
+    synchronized void preserveStatus(Task task) {
+        originalStatus.putIfAbsent(task, task.isDone());
+    }
+}
@@ -0,0 +1,101 @@
+package nixchats.data;
+
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import nixchats.Task;
+
+/**
+ * Sparse order keys for the tasks of a list, so tasks found through an index can be put back
+ * into list order without knowing their positions. Keys are spaced {@link #GAP} apart; a task
+ * inserted between two others takes the midpoint, and all keys are renumbered once there is no gap left.
+ */
+class TaskOrder {
+    static final long GAP = 1L << 32;
+
+    private final Map<Task, Long> keys = new IdentityHashMap<>();
+
+    /**
+     * Constructs order keys for the given tasks.
+     * @param tasks Tasks in list order.
+     */
+    TaskOrder(List<Task> tasks) {
+        renumber(tasks);
+    }
+
+    /**
+     * Assigns a key to a task that was just inserted into the list.
+     * Only the neighbours of the task are read, so this is O(log n) on a {@link TreeList} too.
+     * @param index Index of the new task.
+     * @param task The new task.
+     * @param tasks The list after the insertion.
+     */
+    void inserted(int index, Task task, List<Task> tasks) {
+        boolean hasNext = index + 1 < tasks.size();
+        long next = hasNext ? keys.get(tasks.get(index + 1)) : 0;
+        long previous;
+        if (index > 0) {
+            previous = keys.get(tasks.get(index - 1));
+        } else {
+            previous = hasNext ? next - 2 * GAP : 0;
+        }
+        if (!hasNext) {
+            next = previous + 2 * GAP;
+        }
+        if (next - previous < 2) {
+            renumber(tasks);
+            return;
+        }
+        keys.put(task, previous + (next - previous) / 2);
+    }
+
+    /**
+     * Forgets the key of a task that was just deleted from the list.
+     * @param task The deleted task.
+     */
+    void deleted(Task task) {
+        keys.remove(task);
+    }
+
+    /**
+     * Returns the current index of a task of the list by binary search over the keys, in O(log n) lookups
+     * of the list. Positions are searched for rather than stored, since every insert or delete shifts them.
+     * @param task Task to look for.
+     * @param tasks The list.
+     */
+    int indexOf(Task task, List<Task> tasks) {
+        long key = keys.get(task);
+        int low = 0;
+        int high = tasks.size() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = keys.get(tasks.get(mid));
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        throw new AssertionError("Task must be in the list");
+    }
+
+    /**
+     * Returns a comparator that sorts tasks of the list into list order.
+     */
+    Comparator<Task> comparator() {
+        return Comparator.comparingLong(keys::get);
+    }
+
+    private void renumber(List<Task> tasks) {
+        keys.clear();
+        long key = 0;
+        for (Task task : tasks) {
+            key += GAP;
+            keys.put(task, key);
+        }
+    }
+}
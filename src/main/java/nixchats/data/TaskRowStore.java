@@ -0,0 +1,39 @@
+package nixchats.data;
+
+import java.util.BitSet;
+import java.util.List;
+
+import nixchats.Task;
+
+/**
+ * List of tasks kept as rows of encoded data rather than as {@link Task} objects.
+ * {@link List#get(int)} creates a new view of the row on every call, so a row is changed through
+ * {@link List#set(int, Object)} or {@link #setDone(int, boolean)} rather than through a view,
+ * and searches scan the rows instead of using the indexes of {@link TaskList}.
+ */
+interface TaskRowStore extends List<Task> {
+    boolean isDone(int index);
+
+    void setDone(int index, boolean isDone);
+
+    boolean containsId(long id);
+
+    /**
+     * Returns the row of the task with the given ID in O(log n), or -1 if there is none.
+     */
+    int indexOfId(long id);
+
+    /**
+     * Returns the rows whose description contains the case-folded keyword.
+     * @param folded Keyword in lower case.
+     */
+    BitSet findRows(String folded);
+
+    /**
+     * Returns the rows of tasks ending within the given days, sorted by date and then by row.
+     * @param firstDay First epoch day, inclusive.
+     * @param lastDay Last epoch day, inclusive.
+     * @param isPendingOnly Whether to skip done tasks.
+     */
+    int[] findRowsEndingBetween(long firstDay, long lastDay, boolean isPendingOnly);
+}
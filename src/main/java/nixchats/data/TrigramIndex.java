@@ -0,0 +1,102 @@
+package nixchats.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import nixchats.Task;
+
+/**
+ * Trigram index over the case-folded descriptions of tasks.
+ * Any description containing a keyword also contains every three-character substring of it,
+ * so intersecting the posting lists of those trigrams yields a small superset of the matches,
+ * whatever characters the keyword is made of. Folded descriptions are kept for verifying candidates.
+ */
+class TrigramIndex {
+    static final int GRAM_LENGTH = 3;
+
+    private final Map<Task, String> foldedKeys = new IdentityHashMap<>();
+    // Values are stored as described in Postings
+    private final Map<Long, Object> postings = new HashMap<>();
+
+    void add(Task task) {
+        String folded = task.getDescription().toLowerCase();
+        foldedKeys.put(task, folded);
+        for (long gram : grams(folded)) {
+            postings.merge(gram, task, Postings::union);
+        }
+    }
+
+    void remove(Task task) {
+        String folded = foldedKeys.remove(task);
+        if (folded == null) {
+            return;
+        }
+        for (long gram : grams(folded)) {
+            Object remaining = Postings.without(postings.get(gram), task);
+            if (remaining == null) {
+                postings.remove(gram);
+            } else {
+                postings.put(gram, remaining);
+            }
+        }
+    }
+
+    /**
+     * Returns the case-folded description the task was indexed with.
+     */
+    String folded(Task task) {
+        return foldedKeys.get(task);
+    }
+
+    /**
+     * Returns the tasks that may contain the given keyword, a superset of the actual matches.
+     * @param folded Lowercased keyword.
+     * @param limit Candidate count above which a scan of the whole list is cheaper.
+     * @return Candidate tasks, or null if the keyword is shorter than a trigram
+     *     or even its rarest trigram occurs in more than {@code limit} tasks.
+     */
+    Set<Task> candidates(String folded, int limit) {
+        if (folded.length() < GRAM_LENGTH) {
+            return null;
+        }
+        List<Object> lists = new ArrayList<>();
+        for (long gram : grams(folded)) {
+            Object tasks = postings.get(gram);
+            if (tasks == null) {
+                return Collections.emptySet();
+            }
+            lists.add(tasks);
+        }
+        // Rarest first, so each intersection only probes the survivors of the previous ones
+        lists.sort((a, b) -> Integer.compare(Postings.size(a), Postings.size(b)));
+        if (Postings.size(lists.get(0)) > limit) {
+            return null;
+        }
+        Set<Task> result = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Task task : Postings.tasks(lists.get(0))) {
+            result.add(task);
+        }
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            Object tasks = lists.get(i);
+            result.removeIf(task -> !Postings.contains(tasks, task));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distinct trigrams of the text, each packed into the low 48 bits of a long.
+     */
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            grams.add((long) text.charAt(i) << 32 | (long) text.charAt(i + 1) << 16 | text.charAt(i + 2));
+        }
+        return grams;
+    }
+}
@@ -0,0 +1,153 @@
+package nixchats.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+
+import nixchats.Task;
+
+/**
+ * Indexed binary min-heap of the pending dated tasks, soonest first by the day they end and then in list order.
+ * Each task's slot in the heap is tracked, so a task that is deleted or marked as done is taken out
+ * in O(log n) without searching for it.
+ * The k soonest tasks are read off the top of the heap without removing them, by expanding slots in order
+ * from the root, so a read costs O(k log k) however many tasks are in the heap.
+ */
+class UpcomingQueue {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Comparator<Task> listOrder;
+    private final Map<Task, Integer> slots = new IdentityHashMap<>();
+    private Task[] heap = new Task[INITIAL_CAPACITY];
+    // Day each slot's task ends on, kept beside the heap so comparisons need not work it out again
+    private long[] days = new long[INITIAL_CAPACITY];
+    private int size;
+
+    /**
+     * @param listOrder Orders tasks ending on the same day, and must not change the order of tasks in the heap.
+     */
+    UpcomingQueue(Comparator<Task> listOrder) {
+        this.listOrder = listOrder;
+    }
+
+    /**
+     * Adds the task if it is pending and dated; otherwise leaves the queue unchanged.
+     */
+    void add(Task task) {
+        OptionalLong day = task.getEndDay();
+        if (task.isDone() || day.isEmpty() || slots.containsKey(task)) {
+            return;
+        }
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+            days = Arrays.copyOf(days, size * 2);
+        }
+        heap[size] = task;
+        days[size] = day.getAsLong();
+        slots.put(task, size);
+        siftUp(size++);
+    }
+
+    void remove(Task task) {
+        Integer slot = slots.remove(task);
+        if (slot == null) {
+            return;
+        }
+        size--;
+        if (slot != size) {
+            move(size, slot);
+            if (!siftUp(slot)) {
+                siftDown(slot);
+            }
+        }
+        heap[size] = null;
+    }
+
+    /**
+     * Adds or removes a task whose status may have changed, to match its current status.
+     */
+    void statusChanged(Task task) {
+        if (task.isDone()) {
+            remove(task);
+        } else {
+            add(task);
+        }
+    }
+
+    /**
+     * Returns up to k of the soonest tasks, soonest first, leaving the queue unchanged.
+     * A slot is only visited after its parent, so the candidates are the children of the slots taken so far.
+     */
+    List<Task> peek(int k) {
+        List<Task> result = new ArrayList<>(Math.min(k, size));
+        PriorityQueue<Integer> candidates = new PriorityQueue<>(this::compare);
+        if (size > 0) {
+            candidates.add(0);
+        }
+        while (result.size() < k && !candidates.isEmpty()) {
+            int slot = candidates.poll();
+            result.add(heap[slot]);
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                candidates.add(child);
+            }
+        }
+        return result;
+    }
+
+    private int compare(int a, int b) {
+        int byDay = Long.compare(days[a], days[b]);
+        return byDay != 0 ? byDay : listOrder.compare(heap[a], heap[b]);
+    }
+
+    /**
+     * Moves the task at the slot up past any later parents, and returns whether it moved.
+     */
+    private boolean siftUp(int slot) {
+        int start = slot;
+        while (slot > 0) {
+            int parent = (slot - 1) / 2;
+            if (compare(slot, parent) >= 0) {
+                break;
+            }
+            swap(slot, parent);
+            slot = parent;
+        }
+        return slot != start;
+    }
+
+    private void siftDown(int slot) {
+        while (true) {
+            int smallest = slot;
+            for (int child = 2 * slot + 1; child <= 2 * slot + 2 && child < size; child++) {
+                if (compare(child, smallest) < 0) {
+                    smallest = child;
+                }
+            }
+            if (smallest == slot) {
+                return;
+            }
+            swap(slot, smallest);
+            slot = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Task task = heap[a];
+        long day = days[a];
+        move(b, a);
+        heap[b] = task;
+        days[b] = day;
+        slots.put(task, b);
+    }
+
+    private void move(int from, int to) {
+        heap[to] = heap[from];
+        days[to] = days[from];
+        slots.put(heap[to], to);
+    }
+}
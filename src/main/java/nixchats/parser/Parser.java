@@ -2,6 +2,9 @@ package nixchats.parser;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.BitSet;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 import nixchats.DeadlineTask;
 import nixchats.EventTask;
@@ -14,11 +17,16 @@ import nixchats.exception.InputException;
  * and converts them into appropriate Task objects or indices.
  */
 public class Parser {
+    /** Largest number of edits a fuzzy find accepts, above which almost every short word matches. */
+    public static final int MAX_FUZZY_EDITS = 3;
+    /** Number of tasks the "next" command lists when not given one. */
+    public static final int DEFAULT_NEXT_COUNT = 5;
 
     // Command lengths for substring operations
     private static final int DEADLINE_COMMAND_LENGTH = 8; // "deadline".length()
     private static final int EVENT_COMMAND_LENGTH = 5; // "event".length()
     private static final int TODO_COMMAND_LENGTH = 4; // "todo".length()
+    private static final int WHERE_LENGTH = 5; // "where".length()
 
     // Date format pattern
     private static final String OUTPUT_DATE_FORMAT = "MMM d yyyy";
@@ -41,9 +49,60 @@ public class Parser {
         if (parts.length < 2 || parts[1].isBlank()) {
             throw new IllegalArgumentException("Please provide the task number, e.g., \"mark 2\".");
         }
+        int zeroBasedIndex = parseTaskNumber(parts[1], size) - 1;
+        assert zeroBasedIndex >= 0 && zeroBasedIndex < size : "Calculated index must be within bounds";
+        return zeroBasedIndex;
+    }
+
+    /**
+     * Returns whether a command like "mark 1,4,7-30" or "delete where \"report\"" selects several tasks,
+     * rather than the single task number taken by {@link #parseTaskIndex(String, int)}.
+     *
+     * @param line the input command string
+     * @return true if the command has a list, a range or a where clause
+     */
+    public static boolean isBulkSelection(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String selection = getKeyword(line);
+        return isWhereClause(selection) || selection.indexOf(',') >= 0 || selection.indexOf('-', 1) >= 0;
+    }
+
+    /**
+     * Parses the task numbers of a command like "mark 1,4,7-30" or "delete 5-90" into zero-based indexes.
+     * Numbers and ranges are separated by commas, and ranges include both ends.
+     *
+     * @param line the input command string
+     * @param size the total number of tasks in the list
+     * @return the selected indexes
+     * @throws IllegalArgumentException if a number is missing, non-numeric, zero or out of range,
+     *                                  or a range ends before it starts
+     */
+    public static BitSet parseTaskSelection(String line, int size) {
+        assert line != null : "Input line cannot be null";
+        assert size >= 0 : "Size must be non-negative: " + size;
+
+        String selection = getKeyword(line);
+        if (selection.isEmpty()) {
+            throw new IllegalArgumentException("Please provide the task numbers, e.g., \"mark 1,4,7-10\".");
+        }
+        BitSet indexes = new BitSet(size);
+        for (String part : selection.split("\\s*,\\s*")) {
+            int dash = part.indexOf('-', 1);
+            int first = parseTaskNumber(dash < 0 ? part : part.substring(0, dash).trim(), size);
+            int last = dash < 0 ? first : parseTaskNumber(part.substring(dash + 1).trim(), size);
+            if (last < first) {
+                throw new IllegalArgumentException("A range must not end before it starts, e.g., \"delete 5-9\".");
+            }
+            indexes.set(first - 1, last);
+        }
+        return indexes;
+    }
+
+    private static int parseTaskNumber(String number, int size) {
         int oneBased;
         try {
-            oneBased = Integer.parseInt(parts[1]);
+            oneBased = Integer.parseInt(number);
         } catch (NumberFormatException ex) {
             throw new IllegalArgumentException("Task number must be a positive integer.");
         }
@@ -53,10 +112,178 @@ public class Parser {
         if (oneBased > size) {
             throw new IllegalArgumentException("Task number out of range. You have " + size + " task(s).");
         }
+        return oneBased;
+    }
 
-        int zeroBasedIndex = oneBased - 1;
-        assert zeroBasedIndex >= 0 && zeroBasedIndex < size : "Calculated index must be within bounds";
-        return zeroBasedIndex;
+    /**
+     * Parses the keyword of a command like "mark where \"report\"". The quotes are optional.
+     *
+     * @param line the input command string
+     * @return the keyword, or empty if the command has no where clause
+     * @throws IllegalArgumentException if the where clause has no keyword
+     */
+    public static Optional<String> parseWhereKeyword(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String selection = getKeyword(line);
+        if (!isWhereClause(selection)) {
+            return Optional.empty();
+        }
+        String keyword = selection.substring(WHERE_LENGTH).trim();
+        if (keyword.length() >= 2 && keyword.startsWith("\"") && keyword.endsWith("\"")) {
+            keyword = keyword.substring(1, keyword.length() - 1).trim();
+        }
+        if (keyword.isEmpty()) {
+            throw new IllegalArgumentException("Please provide a keyword, e.g., \"mark where \\\"report\\\"\".");
+        }
+        return Optional.of(keyword);
+    }
+
+    private static boolean isWhereClause(String selection) {
+        return selection.regionMatches(true, 0, "where", 0, WHERE_LENGTH)
+                && (selection.length() == WHERE_LENGTH || Character.isWhitespace(selection.charAt(WHERE_LENGTH)));
+    }
+
+    /**
+     * Parses an "archive" command with an optional minimum age in days, e.g. "archive 30".
+     *
+     * @param line the input command string
+     * @return the minimum age in days, or empty if all done tasks should be archived
+     * @throws IllegalArgumentException if the age is not a non-negative integer
+     */
+    public static OptionalInt parseArchiveAge(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String age = getKeyword(line);
+        if (age.isEmpty()) {
+            return OptionalInt.empty();
+        }
+        try {
+            int days = Integer.parseInt(age);
+            if (days >= 0) {
+                return OptionalInt.of(days);
+            }
+        } catch (NumberFormatException ex) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Archive age must be a number of days, e.g., \"archive 30\".");
+    }
+
+    /**
+     * Parses a "next" command with an optional number of tasks, e.g. "next 10".
+     *
+     * @param line the input command string
+     * @return the number of tasks to list, or {@link #DEFAULT_NEXT_COUNT} if none is given
+     * @throws IllegalArgumentException if the number is not a positive integer
+     */
+    public static int parseNextCount(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String count = getKeyword(line);
+        if (count.isEmpty()) {
+            return DEFAULT_NEXT_COUNT;
+        }
+        try {
+            int k = Integer.parseInt(count);
+            if (k > 0) {
+                return k;
+            }
+        } catch (NumberFormatException ex) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Number of tasks must be a positive integer, e.g., \"next 5\".");
+    }
+
+    /**
+     * Parses a "due" command like "due 2025-01-31" and returns the date as an epoch day.
+     *
+     * @param line the input command string
+     * @return the epoch day of the given date
+     * @throws IllegalArgumentException if the date is missing or not in yyyy-MM-dd format
+     */
+    public static long parseDueDay(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String date = getKeyword(line);
+        if (date.isEmpty()) {
+            throw new IllegalArgumentException("Please provide a date, e.g., \"due 2025-01-31\".");
+        }
+        return parseEpochDay(date);
+    }
+
+    /**
+     * Parses a "between" command like "between 2025-01-01 2025-01-31" and returns both dates as epoch days.
+     *
+     * @param line the input command string
+     * @return the first and last epoch day, in that order
+     * @throws IllegalArgumentException if either date is missing or invalid, or the last date is before the first
+     */
+    public static long[] parseDayRange(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String[] dates = getKeyword(line).split("\\s+");
+        if (dates.length != 2) {
+            throw new IllegalArgumentException("Please provide two dates, e.g., \"between 2025-01-01 2025-01-31\".");
+        }
+        long firstDay = parseEpochDay(dates[0]);
+        long lastDay = parseEpochDay(dates[1]);
+        if (lastDay < firstDay) {
+            throw new IllegalArgumentException("End date must be on or after the start date.");
+        }
+        return new long[] {firstDay, lastDay};
+    }
+
+    /**
+     * Parses the search term of a fuzzy find command like "find~ metting 2".
+     *
+     * @param line the input command string
+     * @return the word to search for
+     * @throws IllegalArgumentException if there is no word, or more than one
+     */
+    public static String parseFuzzyTerm(String line) {
+        assert line != null : "Input line cannot be null";
+
+        String[] parts = getKeyword(line).split("\\s+");
+        if (parts[0].isEmpty()) {
+            throw new IllegalArgumentException("Please provide a word to search for, e.g., \"find~ metting\".");
+        }
+        if (parts.length > 2 || parts.length == 2 && !parts[1].matches("\\d+")) {
+            throw new IllegalArgumentException("Please search for a single word, e.g., \"find~ metting 2\".");
+        }
+        return parts[0];
+    }
+
+    /**
+     * Parses the optional maximum number of edits of a fuzzy find command like "find~ metting 2".
+     * Without one, words of up to four characters may be one edit away and longer words two.
+     *
+     * @param line the input command string
+     * @return the maximum number of edits
+     * @throws IllegalArgumentException if the number is above {@link #MAX_FUZZY_EDITS}
+     */
+    public static int parseMaxEdits(String line) {
+        String term = parseFuzzyTerm(line);
+        String[] parts = getKeyword(line).split("\\s+");
+        if (parts.length < 2) {
+            return term.length() <= 4 ? 1 : 2;
+        }
+        try {
+            int maxEdits = Integer.parseInt(parts[1]);
+            if (maxEdits <= MAX_FUZZY_EDITS) {
+                return maxEdits;
+            }
+        } catch (NumberFormatException ex) {
+            // fall through to the error below
+        }
+        throw new IllegalArgumentException("Max edits must be a number from 0 to " + MAX_FUZZY_EDITS + ".");
+    }
+
+    static long parseEpochDay(String date) {
+        try {
+            return LocalDate.parse(date).toEpochDay();
+        } catch (java.time.format.DateTimeParseException ex) {
+            throw new IllegalArgumentException("Invalid date format. Please use yyyy-MM-dd (e.g., 2025-01-31).");
+        }
     }
 
     /**
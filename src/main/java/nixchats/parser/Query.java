@@ -0,0 +1,242 @@
+package nixchats.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.OptionalLong;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+
+/**
+ * Parsed form of a "query" command like {@code query type:D done:false due<2026-12-01 sort:due limit:20}.
+ * Terms are separated by spaces, and a task matches when it satisfies all of them:
+ * <ul>
+ *   <li>{@code type:T}, {@code type:D}, {@code type:E}, or several like {@code type:D,E}</li>
+ *   <li>{@code done:true} or {@code done:false}</li>
+ *   <li>{@code due<DATE}, {@code due<=DATE}, {@code due>DATE}, {@code due>=DATE} or {@code due:DATE},
+ *       by the date a deadline is due or an event ends</li>
+ *   <li>any other word, or several words in double quotes, must appear in the description</li>
+ *   <li>{@code desc:WORDS} must appear in the description too, and may contain colons, e.g. {@code desc:10:30};
+ *       {@code desc:"several words"} also works</li>
+ * </ul>
+ * {@code sort:due} orders matches by date, with undated tasks last, and {@code sort:description}
+ * alphabetically; otherwise they are in list order, also when a date bound selects them.
+ * {@code limit:N} keeps only the first N.
+ */
+public class Query {
+    /**
+     * Orders a query can sort its matches in.
+     */
+    public enum Sort {
+        LIST, DUE, DESCRIPTION
+    }
+
+    private static final Pattern TERM = Pattern.compile("(?:([A-Za-z]+):)?\"([^\"]*)\"|(\\S+)");
+    private static final Pattern DUE_TERM = Pattern.compile("due(<=|>=|<|>|:|=)(.*)");
+    // The value is everything after the first colon, so it may contain colons itself
+    private static final Pattern KEY_TERM = Pattern.compile("([a-z]+):(.*)");
+
+    private final Set<Character> types = new HashSet<>();
+    private Boolean isDone;
+    private long firstDay = Long.MIN_VALUE;
+    private long lastDay = Long.MAX_VALUE;
+    private final List<String> keywords = new ArrayList<>();
+    private Sort sort = Sort.LIST;
+    private int limit = Integer.MAX_VALUE;
+
+    private Query() {
+    }
+
+    /**
+     * Parses the terms of a query, e.g. "type:D done:false due<2026-12-01 sort:due limit:20".
+     *
+     * @param expression the terms after the "query" command, possibly empty to match every task
+     * @return the parsed query
+     * @throws IllegalArgumentException if a term is not understood
+     */
+    public static Query parse(String expression) {
+        assert expression != null : "Expression cannot be null";
+
+        Query query = new Query();
+        Matcher terms = TERM.matcher(expression);
+        while (terms.find()) {
+            if (terms.group(3) != null) {
+                query.addTerm(terms.group(3));
+            } else if (terms.group(1) != null) {
+                query.addKeyValue(terms.group(1).toLowerCase(Locale.ROOT), terms.group(2).toLowerCase(Locale.ROOT),
+                        terms.group());
+            } else {
+                query.addKeyword(terms.group(2));
+            }
+        }
+        return query;
+    }
+
+    private void addTerm(String term) {
+        Matcher due = DUE_TERM.matcher(term.toLowerCase(Locale.ROOT));
+        if (due.matches()) {
+            addDueBound(due.group(1), Parser.parseEpochDay(due.group(2)));
+            return;
+        }
+        Matcher keyValue = KEY_TERM.matcher(term.toLowerCase(Locale.ROOT));
+        if (keyValue.matches()) {
+            addKeyValue(keyValue.group(1), keyValue.group(2), term);
+        } else {
+            addKeyword(term);
+        }
+    }
+
+    private void addKeyValue(String key, String value, String term) {
+        switch (key) {
+        case "desc":
+            if (value.isBlank()) {
+                throw new IllegalArgumentException("Please give the words to look for, e.g., \"desc:10:30\".");
+            }
+            addKeyword(value);
+            break;
+        case "due":
+            addDueBound(":", Parser.parseEpochDay(value));
+            break;
+        case "type":
+            for (String type : value.split(",")) {
+                if (!type.matches("[tde]")) {
+                    throw new IllegalArgumentException("Task type must be T, D or E, e.g., \"type:D\".");
+                }
+                types.add(Character.toUpperCase(type.charAt(0)));
+            }
+            break;
+        case "done":
+            if (!value.equals("true") && !value.equals("false")) {
+                throw new IllegalArgumentException("Please use \"done:true\" or \"done:false\".");
+            }
+            isDone = value.equals("true");
+            break;
+        case "sort":
+            if (value.equals("due")) {
+                sort = Sort.DUE;
+            } else if (value.equals("description")) {
+                sort = Sort.DESCRIPTION;
+            } else {
+                throw new IllegalArgumentException("Please use \"sort:due\" or \"sort:description\".");
+            }
+            break;
+        case "limit":
+            try {
+                limit = Integer.parseInt(value);
+            } catch (NumberFormatException ex) {
+                limit = 0;
+            }
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Limit must be a positive integer, e.g., \"limit:20\".");
+            }
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown query term \"" + term
+                    + "\". Use type:, done:, due<, due>, desc:, sort: or limit:, or put the words in quotes.");
+        }
+    }
+
+    private void addDueBound(String operator, long day) {
+        switch (operator) {
+        case "<":
+            lastDay = Math.min(lastDay, day - 1);
+            break;
+        case "<=":
+            lastDay = Math.min(lastDay, day);
+            break;
+        case ">":
+            firstDay = Math.max(firstDay, day + 1);
+            break;
+        case ">=":
+            firstDay = Math.max(firstDay, day);
+            break;
+        default:
+            firstDay = Math.max(firstDay, day);
+            lastDay = Math.min(lastDay, day);
+            break;
+        }
+    }
+
+    private void addKeyword(String keyword) {
+        if (!keyword.isBlank()) {
+            keywords.add(keyword.trim().toLowerCase());
+        }
+    }
+
+    /**
+     * Returns whether the task satisfies every filter of the query; sorting and the limit do not apply.
+     */
+    public boolean matches(Task task) {
+        if (!types.isEmpty() && !types.contains(typeOf(task))) {
+            return false;
+        }
+        if (isDone != null && task.isDone() != isDone) {
+            return false;
+        }
+        if (hasDueBound()) {
+            OptionalLong day = task.getEndDay();
+            if (day.isEmpty() || day.getAsLong() < firstDay || day.getAsLong() > lastDay) {
+                return false;
+            }
+        }
+        String description = keywords.isEmpty() ? "" : task.getDescription().toLowerCase();
+        return keywords.stream().allMatch(description::contains);
+    }
+
+    private static char typeOf(Task task) {
+        if (task instanceof DeadlineTask) {
+            return 'D';
+        }
+        return task instanceof EventTask ? 'E' : 'T';
+    }
+
+    /**
+     * Returns whether the query only matches dated tasks ending within some days.
+     */
+    public boolean hasDueBound() {
+        return firstDay != Long.MIN_VALUE || lastDay != Long.MAX_VALUE;
+    }
+
+    /**
+     * Returns the first epoch day a matching task may end on, or Long.MIN_VALUE if there is no lower bound.
+     */
+    public long getFirstDay() {
+        return firstDay;
+    }
+
+    /**
+     * Returns the last epoch day a matching task may end on, or Long.MAX_VALUE if there is no upper bound.
+     */
+    public long getLastDay() {
+        return lastDay;
+    }
+
+    /**
+     * Returns whether matching tasks must be done, must not be, or null if either is fine.
+     */
+    public Boolean getDone() {
+        return isDone;
+    }
+
+    /**
+     * Returns the words that must all appear in the description, in lower case.
+     */
+    public List<String> getKeywords() {
+        return Collections.unmodifiableList(keywords);
+    }
+
+    public Sort getSort() {
+        return sort;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,214 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import nixchats.data.TaskListSnapshot;
+
+/**
+ * Writes snapshots of the task list on a background thread.
+ * Only the latest submitted snapshot is written: snapshots submitted while a write is in
+ * progress replace each other, so a burst of saves costs a single write. Each write goes to
+ * a temporary file that atomically replaces the history file.
+ */
+class AsyncSaver {
+    private final Storage storage;
+    private final Path target;
+    private final Path tempPath;
+    private final DurabilityMode durability;
+    private final long fsyncIntervalMillis;
+    private final Thread writer;
+
+    private TaskListSnapshot pending;
+    private boolean isWriting;
+    private boolean isClosed;
+    private long lastFsyncMillis;
+    private boolean hasUnforcedWrite;
+    private IOException failure;
+
+    /**
+     * Constructs and starts an AsyncSaver.
+     * @param storage Storage that writes snapshots in its current format.
+     * @param target History file to replace.
+     * @param durability When to force writes to disk.
+     * @param fsyncIntervalMillis Minimum time between forced writes in {@link DurabilityMode#FSYNC_INTERVAL}.
+     */
+    AsyncSaver(Storage storage, Path target, DurabilityMode durability, long fsyncIntervalMillis) {
+        assert durability != null : "Durability mode cannot be null";
+        assert fsyncIntervalMillis >= 0 : "Fsync interval cannot be negative";
+        this.storage = storage;
+        this.target = target;
+        this.tempPath = target.resolveSibling(target.getFileName() + ".tmp");
+        this.durability = durability;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.writer = new Thread(this::run, "nixchats-async-saver");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a snapshot for writing, replacing any snapshot that has not been written yet.
+     * @param snapshot Snapshot to write; released once written or superseded.
+     * @throws IOException if an earlier write failed.
+     */
+    synchronized void submit(TaskListSnapshot snapshot) throws IOException {
+        assert !isClosed : "AsyncSaver is closed";
+        if (pending != null) {
+            pending.release();
+        }
+        pending = snapshot;
+        notifyAll();
+        throwFailure();
+    }
+
+    /**
+     * Returns whether a submitted snapshot is still waiting to be written or being written.
+     */
+    synchronized boolean isBusy() {
+        return pending != null || isWriting;
+    }
+
+    /**
+     * Blocks until every submitted snapshot has been written.
+     * @throws IOException if a write failed or the wait was interrupted.
+     */
+    synchronized void flush() throws IOException {
+        try {
+            while (pending != null || isWriting) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for save", e);
+        }
+        throwFailure();
+    }
+
+    /**
+     * Writes any pending snapshot, forces it to disk unless writes are OS-buffered, and stops the thread.
+     * @throws IOException if the final write failed.
+     */
+    void close() throws IOException {
+        synchronized (this) {
+            isClosed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for save", e);
+        }
+        boolean shouldForce;
+        synchronized (this) {
+            shouldForce = hasUnforcedWrite && durability != DurabilityMode.OS_BUFFERED;
+            hasUnforcedWrite = false;
+        }
+        if (shouldForce) {
+            force(target);
+        }
+        synchronized (this) {
+            throwFailure();
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            TaskListSnapshot snapshot;
+            boolean shouldForce;
+            synchronized (this) {
+                try {
+                    while (pending == null && !isClosed && !isIntervalFsyncDue()) {
+                        waitForSnapshot();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (pending == null && isClosed) {
+                    return;
+                }
+                snapshot = pending;
+                pending = null;
+                isWriting = snapshot != null;
+                long now = System.currentTimeMillis();
+                shouldForce = snapshot == null || durability == DurabilityMode.FSYNC_ALWAYS
+                        || durability == DurabilityMode.FSYNC_INTERVAL && now - lastFsyncMillis >= fsyncIntervalMillis;
+                if (shouldForce) {
+                    lastFsyncMillis = now;
+                }
+                hasUnforcedWrite = !shouldForce && durability != DurabilityMode.OS_BUFFERED;
+            }
+
+            // Disk I/O happens outside the lock, so submitting the next snapshot never waits for it
+            IOException error = null;
+            try {
+                if (snapshot == null) {
+                    force(target);
+                } else {
+                    write(snapshot, shouldForce);
+                }
+            } catch (IOException e) {
+                error = e;
+            } finally {
+                if (snapshot != null) {
+                    snapshot.release();
+                }
+            }
+
+            synchronized (this) {
+                isWriting = false;
+                if (error != null) {
+                    failure = error;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the interval since the last forced write has passed while the history file
+     * still holds a write that was not forced.
+     */
+    private boolean isIntervalFsyncDue() {
+        return hasUnforcedWrite && durability == DurabilityMode.FSYNC_INTERVAL
+                && System.currentTimeMillis() - lastFsyncMillis >= fsyncIntervalMillis;
+    }
+
+    /**
+     * Waits for a snapshot, or until the interval since the last forced write has passed
+     * if the history file holds a write that was not forced.
+     */
+    private void waitForSnapshot() throws InterruptedException {
+        if (hasUnforcedWrite && durability == DurabilityMode.FSYNC_INTERVAL) {
+            wait(Math.max(1, lastFsyncMillis + fsyncIntervalMillis - System.currentTimeMillis()));
+        } else {
+            wait();
+        }
+    }
+
+    private void write(TaskListSnapshot snapshot, boolean shouldForce) throws IOException {
+        storage.writeSnapshot(tempPath, snapshot);
+        if (shouldForce) {
+            force(tempPath);
+        }
+        Files.move(tempPath, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void force(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+}
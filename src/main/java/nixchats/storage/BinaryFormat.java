@@ -0,0 +1,259 @@
+package nixchats.storage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.data.TaskListSnapshot;
+import nixchats.util.DateFormatter;
+
+/**
+ * Compact binary encoding of a task history file.
+ * <pre>
+ *   magic "NXCB", version byte
+ *   varint n, n dictionary strings (varint length + UTF-8 bytes)
+ *   varint m, m records (varint length + payload)
+ * </pre>
+ * A record payload is a flags byte (type, done, and which dates are dictionary strings),
+ * the dictionary index of the description, for dated tasks one or two dates, and since version 2
+ * the varint task ID.
+ * Dates that round-trip through {@link DateFormatter#toEpochDay(String)} are stored as
+ * zigzag-encoded epoch days; anything else is stored as a dictionary string.
+ */
+class BinaryFormat {
+    static final byte[] MAGIC = {'N', 'X', 'C', 'B'};
+    static final int VERSION = 2;
+    /** Last version whose records have no task IDs. */
+    private static final int VERSION_WITHOUT_IDS = 1;
+
+    private static final int TYPE_TODO = 0;
+    private static final int TYPE_DEADLINE = 1;
+    private static final int TYPE_EVENT = 2;
+    private static final int TYPE_MASK = 0x03;
+    private static final int FLAG_DONE = 0x04;
+    private static final int FLAG_FIRST_DATE_STRING = 0x08;
+    private static final int FLAG_SECOND_DATE_STRING = 0x10;
+
+    /**
+     * Returns true if the given file header starts with the binary magic.
+     * @param header First bytes of the file.
+     * @param length Number of valid bytes in the header.
+     */
+    static boolean isBinary(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given tasks in binary format.
+     * @param out Stream to write to.
+     * @param snapshot Tasks to write, in order.
+     * @throws IOException if the stream cannot be written.
+     */
+    static void write(OutputStream out, TaskListSnapshot snapshot) throws IOException {
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            Task t = snapshot.getTask(i);
+            dictionary.putIfAbsent(t.getDescription(), dictionary.size());
+            for (String date : datesOf(t)) {
+                if (epochDayOf(date).isEmpty()) {
+                    dictionary.putIfAbsent(date, dictionary.size());
+                }
+            }
+        }
+
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarint(out, dictionary.size());
+        for (String s : dictionary.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+        }
+
+        writeVarint(out, snapshot.size());
+        ByteArrayOutputStream record = new ByteArrayOutputStream(32);
+        for (int i = 0; i < snapshot.size(); i++) {
+            record.reset();
+            encodeRecord(record, snapshot.getTask(i), snapshot.isDone(i), dictionary);
+            writeVarint(out, record.size());
+            record.writeTo(out);
+        }
+    }
+
+    private static void encodeRecord(ByteArrayOutputStream out, Task t, boolean isDone,
+            Map<String, Integer> dictionary) throws IOException {
+        String[] dates = datesOf(t);
+        int flags = typeOf(t) | (isDone ? FLAG_DONE : 0);
+        OptionalLong[] days = new OptionalLong[dates.length];
+        for (int i = 0; i < dates.length; i++) {
+            days[i] = epochDayOf(dates[i]);
+            if (days[i].isEmpty()) {
+                flags |= i == 0 ? FLAG_FIRST_DATE_STRING : FLAG_SECOND_DATE_STRING;
+            }
+        }
+        out.write(flags);
+        writeVarint(out, dictionary.get(t.getDescription()));
+        for (int i = 0; i < dates.length; i++) {
+            if (days[i].isPresent()) {
+                writeVarint(out, zigzag(days[i].getAsLong()));
+            } else {
+                writeVarint(out, dictionary.get(dates[i]));
+            }
+        }
+        writeVarint(out, t.getId());
+    }
+
+    /**
+     * Reads tasks written by {@link #write}. Malformed records are skipped with a warning.
+     * @param in Stream positioned at the start of the file.
+     * @return Tasks in file order, with their stored completion status.
+     * @throws IOException if the header is invalid or the stream cannot be read.
+     */
+    static List<Task> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!isBinary(magic, magic.length)) {
+            throw new IOException("Not a binary task file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION && version != VERSION_WITHOUT_IDS) {
+            throw new IOException("Unsupported storage format version: " + version);
+        }
+
+        String[] dictionary = new String[(int) readVarint(data)];
+        for (int i = 0; i < dictionary.length; i++) {
+            byte[] bytes = new byte[(int) readVarint(data)];
+            data.readFully(bytes);
+            dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        int count = (int) readVarint(data);
+        List<Task> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] record = new byte[(int) readVarint(data)];
+            data.readFully(record);
+            try {
+                tasks.add(decodeRecord(record, dictionary, version > VERSION_WITHOUT_IDS));
+            } catch (Exception e) {
+                System.err.println("Warning: Skipping invalid task record #" + (i + 1));
+            }
+        }
+        return tasks;
+    }
+
+    private static Task decodeRecord(byte[] record, String[] dictionary, boolean hasId) throws IOException {
+        InputStream in = new ByteArrayInputStream(record);
+        int flags = in.read();
+        String desc = dictionary[(int) readVarint(in)];
+        boolean isDone = (flags & FLAG_DONE) != 0;
+        char type;
+        String first = null;
+        String second = null;
+        switch (flags & TYPE_MASK) {
+        case TYPE_TODO:
+            type = 'T';
+            break;
+        case TYPE_DEADLINE:
+            type = 'D';
+            first = readDate(in, flags, FLAG_FIRST_DATE_STRING, dictionary);
+            break;
+        case TYPE_EVENT:
+            type = 'E';
+            first = readDate(in, flags, FLAG_FIRST_DATE_STRING, dictionary);
+            second = readDate(in, flags, FLAG_SECOND_DATE_STRING, dictionary);
+            break;
+        default:
+            throw new IOException("Unknown task type: " + (flags & TYPE_MASK));
+        }
+        long id = hasId ? readVarint(in) : Storage.NO_ID;
+        return Storage.newTask(id, type, isDone, desc, first, second);
+    }
+
+    private static String readDate(InputStream in, int flags, int stringFlag, String[] dictionary)
+            throws IOException {
+        long value = readVarint(in);
+        return (flags & stringFlag) != 0 ? dictionary[(int) value] : DateFormatter.fromEpochDay(unzigzag(value));
+    }
+
+    private static int typeOf(Task t) {
+        if (t instanceof DeadlineTask) {
+            return TYPE_DEADLINE;
+        } else if (t instanceof EventTask) {
+            return TYPE_EVENT;
+        }
+        return TYPE_TODO;
+    }
+
+    private static String[] datesOf(Task t) {
+        if (t instanceof DeadlineTask d) {
+            return new String[] {d.getBy()};
+        } else if (t instanceof EventTask e) {
+            return new String[] {e.getFrom(), e.getTo()};
+        }
+        return new String[0];
+    }
+
+    /**
+     * Returns the epoch day of a date only if decoding it gives back the exact same string.
+     */
+    private static OptionalLong epochDayOf(String date) {
+        OptionalLong day = DateFormatter.toEpochDay(date);
+        if (day.isPresent() && DateFormatter.fromEpochDay(day.getAsLong()).equals(date)) {
+            return day;
+        }
+        return OptionalLong.empty();
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated varint");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
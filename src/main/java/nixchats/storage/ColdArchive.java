@@ -0,0 +1,139 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import nixchats.Task;
+
+/**
+ * Append-only segment files holding tasks that were archived out of the hot history file.
+ * Segments are named {@code <history file>.cold.<n>} and hold one record per line in the storage's
+ * codec. Records are only ever appended, to the newest segment until it reaches {@link #SEGMENT_SIZE},
+ * so archiving never rewrites data that is already on disk.
+ */
+class ColdArchive {
+    /** Segment size in bytes after which a new segment is started. */
+    static final long SEGMENT_SIZE = 1 << 22;
+
+    private final Path hotPath;
+    private final String prefix;
+    private final TaskCodec codec;
+
+    /**
+     * Constructs the archive belonging to the given history file.
+     * @param hotPath Path of the history file.
+     * @param codec Codec for the records of every segment.
+     */
+    ColdArchive(Path hotPath, TaskCodec codec) {
+        this.hotPath = hotPath;
+        this.prefix = hotPath.getFileName() + ".cold.";
+        this.codec = codec;
+    }
+
+    /**
+     * Appends the given tasks and forces them to disk.
+     * @param tasks Tasks to archive, in order.
+     * @throws IOException if the segment cannot be written.
+     */
+    void append(List<Task> tasks) throws IOException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder(tasks.size() * 48);
+        for (Task t : tasks) {
+            codec.encode(t, t.isDone(), sb);
+            sb.append('\n');
+        }
+        List<Path> segments = segments();
+        Path target = segments.isEmpty() ? segmentPath(1) : segments.get(segments.size() - 1);
+        if (Files.exists(target) && Files.size(target) >= SEGMENT_SIZE) {
+            target = segmentPath(segmentNumber(target) + 1);
+        }
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND)) {
+            ByteBuffer buf = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+            channel.force(false);
+        }
+    }
+
+    /**
+     * Lazily reads archived tasks whose description contains the keyword, ignoring case.
+     * Segments are opened one at a time as the stream is consumed, and lines that cannot
+     * match are skipped before they are decoded.
+     * @param keyword Keyword to be searched for.
+     * @return Matching tasks, oldest first. The stream must be closed.
+     * @throws IOException if the segments cannot be listed.
+     */
+    Stream<Task> find(String keyword) throws IOException {
+        String folded = keyword.toLowerCase();
+        // Text records hold the description verbatim unless it needed escaping
+        boolean canPrefilter = codec instanceof TextTaskCodec
+                && folded.chars().noneMatch(c -> "\\|\n\r".indexOf(c) >= 0);
+        return segments().stream()
+                .flatMap(ColdArchive::lines)
+                .filter(line -> !line.isBlank())
+                .filter(line -> !canPrefilter || line.toLowerCase().contains(folded))
+                .map(this::decodeOrNull)
+                .filter(Objects::nonNull)
+                .filter(t -> t.getDescription().toLowerCase().contains(folded));
+    }
+
+    /**
+     * Returns the existing segments in the order they were written.
+     * @throws IOException if the directory cannot be listed.
+     */
+    List<Path> segments() throws IOException {
+        Path dir = hotPath.toAbsolutePath().getParent();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> segmentNumber(p) > 0)
+                    .sorted((a, b) -> Integer.compare(segmentNumber(a), segmentNumber(b)))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return hotPath.resolveSibling(prefix + number);
+    }
+
+    private int segmentNumber(Path p) {
+        String name = p.getFileName().toString();
+        if (!name.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(name.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static Stream<String> lines(Path segment) {
+        try {
+            return Files.lines(segment, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Task decodeOrNull(String line) {
+        try {
+            return codec.decode(line.trim());
+        } catch (Exception e) {
+            System.err.println("Warning: Skipping invalid archived task line: " + line);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package nixchats.storage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import nixchats.Task;
+import nixchats.data.TaskListSnapshot;
+
+/**
+ * Text records compressed in independently deflated blocks.
+ * <pre>
+ *   magic "NXCZ", version byte
+ *   blocks: varint raw length, varint compressed length, CRC-32 of the raw bytes, raw deflate data
+ *   varint 0
+ * </pre>
+ * Every block holds whole lines encoded by the storage's {@link TaskCodec}, so blocks can be
+ * inflated and decoded one at a time while streaming, or several at a time on a fork/join pool.
+ */
+class CompressedFormat {
+    static final byte[] MAGIC = {'N', 'X', 'C', 'Z'};
+    static final int VERSION = 1;
+    /** Uncompressed size at which a block is closed; a block can exceed it by one line. */
+    static final int BLOCK_SIZE = 1 << 18;
+
+    private static final int MAX_BLOCK_SIZE = 1 << 28;
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    /**
+     * Decoded tasks and invalid lines of one block.
+     */
+    private record Block(List<Task> tasks, MalformedLines malformed) {
+    }
+
+    /**
+     * Returns true if the given file header starts with the compressed magic.
+     * @param header First bytes of the file.
+     * @param length Number of valid bytes in the header.
+     */
+    static boolean isCompressed(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes the given tasks as compressed blocks of text records.
+     * @param out Stream to write to.
+     * @param snapshot Tasks to write, in order.
+     * @param codec Codec that encodes each record.
+     * @param level Deflate level from 0 to 9, or {@link Deflater#DEFAULT_COMPRESSION}.
+     * @throws IOException if the stream cannot be written.
+     */
+    static void write(OutputStream out, TaskListSnapshot snapshot, TaskCodec codec, int level) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(MAGIC);
+        data.write(VERSION);
+
+        Deflater deflater = new Deflater(level, true);
+        try {
+            StringBuilder block = new StringBuilder(BLOCK_SIZE + 256);
+            for (int i = 0; i < snapshot.size(); i++) {
+                codec.encode(snapshot.getTask(i), snapshot.isDone(i), block);
+                block.append('\n');
+                if (block.length() >= BLOCK_SIZE) {
+                    writeBlock(data, block, deflater);
+                    block.setLength(0);
+                }
+            }
+            if (block.length() > 0) {
+                writeBlock(data, block, deflater);
+            }
+        } finally {
+            deflater.end();
+        }
+        BinaryFormat.writeVarint(data, 0);
+        data.flush();
+    }
+
+    private static void writeBlock(DataOutputStream out, StringBuilder block, Deflater deflater) throws IOException {
+        byte[] raw = block.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(raw.length / 4 + 64);
+        byte[] buf = new byte[8192];
+        while (!deflater.finished()) {
+            compressed.write(buf, 0, deflater.deflate(buf));
+        }
+
+        BinaryFormat.writeVarint(out, raw.length);
+        BinaryFormat.writeVarint(out, compressed.size());
+        out.writeInt((int) crc.getValue());
+        compressed.writeTo(out);
+    }
+
+    /**
+     * Reads tasks written by {@link #write}, skipping invalid lines and corrupt blocks with a warning.
+     * @param in Stream positioned at the start of the file.
+     * @param codec Codec that decodes each record.
+     * @param pool Pool to decode blocks on, or null to decode them one by one on the calling thread.
+     * @param sink Receives the decoded tasks in file order, on the calling thread.
+     * @throws IOException if the header is invalid, the stream is truncated or decoding is interrupted.
+     */
+    static void read(InputStream in, TaskCodec codec, ForkJoinPool pool, Consumer<Task> sink) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!isCompressed(magic, magic.length)) {
+            throw new IOException("Not a compressed task file");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported storage format version: " + version);
+        }
+
+        MalformedLines malformed = new MalformedLines();
+        int batchSize = pool == null ? 1 : pool.getParallelism() * BLOCKS_PER_THREAD;
+        List<Callable<Block>> batch = new ArrayList<>(batchSize);
+        int blockNumber = 0;
+        boolean isEnd = false;
+        while (!isEnd) {
+            int rawLength = readLength(data);
+            isEnd = rawLength == 0;
+            if (!isEnd) {
+                byte[] compressed = new byte[readLength(data)];
+                int crc = data.readInt();
+                data.readFully(compressed);
+                int number = ++blockNumber;
+                batch.add(() -> decodeBlock(number, compressed, rawLength, crc, codec));
+            }
+            if (batch.size() == batchSize || (isEnd && !batch.isEmpty())) {
+                runBatch(batch, pool, sink, malformed);
+                batch.clear();
+            }
+        }
+        malformed.report();
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        long length = BinaryFormat.readVarint(in);
+        if (length > MAX_BLOCK_SIZE) {
+            throw new IOException("Compressed block too large: " + length + " bytes");
+        }
+        return (int) length;
+    }
+
+    private static void runBatch(List<Callable<Block>> batch, ForkJoinPool pool, Consumer<Task> sink,
+            MalformedLines malformed) throws IOException {
+        try {
+            if (pool == null) {
+                for (Callable<Block> job : batch) {
+                    emit(job.call(), sink, malformed);
+                }
+                return;
+            }
+            for (Future<Block> future : pool.invokeAll(batch)) {
+                emit(future.get(), sink, malformed);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading tasks", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to decode tasks", e.getCause());
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to decode tasks", e);
+        }
+    }
+
+    private static void emit(Block block, Consumer<Task> sink, MalformedLines malformed) {
+        block.tasks().forEach(sink);
+        malformed.addAll(block.malformed());
+    }
+
+    private static Block decodeBlock(int number, byte[] compressed, int rawLength, int crc, TaskCodec codec) {
+        List<Task> tasks = new ArrayList<>();
+        MalformedLines malformed = new MalformedLines();
+        byte[] raw;
+        try {
+            raw = inflate(compressed, rawLength);
+        } catch (IOException e) {
+            System.err.println("Warning: Skipping corrupt compressed block #" + number + ": " + e.getMessage());
+            return new Block(tasks, malformed);
+        }
+        CRC32 actual = new CRC32();
+        actual.update(raw);
+        if ((int) actual.getValue() != crc) {
+            System.err.println("Warning: Skipping corrupt compressed block #" + number + ": checksum mismatch");
+            return new Block(tasks, malformed);
+        }
+
+        if (codec instanceof TextTaskCodec) {
+            new MappedTextReader(malformed).scan(ByteBuffer.wrap(raw), 0, raw.length, true, tasks::add);
+        } else {
+            decodeLines(new String(raw, StandardCharsets.UTF_8), codec, tasks, malformed);
+        }
+        return new Block(tasks, malformed);
+    }
+
+    private static byte[] inflate(byte[] compressed, int rawLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Truncated block");
+                }
+                length += n;
+            }
+            if (length != rawLength) {
+                throw new IOException("Block length mismatch");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void decodeLines(String text, TaskCodec codec, List<Task> tasks, MalformedLines malformed) {
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = text.length();
+            }
+            String line = text.substring(start, end).trim();
+            if (!line.isEmpty()) {
+                try {
+                    tasks.add(codec.decode(line));
+                } catch (Exception e) {
+                    malformed.add(line);
+                }
+            }
+            start = end + 1;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package nixchats.storage;
+
+/**
+ * How hard {@link Storage} tries to get asynchronous saves onto stable storage.
+ */
+public enum DurabilityMode {
+    /** Forces every write to disk before it replaces the history file. */
+    FSYNC_ALWAYS,
+    /** Forces a write to disk at most once per interval; writes in between are left to the OS. */
+    FSYNC_INTERVAL,
+    /** Never forces writes; the OS decides when they reach the disk. */
+    OS_BUFFERED
+}
@@ -0,0 +1,201 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import nixchats.Task;
+import nixchats.data.TaskList;
+
+/**
+ * Watches the history file for changes made outside the application and applies them to the
+ * in-memory list. The file is diffed line by line against the list, so only changed records
+ * turn into inserts, deletes or status changes, and tasks that did not change keep their identity.
+ * Records are compared without their task IDs, so hand-edited lines that drop the ID still match.
+ * Writes made by the owning {@link Storage} are recognised by their checksum and ignored.
+ * The file is read on the watcher thread, so by the time the change runs on the executor the list may have
+ * moved on; the change is then dropped with a warning rather than undoing edits that were not saved yet.
+ */
+class FileWatcher {
+    /** Quiet period after the last event before the file is read, so editors can finish writing. */
+    static final long DEBOUNCE_MILLIS = 100;
+
+    private final Storage storage;
+    private final Path filePath;
+    private final TaskList list;
+    private final Executor executor;
+    private final Runnable onChange;
+    private final WatchService watchService;
+    private final Thread thread;
+
+    /**
+     * Constructs and starts a FileWatcher.
+     * @param storage Storage that owns the file and its codec.
+     * @param filePath History file to watch.
+     * @param list List to apply changes to.
+     * @param executor Executor that runs every change to the list, e.g. the UI thread.
+     * @param onChange Run on the executor after external changes were applied.
+     * @throws IOException if the directory cannot be watched.
+     */
+    FileWatcher(Storage storage, Path filePath, TaskList list, Executor executor, Runnable onChange)
+            throws IOException {
+        this.storage = storage;
+        this.filePath = filePath.toAbsolutePath();
+        this.list = list;
+        this.executor = executor;
+        this.onChange = onChange;
+        Path dir = this.filePath.getParent();
+        this.watchService = dir.getFileSystem().newWatchService();
+        dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.thread = new Thread(this::run, "nixchats-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops watching the file.
+     * @throws IOException if the watch service cannot be closed.
+     */
+    void close() throws IOException {
+        watchService.close();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                if (!drain(watchService.take())) {
+                    continue;
+                }
+                WatchKey key;
+                while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    drain(key);
+                }
+                try {
+                    readChanges();
+                } catch (IOException e) {
+                    System.err.println("Warning: Failed to reload tasks: " + e.getMessage());
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // Watcher closed
+        }
+    }
+
+    /**
+     * Consumes the events of the given key.
+     * @return true if any of them concerns the history file.
+     */
+    private boolean drain(WatchKey key) {
+        boolean isRelevant = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            isRelevant |= filePath.getFileName().equals(event.context());
+        }
+        key.reset();
+        return isRelevant;
+    }
+
+    private void readChanges() throws IOException {
+        if (Files.notExists(filePath)) {
+            return;
+        }
+        long writeCount = storage.getWriteCount();
+        byte[] bytes = Files.readAllBytes(filePath);
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        if (storage.isOwnWrite(crc.getValue())) {
+            return;
+        }
+
+        TaskCodec codec = storage.getCodec();
+        List<Task> tasks = new ArrayList<>();
+        List<String> records = new ArrayList<>();
+        MalformedLines malformed = new MalformedLines();
+        StringBuilder sb = new StringBuilder(64);
+        for (String line : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            try {
+                Task t = codec.decode(line);
+                sb.setLength(0);
+                codec.encodeContent(t, t.isDone(), sb);
+                tasks.add(t);
+                records.add(sb.toString());
+            } catch (Exception e) {
+                malformed.add(line);
+            }
+        }
+        malformed.report();
+        executor.execute(() -> {
+            // A save since the file was read has replaced it, and one still pending is about to
+            if (storage.getWriteCount() != writeCount || storage.hasUnsavedChanges(list)) {
+                System.err.println("Warning: Ignored changes to " + filePath.getFileName()
+                        + " made while tasks were being saved.");
+                return;
+            }
+            if (apply(tasks, records)) {
+                storage.markSaved(list);
+                onChange.run();
+            }
+        });
+    }
+
+    /**
+     * Turns the list into the given tasks with as few changes as possible.
+     * @return true if the list was changed.
+     */
+    private boolean apply(List<Task> tasks, List<String> records) {
+        List<String> current = new ArrayList<>(list.size());
+        for (Task t : list) {
+            current.add(encode(t, t.isDone()));
+        }
+        List<LineDiff.Hunk> hunks = LineDiff.diff(current, records);
+        // Back to front, so the indexes of earlier hunks stay valid
+        for (int h = hunks.size() - 1; h >= 0; h--) {
+            LineDiff.Hunk hunk = hunks.get(h);
+            int oldLength = hunk.oldEnd() - hunk.oldStart();
+            int newLength = hunk.newEnd() - hunk.newStart();
+            int paired = Math.min(oldLength, newLength);
+            for (int j = 0; j < paired; j++) {
+                int index = hunk.oldStart() + j;
+                Task updated = tasks.get(hunk.newStart() + j);
+                if (encode(list.getTask(index), false).equals(encode(updated, false))) {
+                    list.setTaskDone(index, updated.isDone());
+                } else {
+                    list.deleteTask(index, false);
+                    list.insertTask(index, updated);
+                }
+            }
+            for (int j = oldLength - 1; j >= paired; j--) {
+                list.deleteTask(hunk.oldStart() + j, false);
+            }
+            for (int j = paired; j < newLength; j++) {
+                list.insertTask(hunk.oldStart() + j, tasks.get(hunk.newStart() + j));
+            }
+        }
+        return !hunks.isEmpty();
+    }
+
+    private String encode(Task t, boolean isDone) {
+        StringBuilder sb = new StringBuilder(64);
+        storage.getCodec().encodeContent(t, isDone, sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,379 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import nixchats.Task;
+import nixchats.data.TaskList;
+import nixchats.data.TaskListListener;
+import nixchats.data.TaskListSnapshot;
+
+/**
+ * Append-only log of task list mutations, replayed on top of the last snapshot.
+ * One record is written per insert, delete or status change:
+ * <pre>
+ *   I &lt;index&gt; &lt;encoded task&gt;
+ *   D &lt;index&gt;
+ *   M &lt;index&gt;
+ *   U &lt;index&gt;
+ * </pre>
+ * Once the journal grows past the compaction threshold, it is sealed and a fresh snapshot
+ * is written in the background. Deleting the sealed journal is the commit point of a
+ * compaction, so a crash at any step leaves files that {@link #recover()} can make sense of.
+ * <p>
+ * Records are appended while the list holds its write lock, so the journal never takes a lock of the list
+ * while it holds its own monitor; it seals from within {@link TaskList#snapshot(Runnable)} instead.
+ */
+class Journal implements TaskListListener {
+    private final Storage storage;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path sealedPath;
+    private final Path nextPath;
+    private final long compactionThreshold;
+    private final ExecutorService compactor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "nixchats-journal-compactor");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private FileChannel channel;
+    private TaskList attached;
+    private Future<?> pendingCompaction;
+    // Sealed, but the snapshot that goes with it is not written or handed to the compactor yet
+    private boolean isSnapshotPending;
+    private IOException failure;
+
+    /**
+     * Constructs a Journal for the given snapshot file.
+     * @param storage Storage that writes snapshots in its current format.
+     * @param snapshotPath Path of the snapshot the journal applies to.
+     * @param compactionThreshold Journal size in bytes after which a compaction is started.
+     */
+    Journal(Storage storage, Path snapshotPath, long compactionThreshold) {
+        assert snapshotPath != null : "Snapshot path cannot be null";
+        assert compactionThreshold > 0 : "Compaction threshold must be positive";
+        this.storage = storage;
+        this.snapshotPath = snapshotPath;
+        this.journalPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal");
+        this.sealedPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".journal.sealed");
+        this.nextPath = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".next");
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Finishes or rolls back a compaction that was interrupted by a crash.
+     * Must be called before the snapshot is read.
+     * @throws IOException if the files cannot be moved or deleted.
+     */
+    void recover() throws IOException {
+        if (Files.notExists(nextPath)) {
+            return;
+        }
+        if (Files.exists(sealedPath)) {
+            // Not committed: the old snapshot plus the sealed journal is still authoritative
+            Files.delete(nextPath);
+        } else {
+            Files.move(nextPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Replays the sealed and the live journal onto the given list, in that order.
+     * @param list List loaded from the snapshot.
+     * @return true if a sealed journal was replayed and the snapshot should be rewritten.
+     * @throws IOException if a journal cannot be read.
+     */
+    boolean replay(TaskList list) throws IOException {
+        MalformedLines malformed = new MalformedLines("journal record");
+        boolean hasSealed = Files.exists(sealedPath);
+        if (hasSealed) {
+            replay(sealedPath, list, malformed);
+        }
+        if (Files.exists(journalPath)) {
+            replay(journalPath, list, malformed);
+        }
+        malformed.report();
+        return hasSealed;
+    }
+
+    private void replay(Path path, TaskList list, MalformedLines malformed) throws IOException {
+        for (String record : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            if (record.isBlank()) {
+                continue;
+            }
+            try {
+                apply(record, list);
+            } catch (Exception e) {
+                // A torn last record is expected after a crash; anything else is reported the same way
+                malformed.add(record);
+            }
+        }
+    }
+
+    private void apply(String record, TaskList list) {
+        char op = record.charAt(0);
+        int end = record.indexOf(' ', 2);
+        int index = Integer.parseInt(end < 0 ? record.substring(2) : record.substring(2, end));
+        int bound = op == 'I' ? list.size() : list.size() - 1;
+        if (index < 0 || index > bound) {
+            throw new IllegalArgumentException("Journal index out of range: " + index);
+        }
+        switch (op) {
+        case 'I':
+            list.insertTask(index, storage.getCodec().decode(record.substring(end + 1)));
+            break;
+        case 'D':
+            list.deleteTask(index, false);
+            break;
+        case 'M':
+            list.setTaskDone(index, true);
+            break;
+        case 'U':
+            list.setTaskDone(index, false);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown journal record: " + op);
+        }
+    }
+
+    /**
+     * Starts recording mutations of the given list.
+     * @param list List whose mutations should be journaled.
+     * @throws IOException if the journal cannot be opened.
+     */
+    void attach(TaskList list) throws IOException {
+        TaskList previous;
+        synchronized (this) {
+            if (channel == null) {
+                channel = openJournal();
+            }
+            previous = attached;
+            attached = list;
+        }
+        if (previous != null) {
+            previous.removeListener(this);
+        }
+        list.addListener(this);
+    }
+
+    boolean isAttachedTo(TaskList list) {
+        return attached == list;
+    }
+
+    /**
+     * Forces journaled records to disk and starts a background compaction if the journal is too large.
+     * @throws IOException if an earlier append or the sync itself failed.
+     */
+    void sync() throws IOException {
+        TaskList list;
+        synchronized (this) {
+            throwFailure();
+            channel.force(false);
+            if (channel.size() < compactionThreshold || isCompacting()) {
+                return;
+            }
+            list = attached;
+        }
+        AtomicBoolean isSealed = new AtomicBoolean();
+        TaskListSnapshot snapshot = list.snapshot(() -> isSealed.set(trySeal(true)));
+        synchronized (this) {
+            if (!isSealed.get()) {
+                snapshot.release();
+                throwFailure();
+                return;
+            }
+            pendingCompaction = compactor.submit(() -> {
+                try {
+                    writeSnapshot(snapshot);
+                } catch (IOException e) {
+                    // The sealed journal is kept, so nothing is lost; the next compaction retries
+                    System.err.println("Warning: Journal compaction failed: " + e.getMessage());
+                } finally {
+                    snapshot.release();
+                }
+            });
+            isSnapshotPending = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Writes a full snapshot of the given list on the calling thread and starts an empty journal.
+     * @param list List to write.
+     * @throws IOException if the snapshot cannot be written.
+     */
+    void rewrite(TaskList list) throws IOException {
+        AtomicBoolean isSealed = new AtomicBoolean();
+        TaskListSnapshot snapshot = list.snapshot(() -> isSealed.set(trySeal(false)));
+        try {
+            synchronized (this) {
+                if (!isSealed.get()) {
+                    throwFailure();
+                }
+                writeSnapshot(snapshot);
+            }
+        } finally {
+            if (isSealed.get()) {
+                synchronized (this) {
+                    isSnapshotPending = false;
+                    notifyAll();
+                }
+            }
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Waits for any running compaction and closes the journal.
+     * @throws IOException if the journal cannot be closed.
+     */
+    void close() throws IOException {
+        TaskList previous;
+        synchronized (this) {
+            previous = attached;
+            attached = null;
+        }
+        if (previous != null) {
+            previous.removeListener(this);
+        }
+        synchronized (this) {
+            awaitCompaction();
+            compactor.shutdown();
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    @Override
+    public void taskInserted(int index, Task task) {
+        append("I " + index + " " + storage.getCodec().encode(task));
+    }
+
+    @Override
+    public void taskDeleted(int index, Task task) {
+        append("D " + index);
+    }
+
+    @Override
+    public void taskStatusChanged(int index, Task task) {
+        append((task.isDone() ? "M " : "U ") + index);
+    }
+
+    private synchronized void append(String record) {
+        try {
+            ByteBuffer buf = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buf.hasRemaining()) {
+                channel.write(buf);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Seals the journal, unless {@code onlyIfFull} is set and it is below the threshold or already being
+     * compacted; otherwise any compaction is finished first. No compaction starts until the snapshot that
+     * goes with the sealed journal has been handed over.
+     * Runs while the list is locked against writes, so the records in the sealed journal are exactly
+     * those in the snapshot taken together with it.
+     * @return true if the journal was sealed; otherwise a failure is left for {@link #throwFailure()}.
+     */
+    private synchronized boolean trySeal(boolean onlyIfFull) {
+        try {
+            if (onlyIfFull && (channel.size() < compactionThreshold || isCompacting())) {
+                return false;
+            }
+            if (!onlyIfFull) {
+                while (isSnapshotPending) {
+                    wait();
+                }
+                awaitCompaction();
+            }
+            if (channel == null) {
+                channel = openJournal();
+            }
+            seal();
+            isSnapshotPending = true;
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = new IOException("Interrupted while waiting for journal compaction", e);
+            return false;
+        } catch (IOException e) {
+            failure = e;
+            return false;
+        }
+    }
+
+    private void throwFailure() throws IOException {
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            throw e;
+        }
+    }
+
+    private boolean isCompacting() {
+        return isSnapshotPending || pendingCompaction != null && !pendingCompaction.isDone();
+    }
+
+    private void awaitCompaction() throws IOException {
+        if (pendingCompaction == null) {
+            return;
+        }
+        try {
+            pendingCompaction.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for journal compaction", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Journal compaction failed", e.getCause());
+        } finally {
+            pendingCompaction = null;
+        }
+    }
+
+    /**
+     * Moves the live journal aside so a snapshot can be written, and reopens an empty one.
+     * A sealed journal left behind by a failed compaction is extended rather than replaced.
+     */
+    private void seal() throws IOException {
+        channel.force(false);
+        channel.close();
+        if (Files.exists(sealedPath)) {
+            Files.write(sealedPath, Files.readAllBytes(journalPath), StandardOpenOption.APPEND);
+            Files.delete(journalPath);
+        } else {
+            Files.move(journalPath, sealedPath, StandardCopyOption.ATOMIC_MOVE);
+        }
+        channel = openJournal();
+    }
+
+    private void writeSnapshot(TaskListSnapshot snapshot) throws IOException {
+        storage.writeSnapshot(nextPath, snapshot);
+        try (FileChannel next = FileChannel.open(nextPath, StandardOpenOption.WRITE)) {
+            next.force(true);
+        }
+        Files.delete(sealedPath); // commit point
+        Files.move(nextPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private FileChannel openJournal() throws IOException {
+        return FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+}
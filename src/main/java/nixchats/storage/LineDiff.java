@@ -0,0 +1,162 @@
+package nixchats.storage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line-level diff between two versions of the history file, using Myers' O(ND) algorithm
+ * on whatever remains after trimming the common prefix and suffix.
+ */
+class LineDiff {
+    /** Edit distance beyond which the differing middle is treated as one replaced block. */
+    static final int MAX_EDIT_DISTANCE = 4096;
+
+    /**
+     * Lines {@code [oldStart, oldEnd)} of the old version replaced by lines {@code [newStart, newEnd)}
+     * of the new version. Either range may be empty.
+     */
+    record Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+    }
+
+    /**
+     * Returns the hunks that turn {@code a} into {@code b}, in ascending order.
+     * @param a Old lines.
+     * @param b New lines.
+     */
+    static List<Hunk> diff(List<String> a, List<String> b) {
+        int prefix = 0;
+        int max = Math.min(a.size(), b.size());
+        while (prefix < max && a.get(prefix).equals(b.get(prefix))) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < max - prefix
+                && a.get(a.size() - 1 - suffix).equals(b.get(b.size() - 1 - suffix))) {
+            suffix++;
+        }
+        int aEnd = a.size() - suffix;
+        int bEnd = b.size() - suffix;
+        if (prefix == aEnd && prefix == bEnd) {
+            return Collections.emptyList();
+        }
+
+        List<int[]> path = shortestEditPath(a.subList(prefix, aEnd), b.subList(prefix, bEnd));
+        if (path == null) {
+            return List.of(new Hunk(prefix, aEnd, prefix, bEnd));
+        }
+        return toHunks(path, prefix);
+    }
+
+    /**
+     * Returns the points (x, y) of a shortest edit path from (0, 0) to (n, m), or null if the
+     * edit distance exceeds {@link #MAX_EDIT_DISTANCE}.
+     */
+    private static List<int[]> shortestEditPath(List<String> a, List<String> b) {
+        int n = a.size();
+        int m = b.size();
+        int limit = Math.min(n + m, MAX_EDIT_DISTANCE);
+        // trace.get(d)[k + d] is the furthest x reached on diagonal k = x - y with d edits, or -1
+        List<int[]> trace = new ArrayList<>();
+        for (int d = 0; d <= limit; d++) {
+            int[] v = new int[2 * d + 1];
+            for (int k = -d; k <= d; k += 2) {
+                int x = 0;
+                if (d > 0) {
+                    int[] previous = trace.get(d - 1);
+                    x = isInsertion(previous, d, k)
+                            ? furthest(previous, d - 1, k + 1)
+                            : furthest(previous, d - 1, k - 1) + 1;
+                }
+                int y = x - k;
+                if (x < 0 || x > n || y < 0 || y > m) {
+                    v[k + d] = -1;
+                    continue;
+                }
+                while (x < n && y < m && a.get(x).equals(b.get(y))) {
+                    x++;
+                    y++;
+                }
+                v[k + d] = x;
+                if (x == n && y == m) {
+                    trace.add(v);
+                    return backtrack(trace, n, m);
+                }
+            }
+            trace.add(v);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the furthest x on diagonal k after d edits, or -1 if it was not reached.
+     */
+    private static int furthest(int[] v, int d, int k) {
+        return k < -d || k > d ? -1 : v[k + d];
+    }
+
+    /**
+     * Returns whether diagonal k is best reached at step d by an insertion from diagonal k + 1
+     * rather than a deletion from diagonal k - 1.
+     */
+    private static boolean isInsertion(int[] previous, int d, int k) {
+        int down = furthest(previous, d - 1, k + 1);
+        int right = furthest(previous, d - 1, k - 1);
+        return right < 0 || (down >= 0 && right < down);
+    }
+
+    private static List<int[]> backtrack(List<int[]> trace, int n, int m) {
+        List<int[]> points = new ArrayList<>();
+        int x = n;
+        int y = m;
+        for (int d = trace.size() - 1; d > 0; d--) {
+            int[] previous = trace.get(d - 1);
+            int k = x - y;
+            int prevK = isInsertion(previous, d, k) ? k + 1 : k - 1;
+            int prevX = furthest(previous, d - 1, prevK);
+            int prevY = prevX - prevK;
+            while (x > prevX && y > prevY) {
+                points.add(new int[] {x, y});
+                x--;
+                y--;
+            }
+            points.add(new int[] {x, y});
+            x = prevX;
+            y = prevY;
+        }
+        while (x > 0) {
+            points.add(new int[] {x, y});
+            x--;
+            y--;
+        }
+        points.add(new int[] {0, 0});
+        Collections.reverse(points);
+        return points;
+    }
+
+    /**
+     * Groups consecutive non-diagonal steps of the path into hunks.
+     */
+    private static List<Hunk> toHunks(List<int[]> path, int offset) {
+        List<Hunk> hunks = new ArrayList<>();
+        int hunkX = -1;
+        int hunkY = -1;
+        for (int i = 1; i < path.size(); i++) {
+            int[] from = path.get(i - 1);
+            int[] to = path.get(i);
+            boolean isDiagonal = to[0] - from[0] == 1 && to[1] - from[1] == 1;
+            if (!isDiagonal && hunkX < 0) {
+                hunkX = from[0];
+                hunkY = from[1];
+            } else if (isDiagonal && hunkX >= 0) {
+                hunks.add(new Hunk(offset + hunkX, offset + from[0], offset + hunkY, offset + from[1]));
+                hunkX = -1;
+            }
+        }
+        if (hunkX >= 0) {
+            int[] end = path.get(path.size() - 1);
+            hunks.add(new Hunk(offset + hunkX, offset + end[0], offset + hunkY, offset + end[1]));
+        }
+        return hunks;
+    }
+}
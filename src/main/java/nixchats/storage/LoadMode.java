@@ -0,0 +1,19 @@
+package nixchats.storage;
+
+/**
+ * Strategies {@link Storage} can use to read a text history file.
+ */
+public enum LoadMode {
+    /**
+     * Picks {@link #MAPPED} for files of at least {@link Storage#MAPPED_LOAD_THRESHOLD} bytes, and
+     * {@link #PARALLEL} for files of at least {@link Storage#PARALLEL_LOAD_THRESHOLD} bytes on multi-core machines.
+     * Compressed files of at least {@link Storage#MAPPED_LOAD_THRESHOLD} bytes are decoded in parallel.
+     */
+    AUTO,
+    /** Reads the file line by line. */
+    STREAMING,
+    /** Scans a memory-mapped view of the file without creating a String per line. */
+    MAPPED,
+    /** Decodes newline-aligned chunks of a memory-mapped view of the file on a fork/join pool. */
+    PARALLEL
+}
@@ -0,0 +1,71 @@
+package nixchats.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects lines that could not be decoded so they can be reported once per load
+ * instead of once per line. Task lines and journal records are reported the same way.
+ */
+class MalformedLines {
+    private static final int MAX_SAMPLES = 5;
+
+    private final String kind;
+    private final List<String> samples = new ArrayList<>();
+    private int count;
+
+    MalformedLines() {
+        this("task line");
+    }
+
+    /**
+     * Constructs an empty collection of lines of the given kind.
+     * @param kind What a line is, in the singular, e.g. "journal record".
+     */
+    MalformedLines(String kind) {
+        this.kind = kind;
+    }
+
+    void add(String line) {
+        count++;
+        if (samples.size() < MAX_SAMPLES) {
+            samples.add(line);
+        }
+    }
+
+    /**
+     * Adds the lines collected by another instance, keeping samples in order.
+     * @param other Lines collected from a later part of the file.
+     */
+    void addAll(MalformedLines other) {
+        count += other.count;
+        for (String line : other.samples) {
+            if (samples.size() >= MAX_SAMPLES) {
+                break;
+            }
+            samples.add(line);
+        }
+    }
+
+    int count() {
+        return count;
+    }
+
+    /**
+     * Prints a single warning summarising all skipped lines, if there were any.
+     */
+    void report() {
+        if (count == 0) {
+            return;
+        }
+        StringBuilder sb = new StringBuilder("Warning: Skipping ").append(count).append(" invalid ")
+                .append(kind).append("(s):");
+        for (String line : samples) {
+            sb.append("\n  ").append(line);
+        }
+        if (count > samples.size()) {
+            sb.append("\n  ...");
+        }
+        System.err.println(sb);
+    }
+}
@@ -0,0 +1,193 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+import nixchats.Task;
+
+/**
+ * Reads the text format straight out of a memory-mapped file.
+ * Record and field boundaries are found by scanning bytes, and Strings are only created for
+ * the final task fields. Produces the same tasks as {@link TextTaskCodec#decode(CharSequence)}.
+ */
+class MappedTextReader {
+    /** Largest region mapped at once; lines never straddle two regions. */
+    static final long WINDOW_SIZE = 1L << 28;
+    private static final int MAX_FIELDS = TextTaskCodec.MAX_FIELDS;
+
+    private final MalformedLines malformed;
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private final boolean[] isEscaped = new boolean[MAX_FIELDS];
+    private byte[] scratch = new byte[256];
+
+    /**
+     * Constructs a reader that records invalid lines in the given collector.
+     * @param malformed Collector for lines that cannot be decoded.
+     */
+    MappedTextReader(MalformedLines malformed) {
+        this.malformed = malformed;
+    }
+
+    /**
+     * Decodes every line of the given file, skipping invalid lines with a single warning.
+     * @param path Text file to read.
+     * @param sink Receives the decoded tasks in file order.
+     * @throws IOException if the file cannot be mapped.
+     */
+    static void read(Path path, Consumer<Task> sink) throws IOException {
+        MalformedLines malformed = new MalformedLines();
+        MappedTextReader reader = new MappedTextReader(malformed);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long length = Math.min(WINDOW_SIZE, size - start);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                int consumed = reader.scan(buf, 0, (int) length, start + length == size, sink);
+                if (consumed == 0) {
+                    throw new IOException("Task line longer than " + WINDOW_SIZE + " bytes");
+                }
+                start += consumed;
+            }
+        }
+        malformed.report();
+    }
+
+    /**
+     * Decodes all complete lines in {@code buf[from, to)}.
+     * @param isLast Whether {@code to} is the end of the file, so a trailing line without newline is complete.
+     * @return Offset after the last complete line, relative to {@code from}.
+     */
+    int scan(ByteBuffer buf, int from, int to, boolean isLast, Consumer<Task> sink) {
+        int lineStart = from;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && buf.get(lineEnd) != '\n') {
+                lineEnd++;
+            }
+            if (lineEnd == to && !isLast) {
+                break;
+            }
+            Task t = decodeLine(buf, lineStart, lineEnd);
+            if (t != null) {
+                sink.accept(t);
+            }
+            lineStart = lineEnd + 1;
+        }
+        return Math.min(lineStart, to) - from;
+    }
+
+    /**
+     * Decodes one line, or returns null if it is blank or invalid.
+     */
+    private Task decodeLine(ByteBuffer buf, int start, int end) {
+        // Same characters as String.trim()
+        while (start < end && (buf.get(start) & 0xFF) <= ' ') {
+            start++;
+        }
+        while (end > start && (buf.get(end - 1) & 0xFF) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return null;
+        }
+
+        int count = splitFields(buf, start, end);
+        try {
+            if (count < 3 || fieldEnd[0] - fieldStart[0] != 1) {
+                throw new IllegalArgumentException("Missing fields");
+            }
+            char type = (char) buf.get(fieldStart[0]);
+            boolean isDone = fieldEnd[1] - fieldStart[1] == 1 && buf.get(fieldStart[1]) == '1';
+            int required = TextTaskCodec.requiredFields(type);
+            if (count < required) {
+                throw new IllegalArgumentException("Missing fields");
+            }
+            String desc = field(buf, 2);
+            String first = required > 3 ? field(buf, 3) : null;
+            String second = required > 4 ? field(buf, 4) : null;
+            long id = count > required ? id(buf, required) : Storage.NO_ID;
+            return Storage.newTask(id, type, isDone, desc, first, second);
+        } catch (Exception e) {
+            malformed.add(string(buf, start, end - start));
+            return null;
+        }
+    }
+
+    /**
+     * Records the bounds of up to {@link #MAX_FIELDS} fields, trimming whitespace around each unescaped '|'.
+     * @return Number of fields, not counting trailing empty ones (as {@link String#split} does).
+     */
+    private int splitFields(ByteBuffer buf, int start, int end) {
+        int count = 0;
+        int nonEmpty = 0;
+        int fieldFrom = start;
+        boolean hasBackslash = false;
+        for (int i = start; i <= end; i++) {
+            if (i < end) {
+                byte b = buf.get(i);
+                if (b == '\\' && i + 1 < end) {
+                    hasBackslash = true;
+                    i++; // skip the escaped character
+                    continue;
+                }
+                if (b != '|') {
+                    continue;
+                }
+            }
+            int s = fieldFrom;
+            int e = i;
+            while (s < e && TextTaskCodec.isRegexSpace(buf.get(s))) {
+                s++;
+            }
+            while (e > s && TextTaskCodec.isRegexSpace(buf.get(e - 1))) {
+                e--;
+            }
+            if (count < MAX_FIELDS) {
+                fieldStart[count] = s;
+                fieldEnd[count] = e;
+                isEscaped[count] = hasBackslash;
+            }
+            hasBackslash = false;
+            count++;
+            if (e > s) {
+                nonEmpty = count;
+            }
+            fieldFrom = i + 1;
+        }
+        return nonEmpty;
+    }
+
+    private long id(ByteBuffer buf, int index) {
+        int length = fieldEnd[index] - fieldStart[index];
+        if (length > 21) {
+            return Storage.NO_ID;
+        }
+        // IDs are ASCII, so one byte is one char
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = fieldStart[index]; i < fieldEnd[index]; i++) {
+            sb.append((char) (buf.get(i) & 0xFF));
+        }
+        return TextTaskCodec.parseId(sb, 0, length);
+    }
+
+    private String field(ByteBuffer buf, int index) {
+        String raw = string(buf, fieldStart[index], fieldEnd[index] - fieldStart[index]);
+        return isEscaped[index] ? TextTaskCodec.unescape(raw, 0, raw.length()) : raw;
+    }
+
+    private String string(ByteBuffer buf, int offset, int length) {
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buf.get(offset, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,116 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import nixchats.Task;
+
+/**
+ * Decodes a memory-mapped text file in newline-aligned chunks on a {@link ForkJoinPool}.
+ * Chunks are decoded independently and handed to the sink in file order, so the result
+ * is identical to {@link MappedTextReader}.
+ */
+class ParallelTextReader {
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    /**
+     * Decoded tasks and invalid lines of one chunk.
+     */
+    private record Chunk(List<Task> tasks, MalformedLines malformed) {
+    }
+
+    /**
+     * Decodes every line of the given file, skipping invalid lines with a single warning.
+     * @param path Text file to read.
+     * @param pool Pool to decode chunks on.
+     * @param sink Receives the decoded tasks in file order, on the calling thread.
+     * @throws IOException if the file cannot be mapped or decoding is interrupted.
+     */
+    static void read(Path path, ForkJoinPool pool, Consumer<Task> sink) throws IOException {
+        MalformedLines malformed = new MalformedLines();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long start = 0;
+            while (start < size) {
+                long length = Math.min(MappedTextReader.WINDOW_SIZE, size - start);
+                MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                int end = start + length == size ? (int) length : lastLineEnd(buf, (int) length);
+                if (end == 0) {
+                    throw new IOException("Task line longer than " + MappedTextReader.WINDOW_SIZE + " bytes");
+                }
+                decodeWindow(buf, end, pool, sink, malformed);
+                start += end;
+            }
+        }
+        malformed.report();
+    }
+
+    private static void decodeWindow(MappedByteBuffer buf, int end, ForkJoinPool pool, Consumer<Task> sink,
+            MalformedLines malformed) throws IOException {
+        int chunkCount = Math.max(1, Math.min(pool.getParallelism() * CHUNKS_PER_THREAD, end / MIN_CHUNK_SIZE));
+        List<Callable<Chunk>> jobs = new ArrayList<>(chunkCount);
+        int chunkStart = 0;
+        for (int i = 1; i <= chunkCount && chunkStart < end; i++) {
+            int chunkEnd = i == chunkCount ? end : nextLineStart(buf, (int) ((long) end * i / chunkCount), end);
+            if (chunkEnd <= chunkStart) {
+                continue;
+            }
+            int from = chunkStart;
+            jobs.add(() -> {
+                List<Task> tasks = new ArrayList<>();
+                MalformedLines chunkMalformed = new MalformedLines();
+                new MappedTextReader(chunkMalformed).scan(buf, from, chunkEnd, true, tasks::add);
+                return new Chunk(tasks, chunkMalformed);
+            });
+            chunkStart = chunkEnd;
+        }
+
+        try {
+            for (Future<Chunk> future : pool.invokeAll(jobs)) {
+                Chunk chunk = future.get();
+                chunk.tasks().forEach(sink);
+                malformed.addAll(chunk.malformed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading tasks", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to decode tasks", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the offset just after the first newline at or after {@code from}, or {@code end} if there is none.
+     */
+    private static int nextLineStart(MappedByteBuffer buf, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Returns the offset just after the last newline before {@code end}, or 0 if there is none.
+     */
+    private static int lastLineEnd(MappedByteBuffer buf, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buf.get(i) == '\n') {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,578 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
+import nixchats.data.TaskListListener;
+import nixchats.exception.NixChatsException;
+import nixchats.util.DateFormatter;
+
+/**
+ * Storage that keeps tasks in an embedded SQLite database file instead of a flat file.
+ * The list returned by {@link #load()} is tracked, so adding, deleting, marking or unmarking a task
+ * issues a single-row statement and {@link #save(TaskList)} only commits the transaction.
+ * Saving any other list replaces the table with its tasks, which is also how a text history is imported.
+ * Archived tasks are moved to a second table in the same database, in the same transaction as the save.
+ * <p>
+ * Type, status and dates (as epoch days) are indexed columns, and the case-folded descriptions have an
+ * FTS5 trigram index, so {@link #findTasks(String, int, int)} and {@link #listTasks(int, int)} page through
+ * the database without materialising the whole list. {@link #load()} still reads every row, since commands
+ * work on the loaded list, but while {@link #isTracking(TaskList)} holds, the list and find commands read
+ * through the database instead of the list.
+ */
+public class SqlStorage implements TaskStorage, TaskListListener {
+    /** Distance between the order keys of appended tasks, leaving room for inserts in between. */
+    private static final long POSITION_GAP = 1 << 16;
+    private static final String COLUMNS = "type, done, description, first_date, second_date";
+    /** Shortest keyword the trigram index can find; shorter ones are searched for row by row. */
+    private static final int MIN_INDEXED_KEYWORD_LENGTH = 3;
+
+    private final Connection connection;
+    private final List<Row> rows = new ArrayList<>();
+    /** Tasks archived since the last commit, written again if the transaction has to be rolled back. */
+    private final List<Task> uncommittedArchive = new ArrayList<>();
+    private TaskListBacking listBacking = TaskListBacking.ARRAY;
+    private boolean isConcurrentList;
+    private int autoArchiveDays = -1;
+    private TaskList attached;
+    private SQLException failure;
+
+    /**
+     * Database row of a task in the tracked list.
+     */
+    private record Row(long id, long position) {
+    }
+
+    /**
+     * Constructs a SqlStorage object, creating the database and its schema if needed.
+     * @param filePath Path to the database file.
+     * @throws IOException if the database cannot be opened.
+     */
+    public SqlStorage(Path filePath) throws IOException {
+        assert filePath != null : "File path cannot be null";
+        try {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + filePath.toAbsolutePath());
+            createSchema();
+            connection.setAutoCommit(false);
+        } catch (SQLException e) {
+            throw new IOException("Failed to open task database: " + e.getMessage(), e);
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS tasks ("
+                    + "id INTEGER PRIMARY KEY, "
+                    + "position INTEGER NOT NULL, "
+                    + "type TEXT NOT NULL, "
+                    + "done INTEGER NOT NULL, "
+                    + "description TEXT NOT NULL, "
+                    + "folded_description TEXT NOT NULL, "
+                    + "first_date TEXT, "
+                    + "second_date TEXT, "
+                    + "first_day INTEGER, "
+                    + "second_day INTEGER)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_position ON tasks (position)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_type ON tasks (type, position)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_done ON tasks (done, position)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_first_day ON tasks (first_day)");
+            st.executeUpdate("CREATE INDEX IF NOT EXISTS tasks_second_day ON tasks (second_day)");
+            // Substring search cannot use an ordinary index, so descriptions are indexed by trigram instead
+            st.executeUpdate("DROP INDEX IF EXISTS tasks_description");
+            boolean hasTextIndex;
+            try (ResultSet rs = st.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'tasks_text'")) {
+                hasTextIndex = rs.next();
+            }
+            st.executeUpdate("CREATE VIRTUAL TABLE IF NOT EXISTS tasks_text USING fts5(folded_description, "
+                    + "content = 'tasks', content_rowid = 'id', tokenize = 'trigram')");
+            st.executeUpdate("CREATE TRIGGER IF NOT EXISTS tasks_text_insert AFTER INSERT ON tasks BEGIN "
+                    + "INSERT INTO tasks_text (rowid, folded_description) VALUES (new.id, new.folded_description); "
+                    + "END");
+            st.executeUpdate("CREATE TRIGGER IF NOT EXISTS tasks_text_delete AFTER DELETE ON tasks BEGIN "
+                    + "INSERT INTO tasks_text (tasks_text, rowid, folded_description) "
+                    + "VALUES ('delete', old.id, old.folded_description); END");
+            st.executeUpdate("CREATE TRIGGER IF NOT EXISTS tasks_text_update AFTER UPDATE OF folded_description "
+                    + "ON tasks BEGIN "
+                    + "INSERT INTO tasks_text (tasks_text, rowid, folded_description) "
+                    + "VALUES ('delete', old.id, old.folded_description); "
+                    + "INSERT INTO tasks_text (rowid, folded_description) VALUES (new.id, new.folded_description); "
+                    + "END");
+            if (!hasTextIndex) {
+                // Databases created before the index existed already hold tasks
+                st.executeUpdate("INSERT INTO tasks_text (tasks_text) VALUES ('rebuild')");
+            }
+            // Oldest first by seq, like the segments of the cold archive of a history file
+            st.executeUpdate("CREATE TABLE IF NOT EXISTS archived_tasks ("
+                    + "seq INTEGER PRIMARY KEY, "
+                    + "id INTEGER NOT NULL, "
+                    + "type TEXT NOT NULL, "
+                    + "done INTEGER NOT NULL, "
+                    + "description TEXT NOT NULL, "
+                    + "first_date TEXT, "
+                    + "second_date TEXT, "
+                    + "folded_description TEXT NOT NULL)");
+        }
+    }
+
+    /**
+     * Sets the structure that lists returned by {@link #load()} keep their tasks in.
+     * @param listBacking {@link TaskListBacking#TREE} for large lists with frequent inserts and deletes.
+     */
+    public void setListBacking(TaskListBacking listBacking) {
+        assert listBacking != null : "List backing cannot be null";
+        this.listBacking = listBacking;
+    }
+
+    @Override
+    public TaskListBacking getListBacking() {
+        return listBacking;
+    }
+
+    /**
+     * Sets whether lists returned by {@link #load()} can be shared between threads.
+     * @param isConcurrentList Whether to load into a list in concurrent mode.
+     */
+    public void setConcurrentList(boolean isConcurrentList) {
+        this.isConcurrentList = isConcurrentList;
+    }
+
+    @Override
+    public boolean isConcurrentList() {
+        return isConcurrentList;
+    }
+
+    @Override
+    public void enableAutoArchive(int minAgeDays) {
+        assert minAgeDays >= 0 : "Archive age cannot be negative";
+        this.autoArchiveDays = minAgeDays;
+    }
+
+    /**
+     * Loads all tasks in list order and tracks the returned list.
+     * With auto-archiving enabled, old done tasks are moved to the archive table and the move is committed.
+     * @return List of tasks read from the database.
+     * @throws NixChatsException if the database cannot be read.
+     */
+    @Override
+    public TaskList load() throws NixChatsException {
+        TaskList result = new TaskList(listBacking, isConcurrentList);
+        List<Row> loadedRows = new ArrayList<>();
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT position, id, " + COLUMNS + " FROM tasks ORDER BY position")) {
+            while (rs.next()) {
+                Task t = readTask(rs, 2);
+                if (t != null) {
+                    result.addTask(t);
+                    loadedRows.add(new Row(t.getId(), rs.getLong(1)));
+                }
+            }
+        } catch (SQLException e) {
+            throw new NixChatsException("Failed to load tasks.", e);
+        }
+        attach(result, loadedRows);
+        if (autoArchiveDays >= 0 && archive(result, autoArchiveDays) > 0) {
+            save(result);
+        }
+        return result;
+    }
+
+    /**
+     * Commits the changes made to the list returned by {@link #load()}. Any other list replaces
+     * the stored tasks and is tracked from then on, as does the tracked list if a single-row update failed;
+     * tasks archived since the last save are then written to the archive table again.
+     * @throws NixChatsException if the database cannot be written.
+     */
+    @Override
+    public void save(TaskList list) throws NixChatsException {
+        assert list != null : "TaskList cannot be null";
+        try {
+            if (failure != null) {
+                failure = null;
+                connection.rollback();
+                insertArchived(uncommittedArchive);
+                replaceAll(list);
+            } else if (attached != list) {
+                replaceAll(list);
+            }
+            connection.commit();
+            uncommittedArchive.clear();
+        } catch (SQLException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Every save commits synchronously
+    }
+
+    /**
+     * Rolls back uncommitted changes and closes the database.
+     * @throws NixChatsException if the database cannot be closed.
+     */
+    @Override
+    public void close() throws NixChatsException {
+        if (attached != null) {
+            attached.removeListener(this);
+            attached = null;
+        }
+        try {
+            if (connection.isClosed()) {
+                return;
+            }
+            connection.rollback();
+            uncommittedArchive.clear();
+            connection.close();
+        } catch (SQLException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+    }
+
+    /**
+     * Moves all done tasks out of the list into the archive table.
+     * @param list List to archive tasks from; must be saved afterwards, which commits the move.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    @Override
+    public int archive(TaskList list) throws NixChatsException {
+        return archive(list, Task::isDone);
+    }
+
+    /**
+     * Moves done tasks whose deadline or event ended at least the given number of days ago out of the
+     * list into the archive table. Tasks without a date are only archived by {@link #archive(TaskList)}.
+     * @param list List to archive tasks from; must be saved afterwards, which commits the move.
+     * @param minAgeDays Minimum age in days of the tasks to archive.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    @Override
+    public int archive(TaskList list, int minAgeDays) throws NixChatsException {
+        assert minAgeDays >= 0 : "Archive age cannot be negative";
+        return archive(list, Storage.isDoneAndEnded(minAgeDays));
+    }
+
+    private int archive(TaskList list, Predicate<Task> shouldArchive) throws NixChatsException {
+        List<Integer> indexes = new ArrayList<>();
+        List<Task> archived = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            Task t = list.getTask(i);
+            if (shouldArchive.test(t)) {
+                indexes.add(i);
+                archived.add(t);
+            }
+        }
+        try {
+            insertArchived(archived);
+        } catch (SQLException e) {
+            // Some rows may have been inserted, so the next save rolls them back and rewrites the tasks
+            failure = e;
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+        uncommittedArchive.addAll(archived);
+        // Back to front, so earlier indexes stay valid; the tracked list deletes its rows as it goes
+        for (int i = indexes.size() - 1; i >= 0; i--) {
+            list.deleteTask(indexes.get(i), false);
+        }
+        return indexes.size();
+    }
+
+    private void insertArchived(List<Task> tasks) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO archived_tasks (id, " + COLUMNS
+                + ", folded_description) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            for (Task t : tasks) {
+                ps.setLong(1, t.getId());
+                bindColumns(ps, 2, t);
+                ps.setString(7, t.getDescription().toLowerCase());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * Finds archived tasks whose description contains the keyword, ignoring case.
+     * @param keyword Keyword to be searched for.
+     * @return Matching archived tasks, oldest first.
+     * @throws NixChatsException if the archive cannot be read.
+     */
+    @Override
+    public Stream<Task> findArchived(String keyword) throws NixChatsException {
+        assert keyword != null : "Keyword cannot be null";
+        return query("SELECT id, " + COLUMNS + " FROM archived_tasks WHERE instr(folded_description, ?) > 0"
+                + " ORDER BY seq", keyword.toLowerCase()).stream();
+    }
+
+    /**
+     * Returns one page of tasks in list order.
+     * @param offset Number of tasks to skip.
+     * @param limit Maximum number of tasks to return.
+     * @throws NixChatsException if the database cannot be read.
+     */
+    public List<Task> listTasks(int offset, int limit) throws NixChatsException {
+        assert offset >= 0 && limit >= 0 : "Offset and limit cannot be negative";
+        return query("SELECT id, " + COLUMNS + " FROM tasks ORDER BY position LIMIT ? OFFSET ?", limit, offset);
+    }
+
+    /**
+     * Returns one page of done or pending tasks in list order.
+     * @param isDone Whether to list done tasks or pending ones.
+     * @param offset Number of matching tasks to skip.
+     * @param limit Maximum number of tasks to return.
+     * @throws NixChatsException if the database cannot be read.
+     */
+    public List<Task> listTasks(boolean isDone, int offset, int limit) throws NixChatsException {
+        assert offset >= 0 && limit >= 0 : "Offset and limit cannot be negative";
+        return query("SELECT id, " + COLUMNS + " FROM tasks WHERE done = ? ORDER BY position LIMIT ? OFFSET ?",
+                isDone ? 1 : 0, limit, offset);
+    }
+
+    /**
+     * Returns whether the database holds exactly the tasks of the given list, including its unsaved changes,
+     * so queries answered from the database agree with the list.
+     */
+    public boolean isTracking(TaskList list) {
+        return attached == list && failure == null;
+    }
+
+    /**
+     * Returns one page of tasks whose description contains the keyword, ignoring case,
+     * with the same matching rules as {@link TaskList#findTasks(String)}.
+     * Keywords of at least three characters are looked up in the trigram index as a phrase, which matches
+     * the same descriptions as a substring search; shorter ones are compared row by row.
+     * @param keyword Keyword to be searched for.
+     * @param offset Number of matching tasks to skip.
+     * @param limit Maximum number of tasks to return.
+     * @throws NixChatsException if the database cannot be read.
+     */
+    public List<Task> findTasks(String keyword, int offset, int limit) throws NixChatsException {
+        assert keyword != null : "Keyword cannot be null";
+        assert offset >= 0 && limit >= 0 : "Offset and limit cannot be negative";
+        String folded = keyword.toLowerCase();
+        if (folded.codePointCount(0, folded.length()) < MIN_INDEXED_KEYWORD_LENGTH) {
+            return query("SELECT id, " + COLUMNS + " FROM tasks WHERE instr(folded_description, ?) > 0"
+                    + " ORDER BY position LIMIT ? OFFSET ?", folded, limit, offset);
+        }
+        // A quoted phrase, with quotes in the keyword doubled, so no character has a special meaning
+        String phrase = "\"" + folded.replace("\"", "\"\"") + "\"";
+        return query("SELECT id, " + COLUMNS + " FROM tasks WHERE id IN "
+                + "(SELECT rowid FROM tasks_text WHERE tasks_text MATCH ?) ORDER BY position LIMIT ? OFFSET ?",
+                phrase, limit, offset);
+    }
+
+    /**
+     * Returns the number of stored tasks, including uncommitted changes.
+     * @throws NixChatsException if the database cannot be read.
+     */
+    public int countTasks() throws NixChatsException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM tasks")) {
+            rs.next();
+            return rs.getInt(1);
+        } catch (SQLException e) {
+            throw new NixChatsException("Failed to load tasks.", e);
+        }
+    }
+
+    private List<Task> query(String sql, Object... params) throws NixChatsException {
+        List<Task> tasks = new ArrayList<>();
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Task t = readTask(rs, 1);
+                    if (t != null) {
+                        tasks.add(t);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new NixChatsException("Failed to load tasks.", e);
+        }
+        return tasks;
+    }
+
+    /**
+     * Reads the task id and the {@link #COLUMNS} starting at the given column, or returns null if it is invalid.
+     */
+    private static Task readTask(ResultSet rs, int column) throws SQLException {
+        String type = rs.getString(column + 1);
+        try {
+            return Storage.newTask(rs.getLong(column), type.charAt(0), rs.getInt(column + 2) != 0,
+                    rs.getString(column + 3), rs.getString(column + 4), rs.getString(column + 5));
+        } catch (RuntimeException e) {
+            System.err.println("Warning: Skipping invalid task row: " + type + " | " + rs.getString(column + 3));
+            return null;
+        }
+    }
+
+    private void attach(TaskList list, List<Row> listRows) {
+        if (attached != null) {
+            attached.removeListener(this);
+        }
+        rows.clear();
+        rows.addAll(listRows);
+        attached = list;
+        list.addListener(this);
+    }
+
+    private void replaceAll(TaskList list) throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.executeUpdate("DELETE FROM tasks");
+        }
+        List<Row> newRows = new ArrayList<>(list.size());
+        try (PreparedStatement ps = prepareInsert()) {
+            long position = 0;
+            for (Task t : list) {
+                position += POSITION_GAP;
+                Row row = new Row(t.getId(), position);
+                bindTask(ps, t, row);
+                ps.addBatch();
+                newRows.add(row);
+            }
+            ps.executeBatch();
+        }
+        attach(list, newRows);
+    }
+
+    @Override
+    public void taskInserted(int index, Task task) {
+        if (failure != null) {
+            return; // the next save rewrites the table anyway
+        }
+        try {
+            Row row = new Row(task.getId(), positionBefore(index));
+            try (PreparedStatement ps = prepareInsert()) {
+                bindTask(ps, task, row);
+                ps.executeUpdate();
+            }
+            rows.add(index, row);
+        } catch (SQLException e) {
+            failure = e;
+        }
+    }
+
+    @Override
+    public void taskDeleted(int index, Task task) {
+        if (failure != null) {
+            return;
+        }
+        Row row = rows.remove(index);
+        execute("DELETE FROM tasks WHERE id = ?", row.id());
+    }
+
+    @Override
+    public void taskStatusChanged(int index, Task task) {
+        if (failure != null) {
+            return;
+        }
+        execute("UPDATE tasks SET done = ? WHERE id = ?", task.isDone() ? 1 : 0, rows.get(index).id());
+    }
+
+    /**
+     * Returns an order key between the rows at {@code index - 1} and {@code index},
+     * renumbering all rows first if there is no gap left between them.
+     */
+    private long positionBefore(int index) throws SQLException {
+        long previous = index > 0 ? rows.get(index - 1).position() : 0;
+        long next = index < rows.size() ? rows.get(index).position() : previous + 2 * POSITION_GAP;
+        if (next - previous < 2) {
+            renumber();
+            return positionBefore(index);
+        }
+        return previous + (next - previous) / 2;
+    }
+
+    private void renumber() throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("UPDATE tasks SET position = ? WHERE id = ?")) {
+            for (int i = 0; i < rows.size(); i++) {
+                Row row = new Row(rows.get(i).id(), (i + 1) * POSITION_GAP);
+                rows.set(i, row);
+                ps.setLong(1, row.position());
+                ps.setLong(2, row.id());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private PreparedStatement prepareInsert() throws SQLException {
+        return connection.prepareStatement("INSERT INTO tasks (id, position, " + COLUMNS
+                + ", folded_description, first_day, second_day) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+    }
+
+    private static void bindTask(PreparedStatement ps, Task t, Row row) throws SQLException {
+        ps.setLong(1, row.id());
+        ps.setLong(2, row.position());
+        bindColumns(ps, 3, t);
+        ps.setString(8, t.getDescription().toLowerCase());
+        bindDay(ps, 9, firstDate(t));
+        bindDay(ps, 10, secondDate(t));
+    }
+
+    /**
+     * Binds the {@link #COLUMNS} of the task, starting at the given parameter.
+     */
+    private static void bindColumns(PreparedStatement ps, int start, Task t) throws SQLException {
+        String type = t instanceof DeadlineTask ? "D" : t instanceof EventTask ? "E" : "T";
+        ps.setString(start, type);
+        ps.setInt(start + 1, t.isDone() ? 1 : 0);
+        ps.setString(start + 2, t.getDescription());
+        ps.setString(start + 3, firstDate(t));
+        ps.setString(start + 4, secondDate(t));
+    }
+
+    /**
+     * Returns the 'by' date of a deadline or the 'from' date of an event, otherwise null.
+     */
+    private static String firstDate(Task t) {
+        if (t instanceof DeadlineTask d) {
+            return d.getBy();
+        }
+        return t instanceof EventTask e ? e.getFrom() : null;
+    }
+
+    private static String secondDate(Task t) {
+        return t instanceof EventTask e ? e.getTo() : null;
+    }
+
+    private static void bindDay(PreparedStatement ps, int index, String date) throws SQLException {
+        OptionalLong day = date == null ? OptionalLong.empty() : DateFormatter.toEpochDay(date);
+        if (day.isPresent()) {
+            ps.setLong(index, day.getAsLong());
+        } else {
+            ps.setNull(index, Types.INTEGER);
+        }
+    }
+
+    private void execute(String sql, Object... params) {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) {
+                ps.setObject(i + 1, params[i]);
+            }
+            ps.executeUpdate();
+        } catch (SQLException e) {
+            failure = e;
+        }
+    }
+}
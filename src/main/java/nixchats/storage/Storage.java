@@ -1,24 +1,76 @@
 package nixchats.storage;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
 
 import nixchats.DeadlineTask;
 import nixchats.EventTask;
 import nixchats.Task;
 import nixchats.ToDoTask;
 import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
+import nixchats.data.TaskListSnapshot;
 import nixchats.exception.NixChatsException;
 
 
 /**
  * Storage class for saving and loading tasks.
  */
-public class Storage {
+public class Storage implements TaskStorage {
+    /** Default journal size in bytes after which the snapshot is rewritten. */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 1 << 20;
+    /** File size in bytes from which {@link LoadMode#AUTO} maps the file instead of streaming it. */
+    public static final long MAPPED_LOAD_THRESHOLD = 1 << 20;
+    /** File size in bytes from which {@link LoadMode#AUTO} decodes the file in parallel. */
+    public static final long PARALLEL_LOAD_THRESHOLD = 1 << 24;
+    /** Default minimum time between forced writes in {@link DurabilityMode#FSYNC_INTERVAL}. */
+    public static final long DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+    /** Deflate level used by {@link StorageFormat#COMPRESSED} unless another one is set. */
+    public static final int DEFAULT_COMPRESSION_LEVEL = Deflater.DEFAULT_COMPRESSION;
+    /** Stored ID of tasks from files written before tasks had IDs; such tasks get a new ID when loaded. */
+    static final long NO_ID = 0;
+    private static final int OWN_WRITES_TRACKED = 8;
+
     private final Path filePath;
+    private final TaskCodec codec;
+    private final ColdArchive coldArchive;
+    private final Deque<Long> ownWrites = new ArrayDeque<>();
+    // Guarded by ownWrites, like the checksums of the recent writes
+    private long writeCount;
+    private long savedChecksum;
+    private StorageFormat format = StorageFormat.TEXT;
+    private boolean isFormatExplicit;
+    private LoadMode loadMode = LoadMode.AUTO;
+    private TaskListBacking listBacking = TaskListBacking.ARRAY;
+    private boolean isListBackingExplicit;
+    private boolean isConcurrentList;
+    private int compressionLevel = DEFAULT_COMPRESSION_LEVEL;
+    private Journal journal;
+    private AsyncSaver asyncSaver;
+    private int autoArchiveDays = -1;
+    private FileWatcher watcher;
 
     /**
      * Constructs a Storage object.
@@ -26,8 +78,21 @@ public class Storage {
      * @throws IOException if the file cannot be created.
      */
     public Storage(Path filePath) throws IOException {
+        this(filePath, new TextTaskCodec());
+    }
+
+    /**
+     * Constructs a Storage object that uses the given codec for text records.
+     * @param filePath Path to the file to be used for storage.
+     * @param codec Codec for the lines of text files and for journal records.
+     * @throws IOException if the file cannot be created.
+     */
+    public Storage(Path filePath, TaskCodec codec) throws IOException {
         assert filePath != null : "File path cannot be null";
+        assert codec != null : "Codec cannot be null";
         this.filePath = filePath;
+        this.codec = codec;
+        this.coldArchive = new ColdArchive(filePath, codec);
         ensureFileExists();
     }
 
@@ -41,20 +106,445 @@ public class Storage {
         }
     }
 
+    /**
+     * Sets the format used by subsequent saves. Until this is called, saves keep the format
+     * detected by the last {@link #load()}, so existing files are never converted implicitly.
+     * @param format Format to write.
+     */
+    public void setFormat(StorageFormat format) {
+        assert format != null : "Format cannot be null";
+        this.format = format;
+        this.isFormatExplicit = true;
+    }
+
+    public StorageFormat getFormat() {
+        return format;
+    }
+
+    /**
+     * Sets the deflate level of {@link StorageFormat#COMPRESSED} files. Lower levels save faster,
+     * higher levels write fewer bytes, which pays off on slow network drives.
+     * @param level 0 (no compression) to 9 (best compression), or {@link #DEFAULT_COMPRESSION_LEVEL}.
+     */
+    public void setCompressionLevel(int level) {
+        assert level == Deflater.DEFAULT_COMPRESSION || (level >= Deflater.NO_COMPRESSION
+                && level <= Deflater.BEST_COMPRESSION) : "Compression level must be between 0 and 9";
+        this.compressionLevel = level;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public TaskCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Sets how text files are read by {@link #load()}. Binary files are unaffected. Compressed files are
+     * inflated block by block, on the common fork/join pool in {@link LoadMode#PARALLEL} mode.
+     * Note that on Windows a mapped file cannot be replaced until the mapping is garbage collected.
+     * @param loadMode Strategy to use.
+     */
+    public void setLoadMode(LoadMode loadMode) {
+        assert loadMode != null : "Load mode cannot be null";
+        this.loadMode = loadMode;
+    }
+
+    /**
+     * Sets the structure that lists returned by {@link #load()} keep their tasks in.
+     * Without a call, lists are array-backed, or persistent once asynchronous saves are enabled.
+     * @param listBacking {@link TaskListBacking#TREE} for large lists with frequent inserts and deletes.
+     */
+    public void setListBacking(TaskListBacking listBacking) {
+        assert listBacking != null : "List backing cannot be null";
+        this.listBacking = listBacking;
+        this.isListBackingExplicit = true;
+    }
+
+    @Override
+    public TaskListBacking getListBacking() {
+        return listBacking;
+    }
+
+    /**
+     * Sets whether lists returned by {@link #load()} can be shared between threads.
+     * @param isConcurrentList Whether to load into a list in concurrent mode.
+     */
+    public void setConcurrentList(boolean isConcurrentList) {
+        this.isConcurrentList = isConcurrentList;
+    }
+
+    @Override
+    public boolean isConcurrentList() {
+        return isConcurrentList;
+    }
+
+    /**
+     * Converts the file to the given format, whichever format it is currently in.
+     * @param target Format to convert to.
+     * @return The tasks that were migrated.
+     * @throws NixChatsException if the file cannot be read or written.
+     */
+    public TaskList migrate(StorageFormat target) throws NixChatsException {
+        TaskList list = load();
+        setFormat(target);
+        save(list);
+        return list;
+    }
+
+    /**
+     * Enables journal mode with the default compaction threshold.
+     * @see #enableJournal(long)
+     */
+    public void enableJournal() {
+        enableJournal(DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Enables journal mode. Instead of rewriting the whole file on every save, each mutation of the
+     * loaded list is appended to a journal next to the file, and the file is rewritten in the background
+     * once the journal grows past the given size. Must be called before {@link #load()}.
+     * @param compactionThreshold Journal size in bytes that triggers a compaction.
+     */
+    public void enableJournal(long compactionThreshold) {
+        assert journal == null : "Journal mode is already enabled";
+        assert asyncSaver == null : "Journal mode cannot be combined with asynchronous saves";
+        journal = new Journal(this, filePath, compactionThreshold);
+    }
+
+    public boolean isJournaled() {
+        return journal != null;
+    }
+
+    /**
+     * Returns whether {@link #watch(TaskList, Executor, Runnable)} can be used: the file is in text format,
+     * as found by the last {@link #load()}, and journal mode is off.
+     */
+    public boolean isWatchable() {
+        return journal == null && format == StorageFormat.TEXT;
+    }
+
+    /**
+     * Enables asynchronous saves with the default fsync interval.
+     * @see #enableAsyncSave(DurabilityMode, long)
+     */
+    public void enableAsyncSave(DurabilityMode durability) {
+        enableAsyncSave(durability, DEFAULT_FSYNC_INTERVAL_MILLIS);
+    }
+
+    /**
+     * Enables asynchronous saves. {@link #save(TaskList)} then only takes a copy-on-write snapshot of
+     * the list and returns; a background thread writes the latest snapshot to a temporary file that
+     * atomically replaces the history file. Errors surface on the next save, {@link #flush()} or {@link #close()}.
+     * Unless a backing was set, lists are then loaded as {@link TaskListBacking#PERSISTENT}, so the first change
+     * after each save does not copy the whole list while the snapshot is still being written.
+     * @param durability When writes are forced to disk.
+     * @param fsyncIntervalMillis Minimum time between forced writes in {@link DurabilityMode#FSYNC_INTERVAL}.
+     */
+    public void enableAsyncSave(DurabilityMode durability, long fsyncIntervalMillis) {
+        assert asyncSaver == null : "Asynchronous saves are already enabled";
+        assert journal == null : "Asynchronous saves cannot be combined with journal mode";
+        asyncSaver = new AsyncSaver(this, filePath, durability, fsyncIntervalMillis);
+        if (!isListBackingExplicit) {
+            listBacking = TaskListBacking.PERSISTENT;
+        }
+    }
+
+    /**
+     * Archives done tasks that ended at least the given number of days ago on every {@link #load()}.
+     * @param minAgeDays Minimum age in days of the tasks to archive.
+     * @see #archive(TaskList, int)
+     */
+    @Override
+    public void enableAutoArchive(int minAgeDays) {
+        assert minAgeDays >= 0 : "Archive age cannot be negative";
+        this.autoArchiveDays = minAgeDays;
+    }
+
+    /**
+     * Moves all done tasks out of the list into the cold archive.
+     * @param list List to archive tasks from; must be saved afterwards.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    @Override
+    public int archive(TaskList list) throws NixChatsException {
+        return archive(list, Task::isDone);
+    }
+
+    /**
+     * Moves done tasks whose deadline or event ended at least the given number of days ago out of the
+     * list into the cold archive. Tasks without a date are only archived by {@link #archive(TaskList)}.
+     * @param list List to archive tasks from; must be saved afterwards.
+     * @param minAgeDays Minimum age in days of the tasks to archive.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    @Override
+    public int archive(TaskList list, int minAgeDays) throws NixChatsException {
+        assert minAgeDays >= 0 : "Archive age cannot be negative";
+        return archive(list, isDoneAndEnded(minAgeDays));
+    }
+
+    /**
+     * Returns a test for done tasks whose deadline or event ended at least the given number of days ago.
+     */
+    static Predicate<Task> isDoneAndEnded(int minAgeDays) {
+        long cutoff = LocalDate.now().toEpochDay() - minAgeDays;
+        return t -> {
+            OptionalLong endDay = t.getEndDay();
+            return t.isDone() && endDay.isPresent() && endDay.getAsLong() <= cutoff;
+        };
+    }
+
+    private int archive(TaskList list, Predicate<Task> shouldArchive) throws NixChatsException {
+        List<Integer> indexes = new ArrayList<>();
+        List<Task> tasks = new ArrayList<>();
+        for (int i = 0; i < list.size(); i++) {
+            if (shouldArchive.test(list.getTask(i))) {
+                indexes.add(i);
+                tasks.add(list.getTask(i));
+            }
+        }
+        try {
+            coldArchive.append(tasks);
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+        // Back to front, so earlier indexes stay valid
+        for (int i = indexes.size() - 1; i >= 0; i--) {
+            list.deleteTask(indexes.get(i), false);
+        }
+        return tasks.size();
+    }
+
+    /**
+     * Lazily finds archived tasks whose description contains the keyword, ignoring case.
+     * Nothing is read until the stream is consumed, and archive files are read one at a time.
+     * @param keyword Keyword to be searched for.
+     * @return Matching archived tasks, oldest first. The stream must be closed.
+     * @throws NixChatsException if the archive cannot be read.
+     */
+    @Override
+    public Stream<Task> findArchived(String keyword) throws NixChatsException {
+        assert keyword != null : "Keyword cannot be null";
+        try {
+            return coldArchive.find(keyword);
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to load tasks.", e);
+        }
+    }
+
+    /**
+     * Watches the text file for changes made by other programs, such as editors or file sync, and
+     * applies them to the given list. Each change is diffed line by line against the list, so only
+     * changed records are inserted, deleted or marked, and tasks that did not change keep their identity.
+     * Saves made by this Storage are not reported back. Changes made while the list has unsaved changes
+     * of its own are not applied, since the next save replaces them anyway. Cannot be combined with journal mode.
+     * @param list List that was loaded from the file.
+     * @param executor Executor to change the list on, e.g. the thread that runs commands.
+     * @param onChange Run on the executor after external changes were applied to the list.
+     * @throws NixChatsException if the file cannot be watched.
+     */
+    public void watch(TaskList list, Executor executor, Runnable onChange) throws NixChatsException {
+        assert watcher == null : "The file is already being watched";
+        assert journal == null : "External changes cannot be merged with a journal";
+        assert format == StorageFormat.TEXT : "Only text files can be watched";
+        markSaved(list);
+        try {
+            watcher = new FileWatcher(this, filePath, list, executor, onChange);
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to load tasks.", e);
+        }
+    }
+
+    /**
+     * Returns whether a text file with the given CRC-32 was recently written by this Storage.
+     */
+    boolean isOwnWrite(long checksum) {
+        synchronized (ownWrites) {
+            return ownWrites.contains(checksum);
+        }
+    }
+
+    /**
+     * Returns the number of text files written so far, so a reader can tell whether the file was
+     * replaced by a save after it read it.
+     */
+    long getWriteCount() {
+        synchronized (ownWrites) {
+            return writeCount;
+        }
+    }
+
+    /**
+     * Returns whether the list may hold changes that are not in the file: a save is still queued or
+     * being written, or the list differs from what was last saved, loaded or merged from the file.
+     */
+    boolean hasUnsavedChanges(TaskList list) {
+        if (asyncSaver != null && asyncSaver.isBusy()) {
+            return true;
+        }
+        long checksum = checksumOf(list);
+        synchronized (ownWrites) {
+            return checksum != savedChecksum;
+        }
+    }
+
+    /**
+     * Records that the list now matches the file, e.g. after changes to the file were merged into it.
+     */
+    void markSaved(TaskList list) {
+        long checksum = checksumOf(list);
+        synchronized (ownWrites) {
+            savedChecksum = checksum;
+        }
+    }
+
+    /**
+     * Returns the CRC-32 of the text file that saving the list would write.
+     */
+    private long checksumOf(TaskList list) {
+        CRC32 checksum = new CRC32();
+        StringBuilder record = new StringBuilder(64);
+        for (Task t : list) {
+            record.setLength(0);
+            codec.encode(t, t.isDone(), record);
+            record.append(System.lineSeparator());
+            checksum.update(record.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return checksum.getValue();
+    }
+
+    /**
+     * Blocks until all asynchronous saves have been written. Does nothing for synchronous saves.
+     * @throws NixChatsException if a pending save failed.
+     */
+    @Override
+    public void flush() throws NixChatsException {
+        if (asyncSaver == null) {
+            return;
+        }
+        try {
+            asyncSaver.flush();
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+    }
+
+    /**
+     * Waits for background work to finish and releases open files.
+     * @throws NixChatsException if pending data cannot be written.
+     */
+    @Override
+    public void close() throws NixChatsException {
+        try {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+            if (journal != null) {
+                journal.close();
+            }
+            if (asyncSaver != null) {
+                asyncSaver.close();
+            }
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        }
+    }
+
     /**
      * Saves the tasks to the file in a stable, decodable format.
-     * One task per line, fields separated by "|".
+     * In text format, one task per line, fields separated by "|"; see {@link BinaryFormat} and
+     * {@link CompressedFormat} for the other formats.
+     * In journal mode, saving the list returned by {@link #load()} only forces the journal to disk.
      * @throws NixChatsException if the file cannot be written.
      */
+    @Override
     public void save(TaskList list) throws NixChatsException {
         assert list != null : "TaskList cannot be null";
         assert filePath != null : "File path should be initialized";
 
-        try (BufferedWriter writer = Files.newBufferedWriter(filePath, StandardCharsets.UTF_8)) {
-            for (Task t : list) {
-                writer.write(encode(t));
+        if (journal != null) {
+            saveJournaled(list);
+            return;
+        }
+        if (asyncSaver != null) {
+            try {
+                asyncSaver.submit(list.snapshot());
+            } catch (IOException e) {
+                throw new NixChatsException("Failed to save tasks.", e);
+            }
+            return;
+        }
+
+        TaskListSnapshot snapshot = list.snapshot();
+        try {
+            if (watcher == null) {
+                writeSnapshot(filePath, snapshot);
+            } else {
+                // The watcher must never see a half-written file
+                Path tempPath = filePath.resolveSibling(filePath.getFileName() + ".tmp");
+                writeSnapshot(tempPath, snapshot);
+                Files.move(tempPath, filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            throw new NixChatsException("Failed to save tasks.", e);
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Writes the given tasks to the target file in the current format.
+     * @param target File to write.
+     * @param snapshot Tasks to write, in order.
+     * @throws IOException if the file cannot be written.
+     */
+    void writeSnapshot(Path target, TaskListSnapshot snapshot) throws IOException {
+        if (format == StorageFormat.BINARY) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                BinaryFormat.write(out, snapshot);
+            }
+            return;
+        }
+        if (format == StorageFormat.COMPRESSED) {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(target))) {
+                CompressedFormat.write(out, snapshot, codec, compressionLevel);
+            }
+            return;
+        }
+        CRC32 checksum = new CRC32();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new CheckedOutputStream(Files.newOutputStream(target), checksum), StandardCharsets.UTF_8))) {
+            StringBuilder record = new StringBuilder(64);
+            for (int i = 0; i < snapshot.size(); i++) {
+                record.setLength(0);
+                codec.encode(snapshot.getTask(i), snapshot.isDone(i), record);
+                writer.append(record);
                 writer.newLine();
             }
+        }
+        synchronized (ownWrites) {
+            if (ownWrites.size() == OWN_WRITES_TRACKED) {
+                ownWrites.removeFirst();
+            }
+            ownWrites.addLast(checksum.getValue());
+            savedChecksum = checksum.getValue();
+            writeCount++;
+        }
+    }
+
+    private void saveJournaled(TaskList list) throws NixChatsException {
+        try {
+            if (journal.isAttachedTo(list)) {
+                journal.sync();
+            } else {
+                journal.rewrite(list);
+                journal.attach(list);
+            }
         } catch (IOException e) {
             throw new NixChatsException("Failed to save tasks.", e);
         }
@@ -62,102 +552,160 @@ public class Storage {
 
     /**
      * Loads the tasks from the file.
+     * In journal mode, the journal is replayed on top of the file and the returned list is journaled.
+     * With auto-archiving enabled, old done tasks are moved to the cold archive and the file is saved.
      * @return List of tasks read from the file.
      * @throws NixChatsException if the file cannot be read.
      */
+    @Override
     public TaskList load() throws NixChatsException {
-        TaskList result = new TaskList();
+        TaskList result = new TaskList(listBacking, isConcurrentList);
         try {
             if (Files.notExists(filePath)) {
                 ensureFileExists();
-                return result;
             }
-            
-            // Use streams to process file lines more efficiently
-            Files.lines(filePath, StandardCharsets.UTF_8)
-                    .map(String::trim)
-                    .filter(line -> !line.isEmpty())
-                    .forEach(line -> {
-                        try {
-                            Task t = decode(line);
-                            result.addTask(t);
-                        } catch (Exception e) {
-                            // Skip invalid lines silently to maintain robustness
-                            System.err.println("Warning: Skipping invalid task line: " + line);
-                        }
-                    });
-            
+            if (journal != null) {
+                journal.recover();
+            }
+            readSnapshot(result);
+
+            if (journal != null) {
+                boolean needsRewrite = journal.replay(result);
+                journal.attach(result);
+                if (needsRewrite) {
+                    journal.rewrite(result);
+                }
+            }
+            if (autoArchiveDays >= 0 && archive(result, autoArchiveDays) > 0) {
+                save(result);
+            }
             return result;
         } catch (IOException e) {
             throw new NixChatsException("Failed to load tasks.", e);
         }
     }
 
-
     /**
-     * Encodes a task to a string.
-     * @param t Task to encode
-     * @return String representation of the task, in the format "T|1|description"
+     * Detects the format of the file on disk.
+     * @return The detected format; empty files are treated as text.
+     * @throws IOException if the file cannot be read.
      */
-    private String encode(Task t) {
-        assert t != null : "Task cannot be null";
-        assert t.getDescription() != null : "Task description cannot be null";
+    public StorageFormat detectFormat() throws IOException {
+        byte[] header = new byte[BinaryFormat.MAGIC.length];
+        int length;
+        try (InputStream in = Files.newInputStream(filePath)) {
+            length = in.readNBytes(header, 0, header.length);
+        }
+        if (BinaryFormat.isBinary(header, length)) {
+            return StorageFormat.BINARY;
+        }
+        return CompressedFormat.isCompressed(header, length) ? StorageFormat.COMPRESSED : StorageFormat.TEXT;
+    }
 
-        String done = t.isDone() ? "1" : "0";
-        if (t instanceof ToDoTask) {
-            return String.join(" | ", "T", done, t.getDescription());
-        } else if (t instanceof DeadlineTask d) {
-            assert d.getBy() != null : "Deadline task must have a 'by' date";
-            return String.join(" | ", "D", done, d.getDescription(), d.getBy());
-        } else if (t instanceof EventTask e) {
-            assert e.getFrom() != null : "Event task must have a 'from' date";
-            assert e.getTo() != null : "Event task must have a 'to' date";
-            return String.join(" | ", "E", done, e.getDescription(), e.getFrom(), e.getTo());
-        } else {
-            // Fallback: store as a plain todo
-            return String.join(" | ", "T", done, t.getDescription());
+    private static LoadMode chooseLoadMode(long size) {
+        if (size >= PARALLEL_LOAD_THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return LoadMode.PARALLEL;
         }
+        return size >= MAPPED_LOAD_THRESHOLD ? LoadMode.MAPPED : LoadMode.STREAMING;
     }
 
-    /**
-     * Decodes a string to a task.
-     * @param line String representation of the task, in the format "T|1|description"
-     * @return Task represented by the string
-     */
-    private Task decode(String line) {
-        assert line != null : "Input line cannot be null";
-        assert !line.trim().isEmpty() : "Input line cannot be empty";
+    private LoadMode chooseCompressedLoadMode() throws IOException {
+        if (loadMode != LoadMode.AUTO) {
+            return loadMode;
+        }
+        // Every compressed byte inflates to several text bytes, so parallelism pays off sooner
+        boolean isLarge = Files.size(filePath) >= MAPPED_LOAD_THRESHOLD;
+        return isLarge && ForkJoinPool.getCommonPoolParallelism() > 1 ? LoadMode.PARALLEL : LoadMode.STREAMING;
+    }
 
-        String[] parts = line.split("\\s*\\|\\s*");
-        assert parts.length >= 3 : "Line must have at least 3 parts: type, done status, description";
+    private void readSnapshot(TaskList result) throws IOException {
+        StorageFormat detected = detectFormat();
+        if (!isFormatExplicit) {
+            format = detected;
+        }
+        if (detected == StorageFormat.BINARY) {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(filePath))) {
+                BinaryFormat.read(in).forEach(result::addTask);
+            }
+            return;
+        }
+        if (detected == StorageFormat.COMPRESSED) {
+            ForkJoinPool pool = chooseCompressedLoadMode() == LoadMode.PARALLEL ? ForkJoinPool.commonPool() : null;
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(filePath))) {
+                CompressedFormat.read(in, codec, pool, result::addTask);
+            }
+            return;
+        }
+        // The byte-level readers implement the default codec, so other codecs always stream
+        LoadMode mode = !(codec instanceof TextTaskCodec) ? LoadMode.STREAMING
+                : loadMode == LoadMode.AUTO ? chooseLoadMode(Files.size(filePath)) : loadMode;
+        if (mode == LoadMode.PARALLEL) {
+            ParallelTextReader.read(filePath, ForkJoinPool.commonPool(), result::addTask);
+            return;
+        }
+        if (mode == LoadMode.MAPPED) {
+            MappedTextReader.read(filePath, result::addTask);
+            return;
+        }
 
-        String type = parts[0];
-        assert type != null && !type.isEmpty() : "Task type cannot be null or empty";
+        // Invalid lines are skipped and reported together, as in the other load modes
+        MalformedLines malformed = new MalformedLines();
+        try (Stream<String> lines = Files.lines(filePath, StandardCharsets.UTF_8)) {
+            lines.map(String::trim)
+                    .filter(line -> !line.isEmpty())
+                    .forEach(line -> {
+                        try {
+                            result.addTask(codec.decode(line));
+                        } catch (RuntimeException e) {
+                            malformed.add(line);
+                        }
+                    });
+        }
+        malformed.report();
+    }
 
-        boolean done = "1".equals(parts[1]);
-        assert parts[2] != null : "Task description cannot be null";
 
+    /**
+     * Creates a task from decoded fields. Shared by all storage formats.
+     * @param id Stored ID of the task, or {@link #NO_ID} for records written before tasks had IDs.
+     * @param type Type letter: 'T', 'D' or 'E'.
+     * @param isDone Whether the task is done.
+     * @param desc Description of the task.
+     * @param first The 'by' date of a deadline or the 'from' date of an event, otherwise null.
+     * @param second The 'to' date of an event, otherwise null.
+     * @return The decoded task, with a new ID if none was stored.
+     */
+    static Task newTask(long id, char type, boolean isDone, String desc, String first, String second) {
+        assert desc != null : "Task description cannot be null";
+        if (id == NO_ID) {
+            return newTask(type, isDone, desc, first, second);
+        }
         switch (type) {
-        case "T": {
-            String desc = parts[2];
-            return new ToDoTask(desc, done);
-        }
-        case "D": {
-            assert parts.length >= 4 : "Deadline task must have 'by' date";
-            String desc = parts[2];
-            String by = parts[3];
-            assert by != null : "Deadline 'by' date cannot be null";
-            return new DeadlineTask(desc, done, by);
-        }
-        case "E": {
-            assert parts.length >= 5 : "Event task must have 'from' and 'to' dates";
-            String desc = parts[2];
-            String from = parts[3];
-            String to = parts[4];
-            assert from != null : "Event 'from' date cannot be null";
-            assert to != null : "Event 'to' date cannot be null";
-            return new EventTask(desc, done, from, to);
+        case 'T':
+            return new ToDoTask(id, desc, isDone);
+        case 'D':
+            assert first != null : "Deadline 'by' date cannot be null";
+            return new DeadlineTask(id, desc, isDone, first);
+        case 'E':
+            assert first != null : "Event 'from' date cannot be null";
+            assert second != null : "Event 'to' date cannot be null";
+            return new EventTask(id, desc, isDone, first, second);
+        default:
+            throw new IllegalArgumentException("Unknown task type: " + type);
         }
+    }
+
+    private static Task newTask(char type, boolean isDone, String desc, String first, String second) {
+        switch (type) {
+        case 'T':
+            return new ToDoTask(desc, isDone);
+        case 'D':
+            assert first != null : "Deadline 'by' date cannot be null";
+            return new DeadlineTask(desc, isDone, first);
+        case 'E':
+            assert first != null : "Event 'from' date cannot be null";
+            assert second != null : "Event 'to' date cannot be null";
+            return new EventTask(desc, isDone, first, second);
         default:
             throw new IllegalArgumentException("Unknown task type: " + type);
         }
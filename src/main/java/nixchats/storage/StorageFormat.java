@@ -0,0 +1,13 @@
+package nixchats.storage;
+
+/**
+ * On-disk formats supported by {@link Storage}.
+ */
+public enum StorageFormat {
+    /** One task per line, fields separated by "|". */
+    TEXT,
+    /** Versioned binary records with a string dictionary and epoch-day dates. */
+    BINARY,
+    /** Text records in independently deflated blocks, so loading can stream or decode blocks in parallel. */
+    COMPRESSED
+}
@@ -0,0 +1,300 @@
+package nixchats.storage;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.zip.Deflater;
+
+import nixchats.data.TaskListBacking;
+import nixchats.exception.NixChatsException;
+
+/**
+ * Storage options read from a properties file, so they can be changed without rebuilding NixChats.
+ * Any key can be overridden by a system property of the same name prefixed with "nixchats.",
+ * e.g. {@code -Dnixchats.archive.days=7}. Missing keys keep their defaults, and values that cannot be used
+ * are reported and replaced by the default.
+ * <ul>
+ * <li>{@code storage}: {@code file} to keep tasks in the history file, or {@code sqlite} to keep them in
+ * a SQLite database next to it. Defaults to {@code file}. The journal, format and compression settings
+ * only apply to the history file.</li>
+ * <li>{@code archive.days}: age in days from which done deadlines and events are archived on every load,
+ * or {@code off}. Defaults to {@link #DEFAULT_ARCHIVE_DAYS}.</li>
+ * <li>{@code journal}: {@code on} to append each change to a journal instead of rewriting the file.
+ * Defaults to {@code off}.</li>
+ * <li>{@code journal.compaction.bytes}: journal size that triggers a rewrite of the file.
+ * Defaults to {@link Storage#DEFAULT_COMPACTION_THRESHOLD}.</li>
+ * <li>{@code format}: {@code text}, {@code binary} or {@code compressed}; a file in another format is
+ * converted when it is opened. By default the file keeps whatever format it is in.</li>
+ * <li>{@code compression.level}: deflate level of compressed files, from 0 (fastest) to 9 (smallest),
+ * or -1 for the deflate default.
+ * Defaults to {@link Storage#DEFAULT_COMPRESSION_LEVEL}.</li>
+ * <li>{@code list.backing}: structure the loaded list keeps its tasks in, one of {@link TaskListBacking}
+ * in any case, with "-" for "_". By default {@link Storage} chooses.</li>
+ * <li>{@code list.concurrent}: {@code on} to load into a list that other threads may read while it changes.
+ * Defaults to {@code off}.</li>
+ * </ul>
+ */
+public class StorageSettings {
+    /** File the settings are read from, next to the history file. */
+    public static final Path DEFAULT_PATH = Paths.get("data", "settings.properties");
+    /** Default age in days from which done tasks are archived on every load. */
+    public static final int DEFAULT_ARCHIVE_DAYS = 30;
+    private static final String PROPERTY_PREFIX = "nixchats.";
+    private static final String ON = "on";
+    private static final String OFF = "off";
+
+    private final Properties properties;
+
+    private StorageSettings(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Reads the settings from the given file, which need not exist.
+     * @param file Properties file to read.
+     * @return The settings, with the defaults for anything the file does not set.
+     */
+    public static StorageSettings load(Path file) {
+        assert file != null : "Settings file cannot be null";
+        Properties properties = new Properties();
+        if (Files.exists(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Warning: Failed to read settings, using the defaults: " + e.getMessage());
+            }
+        }
+        return new StorageSettings(properties);
+    }
+
+    /**
+     * Creates the storage chosen by these settings for the given history file, configured by the settings.
+     * A database is kept next to the history file, with the same name and the extension ".db"; when it is
+     * first created, the tasks in the history file are copied into it, and the history file is left as it was.
+     * @param historyFile Path to the history file.
+     * @throws IOException if the history file or the database cannot be created.
+     */
+    public TaskStorage open(Path historyFile) throws IOException {
+        if (!isDatabase()) {
+            return openFile(historyFile);
+        }
+        Path databaseFile = historyFile.resolveSibling(baseName(historyFile) + ".db");
+        boolean isNew = Files.notExists(databaseFile);
+        SqlStorage database = new SqlStorage(databaseFile);
+        getListBacking().ifPresent(database::setListBacking);
+        database.setConcurrentList(isConcurrentList());
+        if (isNew && Files.exists(historyFile)) {
+            try {
+                database.save(new Storage(historyFile).load());
+            } catch (NixChatsException e) {
+                System.err.println("Warning: Failed to copy tasks from " + historyFile.getFileName()
+                        + " into the database: " + e.getMessage());
+            }
+        }
+        int archiveDays = getArchiveDays();
+        if (archiveDays >= 0) {
+            database.enableAutoArchive(archiveDays);
+        }
+        return database;
+    }
+
+    private static String baseName(Path file) {
+        String name = file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+
+    /**
+     * Creates a storage for the given history file, configured by these settings whatever {@code storage} says.
+     * @param historyFile Path to the history file.
+     * @throws IOException if the file cannot be created.
+     */
+    public Storage openFile(Path historyFile) throws IOException {
+        Storage storage = new Storage(historyFile);
+        storage.setCompressionLevel(getCompressionLevel());
+        getListBacking().ifPresent(storage::setListBacking);
+        storage.setConcurrentList(isConcurrentList());
+        Optional<StorageFormat> format = getFormat();
+        if (format.isPresent()) {
+            convert(storage, format.get());
+        }
+        int archiveDays = getArchiveDays();
+        if (archiveDays >= 0) {
+            storage.enableAutoArchive(archiveDays);
+        }
+        if (isJournalEnabled()) {
+            storage.enableJournal(getCompactionThreshold());
+        }
+        return storage;
+    }
+
+    /**
+     * Makes the storage save in the given format, converting the file right away if it is in another one,
+     * so the file never changes format halfway through a session.
+     */
+    private static void convert(Storage storage, StorageFormat format) throws IOException {
+        if (storage.detectFormat() == format) {
+            storage.setFormat(format);
+            return;
+        }
+        try {
+            storage.migrate(format);
+        } catch (NixChatsException e) {
+            System.err.println("Warning: Failed to convert tasks to " + format + ", they will be converted"
+                    + " on the next save: " + e.getMessage());
+            storage.setFormat(format);
+        }
+    }
+
+    /**
+     * Returns whether tasks are kept in a SQLite database instead of the history file.
+     */
+    public boolean isDatabase() {
+        String value = get("storage");
+        if (value == null || value.equalsIgnoreCase("file")) {
+            return false;
+        }
+        if (value.equalsIgnoreCase("sqlite")) {
+            return true;
+        }
+        return ignore("storage", value, false);
+    }
+
+    /**
+     * Returns the format to save in, or an empty Optional to keep the format the file is in.
+     */
+    public Optional<StorageFormat> getFormat() {
+        String value = get("format");
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(StorageFormat.valueOf(value.toUpperCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return ignore("format", value, Optional.empty());
+        }
+    }
+
+    /**
+     * Returns the structure loaded lists keep their tasks in, or an empty Optional to let the storage choose.
+     */
+    public Optional<TaskListBacking> getListBacking() {
+        String value = get("list.backing");
+        if (value == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(TaskListBacking.valueOf(value.toUpperCase(Locale.ROOT).replace('-', '_')));
+        } catch (IllegalArgumentException e) {
+            return ignore("list.backing", value, Optional.empty());
+        }
+    }
+
+    /**
+     * Returns whether loaded lists lock their reads and writes, so other threads can share them.
+     */
+    public boolean isConcurrentList() {
+        return getSwitch("list.concurrent", false);
+    }
+
+    /**
+     * Returns the deflate level of compressed files.
+     */
+    public int getCompressionLevel() {
+        String value = get("compression.level");
+        if (value == null) {
+            return Storage.DEFAULT_COMPRESSION_LEVEL;
+        }
+        try {
+            int level = Integer.parseInt(value);
+            if (level == Deflater.DEFAULT_COMPRESSION
+                    || level >= Deflater.NO_COMPRESSION && level <= Deflater.BEST_COMPRESSION) {
+                return level;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        return ignore("compression.level", value, Storage.DEFAULT_COMPRESSION_LEVEL);
+    }
+
+    /**
+     * Returns the age in days from which done tasks are archived on every load, or -1 if that is turned off.
+     */
+    public int getArchiveDays() {
+        String value = get("archive.days");
+        if (value == null) {
+            return DEFAULT_ARCHIVE_DAYS;
+        }
+        if (value.equalsIgnoreCase(OFF)) {
+            return -1;
+        }
+        try {
+            int days = Integer.parseInt(value);
+            if (days >= 0) {
+                return days;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        return ignore("archive.days", value, DEFAULT_ARCHIVE_DAYS);
+    }
+
+    /**
+     * Returns whether changes are appended to a journal instead of rewriting the file on every save.
+     */
+    public boolean isJournalEnabled() {
+        return getSwitch("journal", false);
+    }
+
+    /**
+     * Returns the journal size in bytes that triggers a rewrite of the file.
+     */
+    public long getCompactionThreshold() {
+        String value = get("journal.compaction.bytes");
+        if (value == null) {
+            return Storage.DEFAULT_COMPACTION_THRESHOLD;
+        }
+        try {
+            long bytes = Long.parseLong(value);
+            if (bytes > 0) {
+                return bytes;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        return ignore("journal.compaction.bytes", value, Storage.DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    private boolean getSwitch(String key, boolean fallback) {
+        String value = get(key);
+        if (value == null) {
+            return fallback;
+        }
+        if (value.equalsIgnoreCase(ON) || value.equalsIgnoreCase("true")) {
+            return true;
+        }
+        if (value.equalsIgnoreCase(OFF) || value.equalsIgnoreCase("false")) {
+            return false;
+        }
+        return ignore(key, value, fallback);
+    }
+
+    /**
+     * Returns the trimmed value of the key, taking the system property over the file, or null if neither sets it.
+     */
+    private String get(String key) {
+        String value = System.getProperty(PROPERTY_PREFIX + key, properties.getProperty(key));
+        return value == null ? null : value.trim();
+    }
+
+    private static <T> T ignore(String key, String value, T fallback) {
+        System.err.println("Warning: Ignoring setting " + key + "=" + value + ", using the default instead.");
+        return fallback;
+    }
+}
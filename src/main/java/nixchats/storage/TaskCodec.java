@@ -0,0 +1,48 @@
+package nixchats.storage;
+
+import nixchats.Task;
+
+/**
+ * Converts single tasks to and from one-line text records.
+ * {@link Storage} uses a codec for text history files and journal records, so alternative
+ * record formats can be plugged in. Implementations must be safe to use from several threads.
+ */
+public interface TaskCodec {
+    /**
+     * Appends the record for a task to the given builder, without a line terminator.
+     * The record must not contain '\n' or '\r'.
+     * @param task Task to encode.
+     * @param isDone Completion status to record, which may differ from the task's current status.
+     * @param out Builder to append to; callers reuse it across records.
+     */
+    void encode(Task task, boolean isDone, StringBuilder out);
+
+    /**
+     * Appends the record for a task without its ID, so records of equal tasks compare equal.
+     * Codecs that do not record IDs can keep the default, which appends the full record.
+     * @param task Task to encode.
+     * @param isDone Completion status to record.
+     * @param out Builder to append to.
+     */
+    default void encodeContent(Task task, boolean isDone, StringBuilder out) {
+        encode(task, isDone, out);
+    }
+
+    /**
+     * Returns the record for a task with its current status.
+     * @param task Task to encode.
+     */
+    default String encode(Task task) {
+        StringBuilder sb = new StringBuilder();
+        encode(task, task.isDone(), sb);
+        return sb.toString();
+    }
+
+    /**
+     * Decodes one record.
+     * @param record Record produced by {@link #encode}, possibly surrounded by whitespace.
+     * @return The decoded task.
+     * @throws IllegalArgumentException if the record is malformed.
+     */
+    Task decode(CharSequence record);
+}
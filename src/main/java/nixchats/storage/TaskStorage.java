@@ -0,0 +1,83 @@
+package nixchats.storage;
+
+import java.util.stream.Stream;
+
+import nixchats.Task;
+import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
+import nixchats.exception.NixChatsException;
+
+/**
+ * Keeps the task list between runs, together with an archive of tasks moved out of it.
+ * {@link Storage} keeps tasks in a history file and {@link SqlStorage} in a SQLite database;
+ * options that only make sense for one of them are set on that class directly.
+ */
+public interface TaskStorage {
+    /**
+     * Loads the stored tasks.
+     * @return List of tasks, with the backing from {@link #getListBacking()}.
+     * @throws NixChatsException if the tasks cannot be read.
+     */
+    TaskList load() throws NixChatsException;
+
+    /**
+     * Saves the tasks, replacing the stored ones.
+     * @throws NixChatsException if the tasks cannot be written.
+     */
+    void save(TaskList list) throws NixChatsException;
+
+    /**
+     * Blocks until every save has reached the store.
+     * @throws NixChatsException if a pending save failed.
+     */
+    void flush() throws NixChatsException;
+
+    /**
+     * Waits for background work to finish and releases open files.
+     * @throws NixChatsException if pending data cannot be written.
+     */
+    void close() throws NixChatsException;
+
+    /**
+     * Archives done tasks that ended at least the given number of days ago on every {@link #load()}.
+     * @param minAgeDays Minimum age in days of the tasks to archive.
+     * @see #archive(TaskList, int)
+     */
+    void enableAutoArchive(int minAgeDays);
+
+    /**
+     * Moves all done tasks out of the list into the archive.
+     * @param list List to archive tasks from; must be saved afterwards.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    int archive(TaskList list) throws NixChatsException;
+
+    /**
+     * Moves done tasks whose deadline or event ended at least the given number of days ago out of the
+     * list into the archive. Tasks without a date are only archived by {@link #archive(TaskList)}.
+     * @param list List to archive tasks from; must be saved afterwards.
+     * @param minAgeDays Minimum age in days of the tasks to archive.
+     * @return Number of archived tasks.
+     * @throws NixChatsException if the archive cannot be written, in which case the list is unchanged.
+     */
+    int archive(TaskList list, int minAgeDays) throws NixChatsException;
+
+    /**
+     * Finds archived tasks whose description contains the keyword, ignoring case.
+     * @param keyword Keyword to be searched for.
+     * @return Matching archived tasks, oldest first. The stream must be closed.
+     * @throws NixChatsException if the archive cannot be read.
+     */
+    Stream<Task> findArchived(String keyword) throws NixChatsException;
+
+    /**
+     * Returns the structure that lists returned by {@link #load()} keep their tasks in.
+     */
+    TaskListBacking getListBacking();
+
+    /**
+     * Returns whether lists returned by {@link #load()} can be shared between threads.
+     */
+    boolean isConcurrentList();
+}
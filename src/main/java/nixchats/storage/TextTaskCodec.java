@@ -0,0 +1,227 @@
+package nixchats.storage;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+
+/**
+ * Default codec for the "T | 1 | description | #42" text format, where the last field is the task ID.
+ * Encoding and decoding are single passes over the characters without regular expressions.
+ * Inside a field, '\' is escaped as "\\", '|' as "\|", and line breaks as "\n" and "\r".
+ * Any other backslash is kept as is, so files written before escaping was introduced still decode.
+ */
+public class TextTaskCodec implements TaskCodec {
+    static final int MAX_FIELDS = 6;
+    static final char ID_PREFIX = '#';
+    private static final String SEPARATOR = " | ";
+
+    @Override
+    public void encode(Task task, boolean isDone, StringBuilder out) {
+        encodeContent(task, isDone, out);
+        out.append(SEPARATOR).append(ID_PREFIX).append(task.getId());
+    }
+
+    @Override
+    public void encodeContent(Task task, boolean isDone, StringBuilder out) {
+        assert task != null : "Task cannot be null";
+        assert task.getDescription() != null : "Task description cannot be null";
+
+        if (task instanceof DeadlineTask d) {
+            assert d.getBy() != null : "Deadline task must have a 'by' date";
+            out.append('D');
+            appendFields(out, isDone, d.getDescription());
+            escape(d.getBy(), out.append(SEPARATOR));
+        } else if (task instanceof EventTask e) {
+            assert e.getFrom() != null : "Event task must have a 'from' date";
+            assert e.getTo() != null : "Event task must have a 'to' date";
+            out.append('E');
+            appendFields(out, isDone, e.getDescription());
+            escape(e.getFrom(), out.append(SEPARATOR));
+            escape(e.getTo(), out.append(SEPARATOR));
+        } else {
+            // Todos, and any other kind of task as a plain todo
+            out.append('T');
+            appendFields(out, isDone, task.getDescription());
+        }
+    }
+
+    private static void appendFields(StringBuilder out, boolean isDone, String description) {
+        out.append(SEPARATOR).append(isDone ? '1' : '0').append(SEPARATOR);
+        escape(description, out);
+    }
+
+    @Override
+    public Task decode(CharSequence record) {
+        assert record != null : "Record cannot be null";
+
+        int start = 0;
+        int end = record.length();
+        // Same characters as String.trim()
+        while (start < end && record.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && record.charAt(end - 1) <= ' ') {
+            end--;
+        }
+
+        int[] fieldStart = new int[MAX_FIELDS];
+        int[] fieldEnd = new int[MAX_FIELDS];
+        int count = 0;
+        int nonEmpty = 0;
+        int fieldFrom = start;
+        for (int i = start; i <= end; i++) {
+            if (i < end) {
+                char c = record.charAt(i);
+                if (c == '\\' && i + 1 < end) {
+                    i++; // skip the escaped character
+                    continue;
+                }
+                if (c != '|') {
+                    continue;
+                }
+            }
+            int s = fieldFrom;
+            int e = Math.min(i, end);
+            while (s < e && isRegexSpace(record.charAt(s))) {
+                s++;
+            }
+            while (e > s && isRegexSpace(record.charAt(e - 1))) {
+                e--;
+            }
+            if (count < MAX_FIELDS) {
+                fieldStart[count] = s;
+                fieldEnd[count] = e;
+            }
+            count++;
+            if (e > s) {
+                nonEmpty = count; // trailing empty fields are ignored, as String.split does
+            }
+            fieldFrom = i + 1;
+        }
+
+        if (nonEmpty < 3 || fieldEnd[0] - fieldStart[0] != 1) {
+            throw new IllegalArgumentException("Missing fields in task record: " + record);
+        }
+        char type = record.charAt(fieldStart[0]);
+        boolean isDone = fieldEnd[1] - fieldStart[1] == 1 && record.charAt(fieldStart[1]) == '1';
+        int required = requiredFields(type);
+        if (nonEmpty < required) {
+            throw new IllegalArgumentException("Missing fields in task record: " + record);
+        }
+        String desc = unescape(record, fieldStart[2], fieldEnd[2]);
+        String first = required > 3 ? unescape(record, fieldStart[3], fieldEnd[3]) : null;
+        String second = required > 4 ? unescape(record, fieldStart[4], fieldEnd[4]) : null;
+        long id = nonEmpty > required ? parseId(record, fieldStart[required], fieldEnd[required]) : Storage.NO_ID;
+        return Storage.newTask(id, type, isDone, desc, first, second);
+    }
+
+    /**
+     * Parses an ID field like "#42" in {@code s[from, to)}.
+     * @return The ID, or {@link Storage#NO_ID} if the field is not an ID, as in records written before IDs.
+     */
+    static long parseId(CharSequence s, int from, int to) {
+        if (to - from < 2 || to - from > 20 || s.charAt(from) != ID_PREFIX) {
+            return Storage.NO_ID;
+        }
+        long id = 0;
+        for (int i = from + 1; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9' || id > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return Storage.NO_ID;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    /**
+     * Returns the number of fields a record of the given type needs.
+     * @param type Type letter of the record.
+     */
+    static int requiredFields(char type) {
+        switch (type) {
+        case 'D':
+            return 4;
+        case 'E':
+            return 5;
+        default:
+            return 3;
+        }
+    }
+
+    /**
+     * Appends a field value with delimiters and line breaks escaped.
+     * @param value Field value.
+     * @param out Builder to append to.
+     */
+    static void escape(String value, StringBuilder out) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '\\':
+                out.append("\\\\");
+                break;
+            case '|':
+                out.append("\\|");
+                break;
+            case '\n':
+                out.append("\\n");
+                break;
+            case '\r':
+                out.append("\\r");
+                break;
+            default:
+                out.append(c);
+            }
+        }
+    }
+
+    /**
+     * Returns the unescaped value of {@code s[from, to)}.
+     */
+    static String unescape(CharSequence s, int from, int to) {
+        int firstEscape = -1;
+        for (int i = from; i < to; i++) {
+            if (s.charAt(i) == '\\') {
+                firstEscape = i;
+                break;
+            }
+        }
+        if (firstEscape < 0) {
+            return s.subSequence(from, to).toString();
+        }
+        StringBuilder sb = new StringBuilder(to - from);
+        sb.append(s, from, firstEscape);
+        for (int i = firstEscape; i < to; i++) {
+            char c = s.charAt(i);
+            if (c != '\\' || i + 1 == to) {
+                sb.append(c);
+                continue;
+            }
+            char next = s.charAt(i + 1);
+            switch (next) {
+            case '\\':
+            case '|':
+                sb.append(next);
+                i++;
+                break;
+            case 'n':
+                sb.append('\n');
+                i++;
+                break;
+            case 'r':
+                sb.append('\r');
+                i++;
+                break;
+            default:
+                sb.append(c); // not an escape: keep the backslash
+            }
+        }
+        return sb.toString();
+    }
+
+    /** Matches the regex class {@code \s}. */
+    static boolean isRegexSpace(int c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -10,20 +10,41 @@ public class TextUi {
                                     Usage:
                                       list
                                         - Show all tasks.
+                                      list pending|done
+                                        - Show only pending or done tasks, with their count.
                                       find <keyword>
                                         - Find tasks containing the keyword.
+                                      find~ <word> [max-edits]
+                                        - Find tasks with a word like the given one, allowing for typos.
                                       todo <description>
                                         - Add a to-do task.
                                       deadline <description> /by <when>
                                         - Add a deadline task.
                                       event <description> /from <start> /to <end>
                                         - Add an event task.
-                                      mark <task-number>
-                                        - Mark a task as done.
-                                      unmark <task-number>
-                                        - Mark a task as not done.
-                                      delete <task-number>
-                                        - Delete a task.
+                                      mark <task-numbers>
+                                        - Mark tasks as done, e.g. "mark 2" or "mark 1,4,7-30".
+                                      unmark <task-numbers>
+                                        - Mark tasks as not done.
+                                      delete <task-numbers>
+                                        - Delete tasks, e.g. "delete 5-90".
+                                      mark|unmark|delete where "<keyword>"
+                                        - Apply to every task containing the keyword.
+                                      due <yyyy-mm-dd>
+                                        - Show pending tasks due by the date.
+                                      between <yyyy-mm-dd> <yyyy-mm-dd>
+                                        - Show tasks due or ending between the dates.
+                                      overdue
+                                        - Show pending tasks whose date has passed.
+                                      next [count]
+                                        - Show the pending tasks that end soonest, 5 unless a count is given.
+                                      query [type:T|D|E] [done:true|false] [due<yyyy-mm-dd] [words]
+                                            [sort:due|description] [limit:<n>]
+                                        - Show tasks matching all the given terms.
+                                      stats
+                                        - Show task counts and how much task text is shared.
+                                      archive [days]
+                                        - Move done tasks (ended at least [days] ago) to the archive.
                                       bye
                                         - Exit the application.
                     """;
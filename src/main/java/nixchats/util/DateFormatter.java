@@ -3,6 +3,8 @@ package nixchats.util;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.OptionalLong;
 
 /**
  * Utility class for formatting dates in NixChats.
@@ -11,6 +13,7 @@ import java.time.format.DateTimeParseException;
 public class DateFormatter {
     private static final DateTimeFormatter INPUT_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd");
     private static final DateTimeFormatter OUTPUT_FORMAT = DateTimeFormatter.ofPattern("MMM dd yyyy");
+    private static final DateTimeFormatter STORED_FORMAT = DateTimeFormatter.ofPattern("MMM d yyyy", Locale.ENGLISH);
 
     /**
      * Formats a date string from YYYY-MM-DD to MMM dd yyyy format.
@@ -52,4 +55,34 @@ public class DateFormatter {
             return false;
         }
     }
+
+    /**
+     * Converts a stored date such as "Oct 17 2026" (or an input date such as "2026-10-17") to its epoch day.
+     *
+     * @param dateString The date string to convert
+     * @return The epoch day, or empty if the string is not a recognised date
+     */
+    public static OptionalLong toEpochDay(String dateString) {
+        if (dateString == null || dateString.trim().isEmpty()) {
+            return OptionalLong.empty();
+        }
+        String trimmed = dateString.trim();
+        // Input dates start with the year and stored dates with the month, so at most one parse is tried
+        DateTimeFormatter format = Character.isDigit(trimmed.charAt(0)) ? INPUT_FORMAT : STORED_FORMAT;
+        try {
+            return OptionalLong.of(LocalDate.parse(trimmed, format).toEpochDay());
+        } catch (DateTimeParseException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Converts an epoch day back to the stored date format, e.g. "Oct 17 2026".
+     *
+     * @param epochDay The epoch day to convert
+     * @return Date string in MMM d yyyy format
+     */
+    public static String fromEpochDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).format(STORED_FORMAT);
+    }
 }
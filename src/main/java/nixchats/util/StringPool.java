@@ -0,0 +1,87 @@
+package nixchats.util;
+
+import java.lang.ref.WeakReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of shared String instances for task fields, so that the many tasks with the same
+ * description or date share one String instead of each holding its own copy.
+ * The pool is a fixed table of weak references: a string stays pooled only while some task uses it,
+ * and a new string that finds both of its slots taken evicts the older entry.
+ * Lookups are counted, so the hit rate shows how much sharing the pool achieves.
+ */
+public class StringPool {
+    /** Number of slots in the pool. */
+    public static final int CAPACITY = 1 << 15;
+
+    private static final AtomicReferenceArray<WeakReference<String>> slots = new AtomicReferenceArray<>(CAPACITY);
+    private static final LongAdder lookups = new LongAdder();
+    private static final LongAdder hits = new LongAdder();
+
+    /**
+     * Returns the pooled instance equal to the given string, pooling the string itself if there is none.
+     * Concurrent callers may occasionally pool two equal instances, which only costs some sharing.
+     *
+     * @param s The string to intern, possibly null
+     * @return An equal string, or null if the given string is null
+     */
+    public static String intern(String s) {
+        if (s == null) {
+            return null;
+        }
+        lookups.increment();
+        int hash = s.hashCode();
+        // Each string may live in its home slot or the neighbouring one
+        int home = (hash ^ (hash >>> 16)) & (CAPACITY - 1);
+        int neighbour = home ^ 1;
+        String atHome = pooled(home);
+        String atNeighbour = pooled(neighbour);
+        if (s.equals(atHome)) {
+            hits.increment();
+            return atHome;
+        }
+        if (s.equals(atNeighbour)) {
+            hits.increment();
+            return atNeighbour;
+        }
+        if (atHome != null && atNeighbour == null) {
+            slots.set(neighbour, new WeakReference<>(s));
+        } else {
+            if (atHome != null) {
+                // Both slots are taken: the home entry moves over and the neighbour's is evicted
+                slots.set(neighbour, slots.get(home));
+            }
+            slots.set(home, new WeakReference<>(s));
+        }
+        return s;
+    }
+
+    private static String pooled(int slot) {
+        WeakReference<String> ref = slots.get(slot);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * Returns the number of lookups since the pool was created or last reset.
+     */
+    public static long getLookupCount() {
+        return lookups.sum();
+    }
+
+    /**
+     * Returns the fraction of lookups that found a pooled instance, or 0 if there were none.
+     */
+    public static double getHitRate() {
+        long total = lookups.sum();
+        return total == 0 ? 0 : (double) hits.sum() / total;
+    }
+
+    /**
+     * Resets the lookup counters, e.g. before loading a history to measure its sharing alone.
+     */
+    public static void resetStats() {
+        lookups.reset();
+        hits.reset();
+    }
+}
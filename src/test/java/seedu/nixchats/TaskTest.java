@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.OptionalLong;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -243,4 +245,18 @@ public class TaskTest {
 
         tearDown();
     }
+
+    @Test
+    @DisplayName("getEndDay should read stored and input dates, and be empty for other text")
+    void getEndDay_variousDates_returnsEpochDay() {
+        long jan16 = LocalDate.of(2025, 1, 16).toEpochDay();
+        assertEquals(OptionalLong.of(jan16 + 15), deadlineTask.getEndDay());
+        assertEquals(OptionalLong.of(jan16), eventTask.getEndDay());
+        assertEquals(OptionalLong.of(jan16), new DeadlineTask("pay", false, "2025-01-16").getEndDay());
+        assertEquals(OptionalLong.empty(), new DeadlineTask("pay", false, "next Friday").getEndDay());
+        assertEquals(OptionalLong.empty(), new EventTask("trip", false, "Jan 1 2025", "2025-13-01").getEndDay());
+        assertEquals(OptionalLong.empty(), todoTask.getEndDay());
+
+        tearDown();
+    }
 }
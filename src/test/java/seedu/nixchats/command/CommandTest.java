@@ -275,4 +275,30 @@ public class CommandTest {
         unmarkCmd.execute(); // Second unmark should not crash
         assertFalse(todoTask.isDone());
     }
+
+    @Test
+    @DisplayName("Undo should find its task by ID after other tasks were added and deleted")
+    void undo_afterListReshuffled_findsTaskById() {
+        Task other = new ToDoTask("other", false);
+        taskList.addTask(other);
+        taskList.addTask(todoTask);
+        taskList.addTask(deadlineTask);
+
+        MarkTaskCommand markCmd = new MarkTaskCommand(taskList, 1);
+        markCmd.execute();
+        DeleteTaskCommand deleteCmd = new DeleteTaskCommand(taskList, 1);
+        deleteCmd.execute();
+        taskList.deleteTask(0, false);
+        taskList.insertTask(0, new ToDoTask("new first", false));
+        taskList.insertTask(0, new ToDoTask("newer first", false));
+
+        // The deleted task goes back in front of the task that followed it
+        deleteCmd.undo();
+        assertEquals(todoTask, taskList.getTask(2));
+        assertEquals(deadlineTask, taskList.getTask(3));
+
+        markCmd.undo();
+        assertFalse(todoTask.isDone());
+        assertEquals(4, taskList.size());
+    }
 }
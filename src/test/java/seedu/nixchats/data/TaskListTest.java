@@ -2,22 +2,34 @@ package seedu.nixchats.data;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import nixchats.DeadlineTask;
 import nixchats.EventTask;
 import nixchats.Task;
 import nixchats.ToDoTask;
 import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
+import nixchats.data.TaskListSnapshot;
 import nixchats.exception.InputException;
+import nixchats.parser.Query;
 
 /**
  * AI-Enhanced Test Suite for TaskList class.
@@ -25,6 +37,9 @@ import nixchats.exception.InputException;
  */
 public class TaskListTest {
 
+    @TempDir
+    Path tempDir;
+
     private TaskList taskList;
     private Task todoTask;
     private Task deadlineTask;
@@ -186,6 +201,384 @@ public class TaskListTest {
         assertTrue(results.isEmpty());
     }
 
+    @Test
+    @DisplayName("findTasks should stay correct as tasks are added, inserted and deleted after a search")
+    void findTasks_afterInsertAndDelete_matchesSubstringsInListOrder() {
+        for (int i = 0; i < 20; i++) {
+            taskList.addTask(new ToDoTask("filler " + i, false));
+        }
+        taskList.addTask(new ToDoTask("write Report", false));
+        assertEquals(1, taskList.findTasks("report").size());
+
+        ToDoTask inserted = new ToDoTask("reports due", false);
+        taskList.insertTask(0, inserted);
+        ToDoTask added = new ToDoTask("misreported hours", false);
+        taskList.addTask(added);
+        taskList.deleteTask(1, false);
+
+        var results = taskList.findTasks("report");
+        assertEquals(3, results.size());
+        assertSame(inserted, results.get(0));
+        assertEquals("write Report", results.get(1).getDescription());
+        assertSame(added, results.get(2));
+        assertEquals(List.of(taskList.getTask(19)), taskList.findTasks("ler 19"));
+    }
+
+    @Test
+    @DisplayName("findTasks should match substrings across word boundaries and inside words")
+    void findTasks_keywordSpanningWords_matchesLikeContains() {
+        for (int i = 0; i < 20; i++) {
+            taskList.addTask(new ToDoTask("filler " + i, false));
+        }
+        taskList.addTask(new ToDoTask("Read BOOK, then nap", false));
+        taskList.addTask(new ToDoTask("notebook", false));
+
+        assertEquals(2, taskList.findTasks("ook").size());
+        assertEquals(1, taskList.findTasks("k, t").size());
+        assertEquals(1, taskList.findTasks("d boo").size());
+        assertTrue(taskList.findTasks("book then").isEmpty());
+        assertEquals(20, taskList.findTasks("er").size());
+    }
+
+    @Test
+    @DisplayName("date queries should return tasks in date order and follow later changes")
+    void findTasksBetween_afterMutations_returnsTasksInDateOrder() {
+        long jan15 = LocalDate.of(2025, 1, 15).toEpochDay();
+        long jan31 = LocalDate.of(2025, 1, 31).toEpochDay();
+        taskList.addTask(deadlineTask);
+        taskList.addTask(todoTask);
+        taskList.addTask(eventTask);
+        assertEquals(List.of(eventTask, deadlineTask), taskList.findTasksBetween(jan15, jan31));
+        assertEquals(List.of(eventTask), taskList.findPendingTasksDueBy(jan31 - 1));
+
+        Task sameDay = new DeadlineTask("pay rent", false, "Jan 31 2025");
+        taskList.insertTask(0, sameDay);
+        taskList.markTask(3);
+        assertEquals(List.of(eventTask, sameDay, deadlineTask), taskList.findTasksBetween(jan15, jan31));
+        assertEquals(List.of(sameDay, deadlineTask), taskList.findPendingTasksDueBy(jan31));
+
+        taskList.deleteTask(1, false);
+        taskList.setTaskDone(2, false);
+        assertEquals(List.of(eventTask, sameDay), taskList.findPendingTasksDueBy(jan31));
+        assertTrue(taskList.findTasksBetween(jan31 + 1, jan31 + 365).isEmpty());
+    }
+
+    @Test
+    @DisplayName("status masks and counts should follow inserts, deletes and status changes")
+    void getStatusMask_afterMutations_tracksDoneAndPendingTasks() {
+        for (int i = 0; i < 100; i++) {
+            taskList.addTask(new ToDoTask("task " + i, i % 3 == 0));
+        }
+        assertEquals(34, taskList.countDone());
+        taskList.insertTask(0, new ToDoTask("urgent report", false));
+        taskList.deleteTask(64, false);
+        taskList.markTask(1);
+        taskList.unmarkTask(4);
+
+        BitSet done = taskList.getStatusMask(true);
+        int expectedDone = 0;
+        for (int i = 0; i < taskList.size(); i++) {
+            assertEquals(taskList.getTask(i).isDone(), done.get(i));
+            expectedDone += taskList.getTask(i).isDone() ? 1 : 0;
+        }
+        assertEquals(expectedDone, taskList.countDone());
+        assertEquals(taskList.size() - expectedDone, taskList.countPending());
+        assertEquals(taskList.countPending(), taskList.getStatusMask(false).cardinality());
+
+        BitSet pendingReports = taskList.getKeywordMask("report");
+        pendingReports.and(taskList.getStatusMask(false));
+        assertEquals(List.of(taskList.getTask(0)), taskList.getTasks(pendingReports));
+        taskList.markTask(0);
+        pendingReports = taskList.getKeywordMask("report");
+        pendingReports.and(taskList.getStatusMask(false));
+        assertTrue(taskList.getTasks(pendingReports).isEmpty());
+    }
+
+    @Test
+    @DisplayName("tree-backed list should behave like the array-backed list")
+    void insertAndDelete_treeBacking_matchesArrayBacking() {
+        TaskList tree = new TaskList(TaskListBacking.TREE);
+        for (int i = 0; i < 200; i++) {
+            Task task = new ToDoTask("task " + i, i % 5 == 0);
+            taskList.insertTask(i / 2, task);
+            tree.insertTask(i / 2, task);
+        }
+        assertEquals(taskList.findTasks("task 1"), tree.findTasks("task 1"));
+        for (int i = 0; i < 150; i += 3) {
+            taskList.deleteTask(i % taskList.size(), false);
+            tree.deleteTask(i % tree.size(), false);
+            taskList.markTask(i / 3);
+            tree.markTask(i / 3);
+        }
+
+        assertEquals(TaskListBacking.TREE, tree.getBacking());
+        assertEquals(taskList.size(), tree.size());
+        List<Task> arrayTasks = new ArrayList<>();
+        taskList.forEach(arrayTasks::add);
+        List<Task> treeTasks = new ArrayList<>();
+        tree.forEach(treeTasks::add);
+        assertEquals(arrayTasks, treeTasks);
+        assertEquals(taskList.findTasks("task 1"), tree.findTasks("task 1"));
+        assertEquals(taskList.getStatusMask(true), tree.getStatusMask(true));
+    }
+
+    @Test
+    @DisplayName("persistent list should behave like the array-backed list and keep every snapshot intact")
+    void snapshots_persistentBacking_keepTheirVersion() {
+        TaskList persistent = new TaskList(TaskListBacking.PERSISTENT);
+        List<TaskListSnapshot> snapshots = new ArrayList<>();
+        List<List<Task>> versions = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Task task = new ToDoTask("task " + i, false);
+            taskList.insertTask(i / 2, task);
+            persistent.insertTask(i / 2, task);
+            if (i % 3 == 0) {
+                persistent.deleteTask(i % persistent.size(), false);
+                taskList.deleteTask(i % taskList.size(), false);
+            }
+            List<Task> version = new ArrayList<>();
+            persistent.forEach(version::add);
+            versions.add(version);
+            snapshots.add(persistent.snapshot());
+        }
+
+        List<Task> arrayTasks = new ArrayList<>();
+        taskList.forEach(arrayTasks::add);
+        assertEquals(arrayTasks, versions.get(versions.size() - 1));
+        assertEquals(taskList.findTasks("task 1"), persistent.findTasks("task 1"));
+        for (int i = 0; i < snapshots.size(); i++) {
+            TaskListSnapshot snapshot = snapshots.get(i);
+            assertEquals(versions.get(i).size(), snapshot.size());
+            for (int j = 0; j < snapshot.size(); j++) {
+                assertSame(versions.get(i).get(j), snapshot.getTask(j));
+            }
+            snapshot.release();
+        }
+    }
+
+    @Test
+    @DisplayName("columnar list should store every kind of task and answer searches from its columns")
+    void columnarBacking_mixedTasks_matchesArrayBacking() {
+        TaskList columnar = new TaskList(TaskListBacking.COLUMNAR);
+        Task[] tasks = {
+            new ToDoTask("read book", false),
+            new DeadlineTask("submit report", true, "Jan 31 2025"),
+            new EventTask("café meeting", false, "Jan 15 2025", "Jan 16 2025"),
+            new DeadlineTask("free text date", false, "next Sunday"),
+            new DeadlineTask("pay rent", false, "Jan 16 2025")
+        };
+        for (Task task : tasks) {
+            taskList.addTask(task);
+            columnar.addTask(task);
+        }
+        TaskListSnapshot snapshot = columnar.snapshot();
+        columnar.markTask(0);
+        columnar.deleteTask(3, false);
+
+        assertEquals(TaskListBacking.COLUMNAR, columnar.getBacking());
+        assertEquals(4, columnar.size());
+        assertEquals(2, columnar.countDone());
+        assertEquals(tasks[2].toString(), columnar.getTask(2).toString());
+        assertEquals(tasks[1].getId(), columnar.getTaskById(tasks[1].getId()).getId());
+        assertEquals(3, columnar.indexOf(tasks[4].getId()));
+        assertEquals(-1, columnar.indexOf(tasks[3].getId()));
+        assertEquals("café meeting", columnar.findTasks("CAFÉ").get(0).getDescription());
+        assertEquals(List.of("café meeting", "pay rent"), columnar.findTasksBetween(
+                LocalDate.of(2025, 1, 16).toEpochDay(), LocalDate.of(2025, 1, 16).toEpochDay())
+                .stream().map(Task::getDescription).toList());
+
+        // The snapshot keeps the columns as they were
+        assertEquals(5, snapshot.size());
+        assertFalse(snapshot.isDone(0));
+        assertEquals("next Sunday", ((DeadlineTask) snapshot.getTask(3)).getBy());
+        snapshot.release();
+    }
+
+    @Test
+    @DisplayName("off-heap list should store every kind of task and reuse the blocks of deleted ones")
+    void offHeapBacking_mixedTasks_matchesArrayBacking() {
+        TaskList offHeap = new TaskList(TaskListBacking.OFF_HEAP);
+        for (int i = 0; i < 1000; i++) {
+            Task task = i % 3 == 0 ? new ToDoTask("café task " + i, false)
+                    : i % 3 == 1 ? new DeadlineTask("task " + i, i % 2 == 0, "Jan " + (i % 28 + 1) + " 2025")
+                    : new EventTask("task " + i, false, "Jan 1 2025", "next Sunday");
+            taskList.addTask(task);
+            offHeap.insertTask(offHeap.size(), task);
+        }
+        for (int i = 0; i < 500; i++) {
+            int index = (i * 7) % taskList.size();
+            taskList.deleteTask(index, false);
+            offHeap.deleteTask(index, false);
+            taskList.addTask(new ToDoTask("replacement " + i, false));
+            offHeap.addTask(taskList.getTask(taskList.size() - 1));
+            taskList.markTask(index);
+            offHeap.markTask(index);
+        }
+
+        assertEquals(taskList.size(), offHeap.size());
+        assertEquals(taskList.countDone(), offHeap.countDone());
+        for (int i = 0; i < taskList.size(); i++) {
+            assertEquals(taskList.getTask(i).toString(), offHeap.getTask(i).toString());
+        }
+        assertEquals(taskList.getKeywordMask("CAFÉ"), offHeap.getKeywordMask("CAFÉ"));
+        long day = LocalDate.of(2025, 1, 16).toEpochDay();
+        assertEquals(taskList.getDateMask(day, day + 3), offHeap.getDateMask(day, day + 3));
+        Task last = taskList.getTask(taskList.size() - 1);
+        assertEquals(taskList.size() - 1, offHeap.indexOf(last.getId()));
+    }
+
+    @Test
+    @DisplayName("mapped list should be restored from its file after a flush")
+    void openMapped_flushedList_restoredOnReopen() throws IOException {
+        Path file = tempDir.resolve("tasks.bin");
+        TaskList mapped = TaskList.openMapped(file, false);
+        mapped.addTask(todoTask);
+        mapped.addTask(deadlineTask);
+        mapped.addTask(eventTask);
+        mapped.markTask(2);
+        mapped.deleteTask(0, false);
+        mapped.flush();
+
+        TaskList reopened = TaskList.openMapped(file, false);
+        assertEquals(TaskListBacking.OFF_HEAP, reopened.getBacking());
+        assertEquals(2, reopened.size());
+        assertEquals(1, reopened.countDone());
+        assertEquals(deadlineTask.toString(), reopened.getTask(0).toString());
+        assertEquals(eventTask.getId(), reopened.getTask(1).getId());
+        assertTrue(reopened.getTask(1).isDone());
+        assertEquals(0, reopened.indexOf(deadlineTask.getId()));
+    }
+
+    @Test
+    @DisplayName("indexOf should follow tasks as rows move with every backing")
+    void indexOf_afterInsertsAndDeletes_findsEveryTaskByIdWithEveryBacking() {
+        for (TaskListBacking backing : TaskListBacking.values()) {
+            TaskList list = new TaskList(backing);
+            for (int i = 0; i < 200; i++) {
+                list.addTask(new ToDoTask("task " + i, false));
+            }
+            for (int i = 0; i < 100; i++) {
+                list.insertTask((i * 13) % list.size(), new ToDoTask("inserted " + i, false));
+                list.deleteTask((i * 7) % list.size(), false);
+            }
+            // Halves the space between the first two rows each time, until they have to be renumbered
+            for (int i = 0; i < 40; i++) {
+                list.insertTask(1, new ToDoTask("squeezed " + i, false));
+            }
+            Task removed = list.getTask(50);
+            list.deleteTask(50, false);
+
+            for (int i = 0; i < list.size(); i++) {
+                assertEquals(i, list.indexOf(list.getTask(i).getId()), backing.name());
+            }
+            assertEquals(-1, list.indexOf(removed.getId()), backing.name());
+            assertNull(list.getTaskById(removed.getId()), backing.name());
+        }
+    }
+
+    @Test
+    @DisplayName("query should give the same sorted and limited results with every backing")
+    void query_everyBacking_sortsFiltersAndLimits() {
+        List<Task> tasks = List.of(
+                new DeadlineTask("pay rent", false, "Feb 1 2025"),
+                new ToDoTask("write report", false),
+                new DeadlineTask("submit report", false, "Jan 31 2025"),
+                new EventTask("report review", true, "Jan 2 2025", "Jan 3 2025"),
+                new DeadlineTask("file taxes", false, "Jan 31 2025"));
+        for (TaskListBacking backing : TaskListBacking.values()) {
+            TaskList list = new TaskList(backing);
+            tasks.forEach(list::addTask);
+
+            assertEquals(List.of("submit report", "file taxes"), descriptions(
+                    list.query(Query.parse("type:D done:false due<2025-02-01 sort:due"))), backing.name());
+            assertEquals(List.of("report review", "submit report"), descriptions(
+                    list.query(Query.parse("report sort:due limit:2"))), backing.name());
+            assertEquals(List.of("report review", "submit report", "write report"), descriptions(
+                    list.query(Query.parse("report sort:description"))), backing.name());
+            assertEquals(List.of("pay rent", "write report"), descriptions(
+                    list.query(Query.parse("done:false limit:2"))), backing.name());
+            assertTrue(list.query(Query.parse("due>2025-02-01 due<2025-01-01")).isEmpty());
+        }
+    }
+
+    @Test
+    @DisplayName("query with a date bound but no sort should keep the first matches in list order")
+    void query_dueBoundWithLimitUnsorted_keepsListOrder() {
+        List<Task> tasks = List.of(
+                new DeadlineTask("pay rent", false, "Feb 1 2025"),
+                new DeadlineTask("submit report", false, "Jan 31 2025"),
+                new EventTask("report review", true, "Jan 2 2025", "Jan 3 2025"),
+                new DeadlineTask("file taxes", false, "Jan 15 2025"));
+        for (TaskListBacking backing : TaskListBacking.values()) {
+            TaskList list = new TaskList(backing);
+            tasks.forEach(list::addTask);
+
+            assertEquals(List.of("pay rent", "submit report"), descriptions(
+                    list.query(Query.parse("due<2026-12-01 limit:2"))), backing.name());
+            assertEquals(List.of("submit report", "file taxes"), descriptions(
+                    list.query(Query.parse("done:false due<2025-02-01 limit:5"))), backing.name());
+            assertEquals(List.of("report review", "file taxes"), descriptions(
+                    list.query(Query.parse("due<2026-12-01 sort:due limit:2"))), backing.name());
+        }
+    }
+
+    @Test
+    @DisplayName("findSimilarTasks should rank tasks by typos with every backing, also after changes")
+    void findSimilarTasks_everyBacking_closestFirst() {
+        for (TaskListBacking backing : TaskListBacking.values()) {
+            TaskList list = new TaskList(backing);
+            list.addTask(new EventTask("team meeting", false, "Jan 15 2025", "Jan 16 2025"));
+            list.addTask(new ToDoTask("Setting up", false));
+            list.addTask(new ToDoTask("read book", false));
+            list.addTask(new DeadlineTask("meeting notes", false, "Jan 31 2025"));
+
+            assertEquals(List.of("team meeting", "Setting up", "meeting notes"),
+                    descriptions(list.findSimilarTasks("metting", 2)), backing.name());
+            assertEquals(List.of("Setting up", "team meeting", "meeting notes"),
+                    descriptions(list.findSimilarTasks("seting", 2)), backing.name());
+            assertEquals(List.of("Setting up"), descriptions(list.findSimilarTasks("SETTING", 0)), backing.name());
+            assertEquals(List.of("read book"), descriptions(list.findSimilarTasks("bok", 1)), backing.name());
+
+            list.deleteTask(0, false);
+            list.insertTask(1, new ToDoTask("book meeting room", false));
+            assertEquals(List.of("book meeting room", "meeting notes"),
+                    descriptions(list.findSimilarTasks("meeting", 0)), backing.name());
+            assertEquals(List.of("book meeting room", "read book"),
+                    descriptions(list.findSimilarTasks("book", 0)), backing.name());
+        }
+    }
+
+    @Test
+    @DisplayName("findNextTasks should list the soonest pending tasks with every backing, also after changes")
+    void findNextTasks_everyBacking_soonestPendingFirst() {
+        for (TaskListBacking backing : TaskListBacking.values()) {
+            TaskList list = new TaskList(backing);
+            list.addTask(new DeadlineTask("pay rent", false, "Feb 1 2025"));
+            list.addTask(new ToDoTask("write report", false));
+            list.addTask(new DeadlineTask("submit report", false, "Jan 31 2025"));
+            list.addTask(new EventTask("report review", true, "Jan 2 2025", "Jan 3 2025"));
+            list.addTask(new DeadlineTask("file taxes", false, "Jan 31 2025"));
+
+            assertEquals(List.of("submit report", "file taxes"), descriptions(list.findNextTasks(2)), backing.name());
+
+            list.markTask(2);
+            list.unmarkTask(3);
+            list.insertTask(0, new DeadlineTask("renew passport", false, "Jan 31 2025"));
+            assertEquals(List.of("report review", "renew passport", "file taxes", "pay rent"),
+                    descriptions(list.findNextTasks(10)), backing.name());
+
+            list.deleteTask(4, false);
+            list.deleteTask(0, false);
+            assertEquals(List.of("file taxes"), descriptions(list.findNextTasks(1)), backing.name());
+            assertEquals(descriptions(list.findPendingTasksDueBy(Long.MAX_VALUE)),
+                    descriptions(list.findNextTasks(10)), backing.name());
+        }
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        return tasks.stream().map(Task::getDescription).toList();
+    }
+
     @Test
     @DisplayName("iterator should iterate through all tasks")
     void iterator_allTasks_iteratesCorrectly() {
@@ -229,4 +622,89 @@ public class TaskListTest {
         // Find on empty list should return empty
         assertTrue(taskList.findTasks("anything").isEmpty());
     }
+
+    @Test
+    @DisplayName("snapshot should not see mutations made after it was taken")
+    void snapshot_laterMutations_notVisible() {
+        taskList.addTask(todoTask);
+        taskList.addTask(deadlineTask);
+        TaskListSnapshot snapshot = taskList.snapshot();
+
+        taskList.setTaskDone(0, true);
+        taskList.deleteTask(1, false);
+        taskList.addTask(eventTask);
+
+        assertEquals(2, snapshot.size());
+        assertEquals(deadlineTask, snapshot.getTask(1));
+        assertFalse(snapshot.isDone(0));
+        assertTrue(taskList.getTask(0).isDone());
+        assertEquals(eventTask, taskList.getTask(1));
+        snapshot.release();
+    }
+
+    @Test
+    @DisplayName("getTaskById and indexOf should follow tasks as the list is reshuffled")
+    void getTaskById_afterInsertAndDelete_findsTasks() {
+        taskList.addTask(todoTask);
+        taskList.addTask(deadlineTask);
+        taskList.insertTask(0, eventTask);
+        taskList.deleteTask(1, false);
+
+        assertSame(deadlineTask, taskList.getTaskById(deadlineTask.getId()));
+        assertEquals(1, taskList.indexOf(deadlineTask.getId()));
+        assertEquals(0, taskList.indexOf(eventTask.getId()));
+        assertNull(taskList.getTaskById(todoTask.getId()));
+        assertEquals(-1, taskList.indexOf(todoTask.getId()));
+
+        // A task with a clashing ID is given a new one
+        Task clash = new ToDoTask(eventTask.getId(), "clash", false);
+        taskList.addTask(clash);
+        assertTrue(clash.getId() != eventTask.getId());
+        assertSame(eventTask, taskList.getTaskById(eventTask.getId()));
+        assertSame(clash, taskList.getTaskById(clash.getId()));
+    }
+
+    @Test
+    @DisplayName("Concurrent list should give readers consistent results while another thread writes")
+    void concurrentMode_readersDuringWrites_seeConsistentList() throws InterruptedException {
+        TaskList shared = new TaskList(TaskListBacking.ARRAY, true);
+        int baseCount = 200;
+        for (int i = 0; i < baseCount; i++) {
+            shared.addTask(new ToDoTask("base " + i, false));
+        }
+        List<Throwable> failures = java.util.Collections.synchronizedList(new ArrayList<>());
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                shared.insertTask(0, new ToDoTask("temp " + i, false));
+                shared.markTask(0);
+                shared.deleteTask(0, false);
+            }
+        });
+        Thread reader = new Thread(() -> {
+            try {
+                while (writer.isAlive()) {
+                    int size = shared.size();
+                    assertTrue(size == baseCount || size == baseCount + 1);
+                    assertTrue(shared.getTask(baseCount - 1).getDescription().startsWith("base "));
+                    assertEquals(baseCount, shared.findTasks("base").size());
+                    int iterated = 0;
+                    for (Task task : shared) {
+                        assertTrue(iterated == 0 || task.getDescription().startsWith("base "));
+                        iterated++;
+                    }
+                    assertTrue(iterated == baseCount || iterated == baseCount + 1);
+                }
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        writer.start();
+        reader.start();
+        writer.join();
+        reader.join();
+
+        assertTrue(failures.isEmpty(), failures.toString());
+        assertEquals(baseCount, shared.size());
+        assertEquals(0, shared.countDone());
+    }
 }
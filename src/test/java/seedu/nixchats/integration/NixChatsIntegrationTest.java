@@ -127,6 +127,55 @@ public class NixChatsIntegrationTest {
         assertEquals("find", nixchats.getCommandType());
     }
 
+    @Test
+    @DisplayName("List pending and list done should show counts and task numbers")
+    void listCommand_statusFilter_showsMatchingTasks() {
+        nixchats.getResponse("todo read book");
+        nixchats.getResponse("todo buy milk");
+        nixchats.getResponse("todo write report");
+        nixchats.getResponse("mark 2");
+
+        String response = nixchats.getResponse("list pending");
+        assertTrue(response.contains("You have 2 pending task(s):"));
+        assertTrue(response.contains("1.[T][ ] read book"));
+        assertTrue(response.contains("3.[T][ ] write report"));
+        assertTrue(!response.contains("buy milk"));
+
+        response = nixchats.getResponse("list done");
+        assertTrue(response.contains("You have 1 done task(s):"));
+        assertTrue(response.contains("2.[T][X] buy milk"));
+        assertEquals("list", nixchats.getCommandType());
+
+        nixchats.getResponse("list everything");
+        assertEquals("error", nixchats.getCommandType());
+    }
+
+    @Test
+    @DisplayName("Date commands should list dated tasks in date order")
+    void dateCommands_datedTasks_returnsTasksInDateOrder() {
+        nixchats.getResponse("deadline submit report /by 2025-01-31");
+        nixchats.getResponse("todo read book");
+        nixchats.getResponse("event team meeting /from 2025-01-14 /to 2025-01-15");
+        nixchats.getResponse("deadline pay rent /by 2999-01-01");
+
+        String response = nixchats.getResponse("between 2025-01-01 2025-01-31");
+        assertTrue(response.contains("1.[E][ ] team meeting"));
+        assertTrue(response.contains("2.[D][ ] submit report"));
+        assertTrue(!response.contains("pay rent"));
+        assertEquals("find", nixchats.getCommandType());
+
+        nixchats.getResponse("mark 1");
+        response = nixchats.getResponse("overdue");
+        assertTrue(response.contains("team meeting"));
+        assertTrue(!response.contains("submit report"));
+        assertTrue(!response.contains("pay rent"));
+
+        assertTrue(nixchats.getResponse("due 2999-01-01").contains("pay rent"));
+        assertTrue(nixchats.getResponse("due 2025-01-01").contains("No matching tasks found."));
+        nixchats.getResponse("between 2025-01-31 2025-01-01");
+        assertEquals("error", nixchats.getCommandType());
+    }
+
     @Test
     @DisplayName("Undo command should reverse operations")
     void undoCommand_afterOperations_reversesChanges() {
@@ -147,6 +196,31 @@ public class NixChatsIntegrationTest {
         assertTrue(listResponse2.contains("No tasks found."));
     }
 
+    @Test
+    @DisplayName("Bulk commands should change every selected task and undo as one")
+    void bulkCommands_rangesAndKeyword_undoneAsOne() {
+        for (int i = 1; i <= 6; i++) {
+            nixchats.getResponse("todo " + (i % 2 == 0 ? "weekly report " : "chore ") + i);
+        }
+
+        String markResponse = nixchats.getResponse("mark 1,3-4");
+        assertTrue(markResponse.contains("marked these 3 task(s) as done"));
+        assertEquals("mark", nixchats.getCommandType());
+        assertTrue(nixchats.getResponse("list done").contains("You have 3 done task(s)"));
+
+        String deleteResponse = nixchats.getResponse("delete where \"report\"");
+        assertTrue(deleteResponse.contains("deleted 3 task(s)"));
+        assertEquals("[T][X] chore 1\n[T][X] chore 3\n[T][ ] chore 5",
+                nixchats.getResponse("list").replace("Here are the tasks in your list:\n", "").trim());
+
+        assertTrue(nixchats.getResponse("undo").contains("Undone: delete 3 task(s)"));
+        String restored = nixchats.getResponse("list");
+        assertTrue(restored.contains("[T][X] weekly report 4\n[T][ ] chore 5\n[T][ ] weekly report 6"));
+        assertTrue(nixchats.getResponse("undo").contains("Undone: mark 3 task(s)"));
+        assertTrue(nixchats.getResponse("list done").contains("You have 0 done task(s)"));
+        assertTrue(nixchats.getResponse("mark where \"missing\"").contains("No tasks match \"missing\"."));
+    }
+
     @Test
     @DisplayName("Undo command should handle empty history")
     void undoCommand_emptyHistory_returnsNothingToUndo() {
@@ -1,12 +1,19 @@
 package seedu.nixchats.parser;
 
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
@@ -16,6 +23,7 @@ import nixchats.Task;
 import nixchats.ToDoTask;
 import nixchats.exception.InputException;
 import nixchats.parser.Parser;
+import nixchats.parser.Query;
 
 /**
  * Contains unit tests for {@code Parser}.
@@ -85,6 +93,93 @@ public class ParserTest {
         assertEquals("Task number must be greater than zero.", ex3.getMessage());
     }
 
+    @Test
+    @DisplayName("parseTaskSelection should accept lists and inclusive ranges of task numbers")
+    void parseTaskSelection_listsAndRanges_returnsIndexes() {
+        BitSet expected = new BitSet();
+        expected.set(0);
+        expected.set(3);
+        expected.set(6, 10);
+        assertEquals(expected, Parser.parseTaskSelection("mark 1,4,7-10", 10));
+        assertEquals(expected, Parser.parseTaskSelection("delete 7 - 10, 4 ,1,9", 10));
+
+        assertTrue(Parser.isBulkSelection("mark 1,4"));
+        assertTrue(Parser.isBulkSelection("delete 5-9"));
+        assertTrue(Parser.isBulkSelection("unmark where \"report\""));
+        assertFalse(Parser.isBulkSelection("mark 2"));
+        assertFalse(Parser.isBulkSelection("mark -1"));
+        assertFalse(Parser.isBulkSelection("mark whereabouts"));
+    }
+
+    @Test
+    @DisplayName("parseTaskSelection should reject reversed ranges and out of range numbers")
+    void parseTaskSelection_invalidParts_throwsException() {
+        IllegalArgumentException ex1 = assertThrows(IllegalArgumentException.class, (
+        ) -> Parser.parseTaskSelection("delete 9-5", 10));
+        assertEquals("A range must not end before it starts, e.g., \"delete 5-9\".", ex1.getMessage());
+
+        IllegalArgumentException ex2 = assertThrows(IllegalArgumentException.class, (
+        ) -> Parser.parseTaskSelection("mark 1,4-11", 10));
+        assertEquals("Task number out of range. You have 10 task(s).", ex2.getMessage());
+
+        IllegalArgumentException ex3 = assertThrows(IllegalArgumentException.class, (
+        ) -> Parser.parseTaskSelection("mark 1,,2", 10));
+        assertEquals("Task number must be a positive integer.", ex3.getMessage());
+    }
+
+    @Test
+    @DisplayName("parseWhereKeyword should return the keyword with or without quotes")
+    void parseWhereKeyword_whereClause_returnsKeyword() {
+        assertEquals(Optional.of("weekly report"), Parser.parseWhereKeyword("mark where \"weekly report\""));
+        assertEquals(Optional.of("report"), Parser.parseWhereKeyword("delete WHERE report"));
+        assertEquals(Optional.empty(), Parser.parseWhereKeyword("mark 1,2"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseWhereKeyword("mark where \"\""));
+    }
+
+    @Test
+    @DisplayName("Query.parse should combine type, status, date and word terms")
+    void queryParse_allTerms_matchesTasksSatisfyingAll() {
+        Query query = Query.parse("type:D,E done:false due<2025-02-01 \"weekly report\" sort:due limit:20");
+        assertEquals(Query.Sort.DUE, query.getSort());
+        assertEquals(20, query.getLimit());
+        assertEquals(LocalDate.of(2025, 1, 31).toEpochDay(), query.getLastDay());
+
+        assertTrue(query.matches(new DeadlineTask("Weekly report draft", false, "Jan 31 2025")));
+        assertFalse(query.matches(new DeadlineTask("weekly report draft", false, "Feb 1 2025")));
+        assertFalse(query.matches(new DeadlineTask("weekly report draft", true, "Jan 30 2025")));
+        assertFalse(query.matches(new ToDoTask("weekly report draft", false)));
+        assertFalse(query.matches(new EventTask("weekly sync report", false, "Jan 1 2025", "Jan 2 2025")));
+        assertTrue(Query.parse("").matches(new ToDoTask("anything", true)));
+    }
+
+    @Test
+    @DisplayName("Query.parse should take everything after the first colon as the value")
+    void queryParse_valueWithColons_keepsWholeValue() {
+        assertEquals(List.of("10:30"), Query.parse("desc:10:30").getKeywords());
+        assertEquals(List.of("stand-up at 10:30"), Query.parse("DESC:\"Stand-up at 10:30\" done:false").getKeywords());
+        assertEquals(List.of("10:30"), Query.parse("10:30").getKeywords());
+        assertTrue(Query.parse("desc:10:30").matches(new ToDoTask("call Bob at 10:30", false)));
+        assertFalse(Query.parse("desc:10:30").matches(new ToDoTask("call Bob at 10:45", false)));
+        assertEquals(LocalDate.of(2025, 1, 31).toEpochDay(), Query.parse("due:\"2025-01-31\"").getFirstDay());
+        assertThrows(IllegalArgumentException.class, () -> Query.parse("desc:"));
+        assertThrows(IllegalArgumentException.class, () -> Query.parse("note:10:30"));
+    }
+
+    @Test
+    @DisplayName("Query.parse should reject unknown terms and invalid values")
+    void queryParse_invalidTerms_throwsException() {
+        IllegalArgumentException ex1 = assertThrows(IllegalArgumentException.class, (
+        ) -> Query.parse("type:X"));
+        assertEquals("Task type must be T, D or E, e.g., \"type:D\".", ex1.getMessage());
+
+        IllegalArgumentException ex2 = assertThrows(IllegalArgumentException.class, (
+        ) -> Query.parse("limit:0"));
+        assertEquals("Limit must be a positive integer, e.g., \"limit:20\".", ex2.getMessage());
+
+        assertThrows(IllegalArgumentException.class, () -> Query.parse("due<tomorrow"));
+        assertThrows(IllegalArgumentException.class, () -> Query.parse("tpye:D"));
+    }
+
     @Test
     @DisplayName("parseTaskIndex should throw exception for out of range task numbers")
     void parseTaskIndex_outOfRange_throwsException() {
@@ -213,4 +308,52 @@ public class ParserTest {
         ) -> Parser.parseTask("   "));
         assertEquals("Please enter a command.", ex3.getMessage());
     }
+
+    @Test
+    @DisplayName("parseArchiveAge should accept an optional non-negative number of days")
+    void parseArchiveAge_variousInputs_parsesOrThrows() {
+        assertEquals(OptionalInt.empty(), Parser.parseArchiveAge("archive"));
+        assertEquals(OptionalInt.of(30), Parser.parseArchiveAge("archive 30"));
+        assertEquals(OptionalInt.of(0), Parser.parseArchiveAge("archive   0"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseArchiveAge("archive -1"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseArchiveAge("archive soon"));
+    }
+
+    @Test
+    @DisplayName("parseDueDay and parseDayRange should convert yyyy-MM-dd dates to epoch days")
+    void parseDueDayAndDayRange_variousInputs_parsesOrThrows() {
+        long day = LocalDate.of(2025, 1, 31).toEpochDay();
+        assertEquals(day, Parser.parseDueDay("due 2025-01-31"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseDueDay("due"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseDueDay("due Jan 31 2025"));
+
+        assertArrayEquals(new long[] {day - 30, day}, Parser.parseDayRange("between 2025-01-01   2025-01-31"));
+        assertArrayEquals(new long[] {day, day}, Parser.parseDayRange("between 2025-01-31 2025-01-31"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseDayRange("between 2025-01-31"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseDayRange("between 2025-01-31 2025-01-01"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseDayRange("between 2025-01-01 soon"));
+    }
+
+    @Test
+    @DisplayName("parseFuzzyTerm and parseMaxEdits should take one word and an optional edit count")
+    void parseFuzzyTermAndMaxEdits_variousInputs_parsesOrThrows() {
+        assertEquals("metting", Parser.parseFuzzyTerm("find~ metting"));
+        assertEquals(2, Parser.parseMaxEdits("find~ metting"));
+        assertEquals(1, Parser.parseMaxEdits("find~ bok"));
+        assertEquals("bok", Parser.parseFuzzyTerm("find~ bok  3"));
+        assertEquals(3, Parser.parseMaxEdits("find~ bok  3"));
+        assertEquals(0, Parser.parseMaxEdits("find~ metting 0"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseFuzzyTerm("find~"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseFuzzyTerm("find~ team metting"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseMaxEdits("find~ metting 4"));
+    }
+
+    @Test
+    @DisplayName("parseNextCount should accept an optional positive count")
+    void parseNextCount_variousInputs_parsesOrThrows() {
+        assertEquals(Parser.DEFAULT_NEXT_COUNT, Parser.parseNextCount("next"));
+        assertEquals(12, Parser.parseNextCount("next  12"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseNextCount("next 0"));
+        assertThrows(IllegalArgumentException.class, () -> Parser.parseNextCount("next few"));
+    }
 }
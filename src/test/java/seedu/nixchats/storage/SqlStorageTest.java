@@ -0,0 +1,237 @@
+package seedu.nixchats.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.ToDoTask;
+import nixchats.data.TaskList;
+import nixchats.exception.NixChatsException;
+import nixchats.storage.SqlStorage;
+import nixchats.storage.Storage;
+import nixchats.storage.StorageSettings;
+import nixchats.storage.TaskStorage;
+
+/**
+ * Contains unit tests for {@code SqlStorage}.
+ */
+public class SqlStorageTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path dbFile;
+    private SqlStorage storage;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        dbFile = tempDir.resolve("tasks.db");
+        storage = new SqlStorage(dbFile);
+    }
+
+    @AfterEach
+    void tearDown() throws NixChatsException {
+        storage.close();
+    }
+
+    private TaskList sampleList() {
+        TaskList list = new TaskList();
+        list.addTask(new ToDoTask("Read book", false));
+        list.addTask(new DeadlineTask("Return book", true, "Jan 31 2025"));
+        list.addTask(new EventTask("Book club", false, "Feb 1 2025", "Feb 2 2025"));
+        return list;
+    }
+
+    @Test
+    @DisplayName("Saving a new list should store all tasks in order")
+    void saveLoad_newList_roundTrips() throws IOException, NixChatsException {
+        TaskList list = sampleList();
+        storage.save(list);
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        TaskList loaded = storage.load();
+        assertEquals(3, loaded.size());
+        for (int i = 0; i < list.size(); i++) {
+            assertEquals(list.getTask(i).toString(), loaded.getTask(i).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Mutations of the loaded list should be committed row by row on save")
+    void save_mutationsOfLoadedList_persisted() throws IOException, NixChatsException {
+        storage.save(sampleList());
+        TaskList loaded = storage.load();
+
+        loaded.setTaskDone(0, true);
+        loaded.deleteTask(1, false);
+        loaded.insertTask(1, new ToDoTask("Inserted", false));
+        loaded.addTask(new ToDoTask("Appended", false));
+        storage.save(loaded);
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        TaskList reloaded = storage.load();
+        assertEquals(4, reloaded.size());
+        assertTrue(reloaded.getTask(0).isDone());
+        assertEquals("Inserted", reloaded.getTask(1).getDescription());
+        assertEquals("Book club", reloaded.getTask(2).getDescription());
+        assertEquals("Appended", reloaded.getTask(3).getDescription());
+    }
+
+    @Test
+    @DisplayName("Changes that were never saved should be discarded on close")
+    void close_unsavedChanges_rolledBack() throws IOException, NixChatsException {
+        storage.save(sampleList());
+        TaskList loaded = storage.load();
+        loaded.deleteTask(0, false);
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        assertEquals(3, storage.countTasks());
+    }
+
+    @Test
+    @DisplayName("find and list should page through matching tasks in list order")
+    void findAndList_paging_returnsRequestedPage() throws NixChatsException {
+        TaskList list = new TaskList();
+        for (int i = 0; i < 50; i++) {
+            list.addTask(new ToDoTask((i % 2 == 0 ? "Report " : "chore ") + i, i % 5 == 0));
+        }
+        storage.save(list);
+
+        List<Task> page = storage.findTasks("REPORT", 5, 3);
+        assertEquals(3, page.size());
+        assertEquals("Report 10", page.get(0).getDescription());
+        assertEquals("Report 14", page.get(2).getDescription());
+
+        assertEquals(25, storage.findTasks("report", 0, 100).size());
+        assertEquals("chore 1", storage.listTasks(1, 1).get(0).getDescription());
+        assertEquals(10, storage.listTasks(true, 0, 100).size());
+        assertEquals(50, storage.countTasks());
+    }
+
+    @Test
+    @DisplayName("Archived tasks should move to the archive table once the list is saved")
+    void archive_doneTasks_movedOnSave() throws IOException, NixChatsException {
+        storage.save(sampleList());
+        TaskList loaded = storage.load();
+
+        assertEquals(1, storage.archive(loaded));
+        assertEquals(2, loaded.size());
+        storage.save(loaded);
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        assertEquals(2, storage.countTasks());
+        try (Stream<Task> archived = storage.findArchived("RETURN")) {
+            List<Task> tasks = archived.collect(Collectors.toList());
+            assertEquals(1, tasks.size());
+            assertEquals("Return book", tasks.get(0).getDescription());
+            assertTrue(tasks.get(0).isDone());
+        }
+    }
+
+    @Test
+    @DisplayName("Archived tasks should survive the rollback that follows a failed single-row update")
+    void archive_afterFailedRowUpdate_keptOnSave() throws IOException, NixChatsException, SQLException {
+        storage.save(sampleList());
+        TaskList loaded = storage.load();
+        // Another connection makes status updates fail from now on
+        try (Connection other = DriverManager.getConnection("jdbc:sqlite:" + dbFile.toAbsolutePath());
+                Statement st = other.createStatement()) {
+            st.executeUpdate("CREATE TRIGGER fail_status BEFORE UPDATE OF done ON tasks "
+                    + "BEGIN SELECT RAISE(ABORT, 'injected'); END");
+        }
+        loaded.setTaskDone(0, true);
+        assertFalse(storage.isTracking(loaded));
+
+        assertEquals(2, storage.archive(loaded));
+        storage.save(loaded);
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        assertEquals(1, storage.countTasks());
+        try (Stream<Task> archived = storage.findArchived("book")) {
+            assertEquals(2, archived.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Archiving without saving should leave both tables unchanged")
+    void archive_notSaved_rolledBackOnClose() throws IOException, NixChatsException {
+        storage.save(sampleList());
+        storage.archive(storage.load());
+        storage.close();
+
+        storage = new SqlStorage(dbFile);
+        assertEquals(3, storage.countTasks());
+        try (Stream<Task> archived = storage.findArchived("book")) {
+            assertEquals(0, archived.count());
+        }
+    }
+
+    @Test
+    @DisplayName("find should match substrings of any length, including unsaved changes of the tracked list")
+    void findTasks_indexedAndShortKeywords_matchLikeTaskList() throws NixChatsException {
+        storage.save(sampleList());
+        TaskList loaded = storage.load();
+        loaded.addTask(new ToDoTask("Call \"Bob\" at 10:30", false));
+        loaded.deleteTask(0, false);
+
+        assertTrue(storage.isTracking(loaded));
+        assertEquals(List.of("Return book", "Book club"), descriptions(storage.findTasks("BOOK", 0, 10)));
+        assertEquals(List.of("Return book", "Book club"), descriptions(storage.findTasks("bo", 0, 10)));
+        assertEquals(List.of("Call \"Bob\" at 10:30"), descriptions(storage.findTasks("\"bob\"", 0, 10)));
+        assertEquals(List.of("Call \"Bob\" at 10:30"), descriptions(storage.findTasks("10:30", 0, 10)));
+        assertTrue(storage.findTasks("read", 0, 10).isEmpty());
+        assertFalse(storage.isTracking(sampleList()));
+    }
+
+    private static List<String> descriptions(List<Task> tasks) {
+        return tasks.stream().map(Task::getDescription).collect(Collectors.toList());
+    }
+
+    @Test
+    @DisplayName("A new database chosen in the settings should start with the tasks of the history file")
+    void open_sqliteSetting_copiesHistoryIntoNewDatabaseOnce() throws IOException, NixChatsException {
+        Path historyFile = tempDir.resolve("history.txt");
+        Path settingsFile = tempDir.resolve("settings.properties");
+        new Storage(historyFile).save(sampleList());
+        Files.writeString(settingsFile, "storage = sqlite\narchive.days = off\n");
+
+        TaskStorage opened = StorageSettings.load(settingsFile).open(historyFile);
+        assertTrue(opened instanceof SqlStorage);
+        TaskList loaded = opened.load();
+        assertEquals(3, loaded.size());
+        loaded.deleteTask(0, false);
+        opened.save(loaded);
+        opened.close();
+
+        // Only a new database is filled, so deleted tasks do not come back
+        TaskStorage reopened = StorageSettings.load(settingsFile).open(historyFile);
+        assertEquals(2, reopened.load().size());
+        reopened.close();
+        assertTrue(Files.exists(tempDir.resolve("history.db")));
+    }
+}
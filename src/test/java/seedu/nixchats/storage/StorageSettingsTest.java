@@ -0,0 +1,195 @@
+package seedu.nixchats.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import nixchats.EventTask;
+import nixchats.ToDoTask;
+import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
+import nixchats.exception.NixChatsException;
+import nixchats.storage.DurabilityMode;
+import nixchats.storage.Storage;
+import nixchats.storage.StorageFormat;
+import nixchats.storage.StorageSettings;
+
+/**
+ * Contains unit tests for {@code StorageSettings}.
+ */
+public class StorageSettingsTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path settingsFile;
+    private Path historyFile;
+
+    @BeforeEach
+    void setUp() {
+        settingsFile = tempDir.resolve("settings.properties");
+        historyFile = tempDir.resolve("history.txt");
+    }
+
+    @AfterEach
+    void tearDown() {
+        System.clearProperty("nixchats.archive.days");
+    }
+
+    @Test
+    @DisplayName("Settings should fall back to the defaults without a settings file")
+    void load_missingFile_usesDefaults() {
+        StorageSettings settings = StorageSettings.load(settingsFile);
+        assertEquals(StorageSettings.DEFAULT_ARCHIVE_DAYS, settings.getArchiveDays());
+    }
+
+    @Test
+    @DisplayName("Archive age should be read from the file, turned off by \"off\" and ignored if invalid")
+    void getArchiveDays_fileValues_parsedOrIgnored() throws IOException {
+        Files.writeString(settingsFile, "archive.days = 7\n");
+        assertEquals(7, StorageSettings.load(settingsFile).getArchiveDays());
+
+        Files.writeString(settingsFile, "archive.days = OFF\n");
+        assertEquals(-1, StorageSettings.load(settingsFile).getArchiveDays());
+
+        Files.writeString(settingsFile, "archive.days = -3\n");
+        assertEquals(StorageSettings.DEFAULT_ARCHIVE_DAYS, StorageSettings.load(settingsFile).getArchiveDays());
+    }
+
+    @Test
+    @DisplayName("System properties should override the settings file")
+    void getArchiveDays_systemProperty_overridesFile() throws IOException {
+        Files.writeString(settingsFile, "archive.days = 7\n");
+        System.setProperty("nixchats.archive.days", "3");
+        assertEquals(3, StorageSettings.load(settingsFile).getArchiveDays());
+    }
+
+    @Test
+    @DisplayName("Opened storage should archive old done tasks on load by default")
+    void open_defaultSettings_autoArchivesOldDoneTasks() throws IOException, NixChatsException {
+        TaskList list = new TaskList();
+        list.addTask(new EventTask("old event", true, "Jan 1 2020", "Jan 2 2020"));
+        list.addTask(new EventTask("old pending event", false, "Jan 1 2020", "Jan 2 2020"));
+        new Storage(historyFile).save(list);
+
+        Storage storage = StorageSettings.load(settingsFile).openFile(historyFile);
+        assertEquals(1, storage.load().size());
+        storage.close();
+    }
+
+    @Test
+    @DisplayName("Journal setting should open a journaled storage that cannot be watched")
+    void open_journalOn_enablesJournal() throws IOException, NixChatsException {
+        Files.writeString(settingsFile, "journal = on\njournal.compaction.bytes = 4096\n");
+        StorageSettings settings = StorageSettings.load(settingsFile);
+        assertTrue(settings.isJournalEnabled());
+        assertEquals(4096, settings.getCompactionThreshold());
+
+        Storage storage = settings.openFile(historyFile);
+        assertTrue(storage.isJournaled());
+        TaskList list = storage.load();
+        list.addTask(new ToDoTask("journaled", false));
+        storage.save(list);
+        assertFalse(storage.isWatchable());
+        storage.close();
+
+        // The change is in the journal until it is compacted, so it is replayed on the next load
+        Storage reopened = settings.openFile(historyFile);
+        assertEquals(1, reopened.load().size());
+        reopened.close();
+    }
+
+    @Test
+    @DisplayName("Journal should stay off by default and for values that are not a switch")
+    void isJournalEnabled_missingOrInvalid_off() throws IOException {
+        assertFalse(StorageSettings.load(settingsFile).isJournalEnabled());
+        Files.writeString(settingsFile, "journal = maybe\njournal.compaction.bytes = 0\n");
+        StorageSettings settings = StorageSettings.load(settingsFile);
+        assertFalse(settings.isJournalEnabled());
+        assertEquals(Storage.DEFAULT_COMPACTION_THRESHOLD, settings.getCompactionThreshold());
+    }
+
+    @Test
+    @DisplayName("Format setting should convert a file in another format once, when it is opened")
+    void open_otherFormat_migratesFile() throws IOException, NixChatsException {
+        TaskList list = new TaskList();
+        list.addTask(new ToDoTask("convert me", false));
+        new Storage(historyFile).save(list);
+        Files.writeString(settingsFile, "format = Compressed\narchive.days = off\n");
+
+        Storage storage = StorageSettings.load(settingsFile).openFile(historyFile);
+        assertEquals(StorageFormat.COMPRESSED, storage.detectFormat());
+        assertEquals(StorageFormat.COMPRESSED, storage.getFormat());
+        assertEquals("convert me", storage.load().getTask(0).getDescription());
+        assertEquals(StorageFormat.COMPRESSED, storage.getFormat());
+        storage.close();
+    }
+
+    @Test
+    @DisplayName("Unknown formats should be ignored, keeping the format of the file")
+    void getFormat_unknownOrMissing_empty() throws IOException {
+        assertEquals(Optional.empty(), StorageSettings.load(settingsFile).getFormat());
+        Files.writeString(settingsFile, "format = xml\n");
+        assertEquals(Optional.empty(), StorageSettings.load(settingsFile).getFormat());
+        Files.writeString(settingsFile, "format = binary\n");
+        assertEquals(Optional.of(StorageFormat.BINARY), StorageSettings.load(settingsFile).getFormat());
+    }
+
+    @Test
+    @DisplayName("Compression level should be applied to the storage and kept between 0 and 9")
+    void open_compressionLevel_setOnStorage() throws IOException {
+        Files.writeString(settingsFile, "compression.level = 9\n");
+        Storage storage = StorageSettings.load(settingsFile).openFile(historyFile);
+        assertEquals(9, storage.getCompressionLevel());
+
+        Files.writeString(settingsFile, "compression.level = 10\n");
+        assertEquals(Storage.DEFAULT_COMPRESSION_LEVEL, StorageSettings.load(settingsFile).getCompressionLevel());
+        Files.writeString(settingsFile, "compression.level = fast\n");
+        assertEquals(Storage.DEFAULT_COMPRESSION_LEVEL, StorageSettings.load(settingsFile).getCompressionLevel());
+    }
+
+    @Test
+    @DisplayName("List backing should be used for loaded lists, also when saves are asynchronous")
+    void open_listBacking_usedForLoadedLists() throws IOException, NixChatsException {
+        Files.writeString(settingsFile, "list.backing = off-heap\n");
+        Storage storage = StorageSettings.load(settingsFile).openFile(historyFile);
+        storage.enableAsyncSave(DurabilityMode.FSYNC_ALWAYS);
+        assertEquals(TaskListBacking.OFF_HEAP, storage.load().getBacking());
+        storage.close();
+
+        Files.writeString(settingsFile, "list.backing = linked\n");
+        assertEquals(Optional.empty(), StorageSettings.load(settingsFile).getListBacking());
+    }
+
+    @Test
+    @DisplayName("Concurrent list setting should be passed on to the storage")
+    void open_concurrentList_setOnStorage() throws IOException {
+        assertFalse(StorageSettings.load(settingsFile).openFile(historyFile).isConcurrentList());
+        Files.writeString(settingsFile, "list.concurrent = true\n");
+        assertTrue(StorageSettings.load(settingsFile).openFile(historyFile).isConcurrentList());
+    }
+
+    @Test
+    @DisplayName("Storage setting should keep tasks in the history file unless it asks for a database")
+    void open_fileOrInvalidStorage_opensHistoryFile() throws IOException {
+        assertFalse(StorageSettings.load(settingsFile).isDatabase());
+        assertInstanceOf(Storage.class, StorageSettings.load(settingsFile).open(historyFile));
+
+        Files.writeString(settingsFile, "storage = postgres\n");
+        assertFalse(StorageSettings.load(settingsFile).isDatabase());
+        Files.writeString(settingsFile, "storage = SQLite\n");
+        assertTrue(StorageSettings.load(settingsFile).isDatabase());
+    }
+}
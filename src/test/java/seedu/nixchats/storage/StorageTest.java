@@ -1,13 +1,24 @@
 package seedu.nixchats.storage;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,10 +28,17 @@ import org.junit.jupiter.api.io.TempDir;
 
 import nixchats.DeadlineTask;
 import nixchats.EventTask;
+import nixchats.Task;
 import nixchats.ToDoTask;
 import nixchats.data.TaskList;
+import nixchats.data.TaskListBacking;
 import nixchats.exception.NixChatsException;
+import nixchats.storage.DurabilityMode;
+import nixchats.storage.LoadMode;
 import nixchats.storage.Storage;
+import nixchats.storage.StorageFormat;
+import nixchats.storage.TaskCodec;
+import nixchats.storage.TextTaskCodec;
 
 /**
  * AI-Enhanced Test Suite for Storage class.
@@ -220,4 +238,469 @@ public class StorageTest {
         assertEquals("deadline with bad date", result.getTask(0).getDescription());
         assertEquals("valid todo task", result.getTask(1).getDescription());
     }
+
+    @Test
+    @DisplayName("Journal mode should replay mutations on top of the snapshot")
+    void journal_mutationsAfterLoad_replayedOnNextLoad() throws IOException, NixChatsException {
+        Files.writeString(testFile, "T | 0 | first\nT | 0 | second\n");
+        storage.enableJournal();
+        TaskList loadedList = storage.load();
+
+        loadedList.addTask(new DeadlineTask("third", false, "Jan 31 2025"));
+        loadedList.setTaskDone(0, true);
+        loadedList.deleteTask(1, false);
+        storage.save(loadedList);
+        storage.close();
+
+        // Snapshot is untouched; the mutations only live in the journal
+        assertEquals("T | 0 | first\nT | 0 | second\n", Files.readString(testFile));
+
+        Storage reopened = new Storage(testFile);
+        reopened.enableJournal();
+        TaskList replayed = reopened.load();
+        reopened.close();
+
+        assertEquals(2, replayed.size());
+        assertEquals("[T][X] first", replayed.getTask(0).toString());
+        assertEquals("third", replayed.getTask(1).getDescription());
+    }
+
+    @Test
+    @DisplayName("Invalid journal records should be skipped and reported in one warning")
+    void journal_invalidRecords_reportedOnce() throws IOException, NixChatsException {
+        Files.writeString(testFile, "T | 0 | first\n");
+        Files.writeString(testFile.resolveSibling(testFile.getFileName() + ".journal"), "M 0\nD 7\nX 0\nI 1 T |");
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            storage.enableJournal();
+            TaskList replayed = storage.load();
+            storage.close();
+            assertEquals(1, replayed.size());
+            assertTrue(replayed.getTask(0).isDone());
+        } finally {
+            System.setErr(originalErr);
+        }
+        assertEquals("Warning: Skipping 3 invalid journal record(s):\n  D 7\n  X 0\n  I 1 T |",
+                err.toString(StandardCharsets.UTF_8).strip().replace("\r\n", "\n"));
+    }
+
+    @Test
+    @DisplayName("Journal mode should compact into the snapshot once over the threshold")
+    void journal_overThreshold_compactsIntoSnapshot() throws IOException, NixChatsException {
+        storage.enableJournal(64);
+        TaskList loadedList = storage.load();
+        for (int i = 0; i < 20; i++) {
+            loadedList.addTask(new ToDoTask("task " + i, false));
+            storage.save(loadedList);
+        }
+        storage.close();
+
+        TaskList plain = new Storage(testFile).load();
+        assertTrue(plain.size() > 0);
+
+        Storage reopened = new Storage(testFile);
+        reopened.enableJournal(64);
+        TaskList replayed = reopened.load();
+        reopened.close();
+        assertEquals(20, replayed.size());
+        assertEquals("task 19", replayed.getTask(19).getDescription());
+    }
+
+    @Test
+    @DisplayName("Journal mode should keep saving a concurrent list while another thread changes it")
+    void journal_concurrentMutationsAndSaves_noDeadlockOrLoss() throws Exception {
+        storage.setConcurrentList(true);
+        storage.enableJournal(256);
+        TaskList loadedList = storage.load();
+        AtomicReference<Exception> saveFailure = new AtomicReference<>();
+        Thread mutator = new Thread(() -> {
+            for (int i = 0; i < 2000; i++) {
+                loadedList.addTask(new ToDoTask("task " + i, false));
+            }
+        });
+        Thread saver = new Thread(() -> {
+            try {
+                while (mutator.isAlive()) {
+                    storage.save(loadedList);
+                }
+            } catch (NixChatsException e) {
+                saveFailure.set(e);
+            }
+        });
+        mutator.setDaemon(true);
+        saver.setDaemon(true);
+        mutator.start();
+        saver.start();
+        mutator.join(10_000);
+        saver.join(10_000);
+        assertFalse(mutator.isAlive() || saver.isAlive(), "Saving and changing the list deadlocked");
+        assertNull(saveFailure.get());
+        storage.save(loadedList);
+        storage.close();
+
+        Storage reopened = new Storage(testFile);
+        reopened.enableJournal(256);
+        TaskList replayed = reopened.load();
+        reopened.close();
+        assertEquals(2000, replayed.size());
+        assertEquals("task 1999", replayed.getTask(1999).getDescription());
+    }
+
+    @Test
+    @DisplayName("Binary format should round-trip tasks and be detected on load")
+    void saveLoad_binaryFormat_roundTripsAndIsDetected() throws IOException, NixChatsException {
+        taskList.addTask(new ToDoTask("standup", true));
+        taskList.addTask(new DeadlineTask("pay rent", false, "Oct 17 2026"));
+        taskList.addTask(new EventTask("conference", false, "Jan 1 2025", "next week"));
+        taskList.addTask(new DeadlineTask("pay rent", false, "Oct 17 2026"));
+
+        storage.setFormat(StorageFormat.BINARY);
+        storage.save(taskList);
+
+        Storage reopened = new Storage(testFile);
+        assertEquals(StorageFormat.BINARY, reopened.detectFormat());
+        TaskList loadedList = reopened.load();
+        assertEquals(StorageFormat.BINARY, reopened.getFormat());
+        assertEquals(taskList.size(), loadedList.size());
+        for (int i = 0; i < taskList.size(); i++) {
+            assertEquals(taskList.getTask(i).toString(), loadedList.getTask(i).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("migrate should convert between text and binary formats")
+    void migrate_textToBinaryAndBack_preservesTasks() throws IOException, NixChatsException {
+        String text = "T | 0 | todo | #1\nD | 1 | deadline | Jan 31 2025 | #2\n";
+        Files.writeString(testFile, text);
+
+        storage.migrate(StorageFormat.BINARY);
+        assertEquals(StorageFormat.BINARY, storage.detectFormat());
+
+        storage.migrate(StorageFormat.TEXT);
+        assertEquals(StorageFormat.TEXT, storage.detectFormat());
+        assertEquals(text, Files.readString(testFile));
+    }
+
+    @Test
+    @DisplayName("Mapped load should decode the same tasks as streaming load")
+    void load_mappedMode_matchesStreamingMode() throws IOException, NixChatsException {
+        String content = "T|0|test todo\n"
+                + "  D | 1 |  spaced  deadline  | Jan 31 2025  \r\n"
+                + "\n"
+                + "E|0|event 你好|Jan 15 2025|Jan 16 2025|extra\n"
+                + "INVALID|FORMAT|LINE\n"
+                + "T|invalid_status|task";
+        Files.writeString(testFile, content);
+
+        TaskList streamed = storage.load();
+        Storage mappedStorage = new Storage(testFile);
+        mappedStorage.setLoadMode(LoadMode.MAPPED);
+        TaskList mapped = mappedStorage.load();
+
+        assertEquals(4, streamed.size());
+        assertEquals(streamed.size(), mapped.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertEquals(streamed.getTask(i).toString(), mapped.getTask(i).toString());
+        }
+    }
+
+    @Test
+    @DisplayName("Parallel load should keep tasks in file order")
+    void load_parallelMode_preservesFileOrder() throws IOException, NixChatsException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            content.append(i % 1000 == 0 ? "X | broken\n" : "T | " + (i % 2) + " | task " + i + "\n");
+        }
+        Files.writeString(testFile, content.toString());
+
+        storage.setLoadMode(LoadMode.PARALLEL);
+        TaskList loadedList = storage.load();
+
+        assertEquals(19980, loadedList.size());
+        assertEquals("task 1", loadedList.getTask(0).getDescription());
+        assertEquals("task 19999", loadedList.getTask(19979).getDescription());
+        int previous = 0;
+        for (Task t : loadedList) {
+            int n = Integer.parseInt(t.getDescription().substring("task ".length()));
+            assertTrue(n > previous);
+            assertEquals(n % 2 == 1, t.isDone());
+            previous = n;
+        }
+    }
+
+    @Test
+    @DisplayName("Invalid lines should be reported in one warning whichever load mode is used")
+    void load_invalidLines_reportedOnceInEveryMode() throws IOException, NixChatsException {
+        Files.writeString(testFile, "X | broken\nT | 0 | valid todo task\nY | broken too\n");
+        PrintStream originalErr = System.err;
+        try {
+            for (LoadMode mode : List.of(LoadMode.STREAMING, LoadMode.MAPPED, LoadMode.PARALLEL)) {
+                ByteArrayOutputStream err = new ByteArrayOutputStream();
+                System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+                storage.setLoadMode(mode);
+
+                assertEquals(1, storage.load().size(), mode.name());
+                assertEquals("Warning: Skipping 2 invalid task line(s):\n  X | broken\n  Y | broken too",
+                        err.toString(StandardCharsets.UTF_8).strip().replace("\r\n", "\n"), mode.name());
+            }
+        } finally {
+            System.setErr(originalErr);
+        }
+    }
+
+    @Test
+    @DisplayName("Asynchronous saves should write the latest state once flushed")
+    void save_asyncMode_writesLatestStateOnFlush() throws IOException, NixChatsException {
+        storage.enableAsyncSave(DurabilityMode.FSYNC_ALWAYS);
+        for (int i = 0; i < 50; i++) {
+            taskList.addTask(new ToDoTask("task " + i, false));
+            storage.save(taskList);
+        }
+        taskList.setTaskDone(0, true);
+        storage.save(taskList);
+        storage.flush();
+
+        TaskList loadedList = new Storage(testFile).load();
+        assertEquals(50, loadedList.size());
+        assertTrue(loadedList.getTask(0).isDone());
+        assertEquals("task 49", loadedList.getTask(49).getDescription());
+        storage.close();
+    }
+
+    @Test
+    @DisplayName("Interval fsyncs should not hold up saves submitted while they run")
+    void save_fsyncIntervalMode_keepsSavingBetweenForcedWrites() throws Exception {
+        storage.enableAsyncSave(DurabilityMode.FSYNC_INTERVAL, 5);
+        for (int i = 0; i < 20; i++) {
+            taskList.addTask(new ToDoTask("task " + i, false));
+            storage.save(taskList);
+            Thread.sleep(2);
+        }
+        storage.flush();
+        // Leave time for the forced write of the last snapshot, then keep saving
+        Thread.sleep(20);
+        taskList.setTaskDone(19, true);
+        storage.save(taskList);
+        storage.close();
+
+        TaskList loadedList = new Storage(testFile).load();
+        assertEquals(20, loadedList.size());
+        assertTrue(loadedList.getTask(19).isDone());
+    }
+
+    @Test
+    @DisplayName("Asynchronous saves should load into a persistent list unless a backing was chosen")
+    void enableAsyncSave_noBackingChosen_loadsPersistentList() throws IOException, NixChatsException {
+        storage.save(taskList);
+        storage.enableAsyncSave(DurabilityMode.FSYNC_ALWAYS);
+        assertEquals(TaskListBacking.PERSISTENT, storage.load().getBacking());
+        storage.close();
+
+        Storage treeStorage = new Storage(testFile);
+        treeStorage.setListBacking(TaskListBacking.TREE);
+        treeStorage.enableAsyncSave(DurabilityMode.FSYNC_ALWAYS);
+        assertEquals(TaskListBacking.TREE, treeStorage.load().getBacking());
+        treeStorage.close();
+    }
+
+    @Test
+    @DisplayName("Descriptions containing the field delimiter should survive a round trip in every load mode")
+    void saveLoad_delimiterInDescription_roundTrips() throws NixChatsException {
+        taskList.addTask(new ToDoTask("pipes | and \\ backslashes", true));
+        taskList.addTask(new EventTask("a|b", false, "Jan 1 2025", "Jan 2 2025"));
+        storage.save(taskList);
+
+        for (LoadMode mode : LoadMode.values()) {
+            storage.setLoadMode(mode);
+            TaskList loadedList = storage.load();
+            assertEquals(2, loadedList.size());
+            assertEquals("pipes | and \\ backslashes", loadedList.getTask(0).getDescription());
+            assertEquals("a|b", loadedList.getTask(1).getDescription());
+        }
+    }
+
+    @Test
+    @DisplayName("Storage should load into the configured list backing")
+    void load_treeBacking_returnsTreeBackedList() throws NixChatsException {
+        taskList.addTask(new ToDoTask("first", false));
+        taskList.addTask(new ToDoTask("second", true));
+        storage.save(taskList);
+
+        storage.setListBacking(TaskListBacking.TREE);
+        TaskList loaded = storage.load();
+        assertEquals(TaskListBacking.TREE, loaded.getBacking());
+        assertEquals("second", loaded.getTask(1).getDescription());
+        assertEquals(1, loaded.countDone());
+    }
+
+    @Test
+    @DisplayName("Task IDs should survive a save and load in every format, and legacy records get new IDs")
+    void saveLoad_taskIds_preservedAcrossFormats() throws IOException, NixChatsException {
+        taskList.addTask(new ToDoTask("first", false));
+        taskList.addTask(new DeadlineTask("second", true, "Jan 31 2025"));
+        long firstId = taskList.getTask(0).getId();
+        long secondId = taskList.getTask(1).getId();
+
+        for (StorageFormat format : new StorageFormat[] {StorageFormat.TEXT, StorageFormat.BINARY}) {
+            storage.setFormat(format);
+            storage.save(taskList);
+            TaskList loaded = storage.load();
+            assertEquals(firstId, loaded.getTask(0).getId());
+            assertEquals("second", loaded.getTaskById(secondId).getDescription());
+            assertEquals(1, loaded.indexOf(secondId));
+        }
+
+        storage.setFormat(StorageFormat.TEXT);
+        Files.writeString(testFile, "T | 0 | old\nT | 1 | older\n");
+        TaskList legacy = storage.load();
+        assertTrue(legacy.getTask(0).getId() > 0);
+        assertTrue(legacy.getTask(0).getId() != legacy.getTask(1).getId());
+    }
+
+    @Test
+    @DisplayName("Storage should use a plugged-in codec for saving and loading")
+    void saveLoad_customCodec_usesCodec() throws IOException, NixChatsException {
+        TaskCodec upperCase = new TaskCodec() {
+            private final TaskCodec text = new TextTaskCodec();
+
+            @Override
+            public void encode(Task task, boolean isDone, StringBuilder out) {
+                out.append("#");
+                text.encode(task, isDone, out);
+            }
+
+            @Override
+            public Task decode(CharSequence record) {
+                return text.decode(record.toString().substring(1));
+            }
+        };
+        Storage custom = new Storage(testFile, upperCase);
+        taskList.addTask(new ToDoTask(5, "custom", false));
+        custom.save(taskList);
+
+        assertEquals("#T | 0 | custom | #5", Files.readString(testFile).trim());
+        assertEquals("custom", custom.load().getTask(0).getDescription());
+    }
+
+    @Test
+    @DisplayName("Compressed format should round-trip tasks across blocks in every load mode")
+    void saveLoad_compressedFormat_roundTripsAndIsDetected() throws IOException, NixChatsException {
+        for (int i = 0; i < 20000; i++) {
+            taskList.addTask(new DeadlineTask("compressed task " + i, i % 3 == 0, "Jan 31 2025"));
+        }
+        storage.setFormat(StorageFormat.COMPRESSED);
+        storage.setCompressionLevel(9);
+        storage.save(taskList);
+
+        Storage reader = new Storage(testFile);
+        assertEquals(StorageFormat.COMPRESSED, reader.detectFormat());
+        assertTrue(Files.size(testFile) < 20000 * 10);
+        for (LoadMode mode : LoadMode.values()) {
+            reader.setLoadMode(mode);
+            TaskList loadedList = reader.load();
+            assertEquals(20000, loadedList.size());
+            assertEquals("compressed task 12345", loadedList.getTask(12345).getDescription());
+            assertEquals(taskList.getTask(19999).toString(), loadedList.getTask(19999).toString());
+        }
+        assertEquals(StorageFormat.COMPRESSED, reader.getFormat());
+    }
+
+    @Test
+    @DisplayName("archive should move done tasks to the cold archive that find reads")
+    void archive_doneTasks_movedToColdArchive() throws NixChatsException {
+        taskList.addTask(new DeadlineTask("old report", true, "Jan 31 2020"));
+        taskList.addTask(new DeadlineTask("future report", true, "Jan 31 2999"));
+        taskList.addTask(new ToDoTask("done report", true));
+        taskList.addTask(new ToDoTask("pending report", false));
+
+        assertEquals(1, storage.archive(taskList, 30));
+        assertEquals(3, taskList.size());
+        assertEquals(2, storage.archive(taskList));
+        assertEquals(1, taskList.size());
+        assertEquals("pending report", taskList.getTask(0).getDescription());
+
+        try (Stream<Task> archived = storage.findArchived("REPORT")) {
+            assertEquals(List.of("old report", "future report", "done report"),
+                    archived.map(Task::getDescription).collect(Collectors.toList()));
+        }
+        try (Stream<Task> archived = storage.findArchived("future")) {
+            assertEquals(1, archived.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Auto-archiving should move old done tasks out of the file on load")
+    void load_autoArchive_movesOldDoneTasks() throws IOException, NixChatsException {
+        taskList.addTask(new EventTask("old event", true, "Jan 1 2020", "Jan 2 2020"));
+        taskList.addTask(new EventTask("old pending event", false, "Jan 1 2020", "Jan 2 2020"));
+        storage.save(taskList);
+
+        storage.enableAutoArchive(7);
+        TaskList loadedList = storage.load();
+        assertEquals(1, loadedList.size());
+        assertEquals(1, new Storage(testFile).load().size());
+        try (Stream<Task> archived = storage.findArchived("old")) {
+            assertEquals(1, archived.count());
+        }
+    }
+
+    @Test
+    @DisplayName("Watching should apply only the records changed outside the application")
+    void watch_externalEdit_appliesChangedRecords() throws Exception {
+        taskList.addTask(new ToDoTask("keep", false));
+        taskList.addTask(new ToDoTask("complete me", false));
+        taskList.addTask(new ToDoTask("remove me", false));
+        storage.save(taskList);
+        TaskList loadedList = storage.load();
+        Task kept = loadedList.getTask(0);
+        Task completed = loadedList.getTask(1);
+        AtomicInteger changes = new AtomicInteger();
+        storage.watch(loadedList, Runnable::run, changes::incrementAndGet);
+
+        // Own saves are not reported back
+        storage.save(loadedList);
+        Files.writeString(testFile, "T | 0 | keep\nT | 1 | complete me\nT | 0 | added\n");
+        for (int i = 0; i < 100 && changes.get() == 0; i++) {
+            Thread.sleep(50);
+        }
+        storage.close();
+
+        assertEquals(1, changes.get());
+        assertEquals(3, loadedList.size());
+        assertSame(kept, loadedList.getTask(0));
+        assertSame(completed, loadedList.getTask(1));
+        assertTrue(completed.isDone());
+        assertEquals("added", loadedList.getTask(2).getDescription());
+    }
+
+    @Test
+    @DisplayName("Watching should not undo changes to the list that are not saved yet")
+    void watch_unsavedChanges_externalEditIgnored() throws Exception {
+        taskList.addTask(new ToDoTask("keep", false));
+        storage.save(taskList);
+        TaskList loadedList = storage.load();
+        AtomicInteger changes = new AtomicInteger();
+        storage.watch(loadedList, Runnable::run, changes::incrementAndGet);
+        loadedList.addTask(new ToDoTask("not saved yet", false));
+
+        PrintStream originalErr = System.err;
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+        try {
+            Files.writeString(testFile, "T | 1 | keep\n");
+            for (int i = 0; i < 100 && err.size() == 0; i++) {
+                Thread.sleep(50);
+            }
+            storage.close();
+        } finally {
+            System.setErr(originalErr);
+        }
+
+        assertEquals(0, changes.get());
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Ignored changes"));
+        assertEquals(2, loadedList.size());
+        assertEquals("not saved yet", loadedList.getTask(1).getDescription());
+    }
 }
@@ -0,0 +1,80 @@
+package seedu.nixchats.storage;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.ToDoTask;
+import nixchats.storage.TaskCodec;
+import nixchats.storage.TextTaskCodec;
+
+/**
+ * Contains unit tests for {@code TextTaskCodec}.
+ */
+public class TextTaskCodecTest {
+
+    private final TaskCodec codec = new TextTaskCodec();
+
+    @Test
+    @DisplayName("encode should produce the pipe-separated text format")
+    void encode_allTaskTypes_producesTextFormat() {
+        assertEquals("T | 0 | read book | #7", codec.encode(new ToDoTask(7, "read book", false)));
+        assertEquals("D | 1 | submit | Jan 31 2025 | #8",
+                codec.encode(new DeadlineTask(8, "submit", true, "Jan 31 2025")));
+        assertEquals("E | 0 | meeting | Jan 15 2025 | Jan 16 2025 | #9",
+                codec.encode(new EventTask(9, "meeting", false, "Jan 15 2025", "Jan 16 2025")));
+    }
+
+    @Test
+    @DisplayName("encode should reuse the caller's builder and honour the given status")
+    void encode_givenBuilderAndStatus_appendsRecord() {
+        StringBuilder sb = new StringBuilder("prefix:");
+        codec.encodeContent(new ToDoTask("read book", false), true, sb);
+        assertEquals("prefix:T | 1 | read book", sb.toString());
+    }
+
+    @Test
+    @DisplayName("Delimiters, backslashes and line breaks should survive a round trip")
+    void encodeDecode_specialCharacters_roundTrips() {
+        Task task = new DeadlineTask("a | b \\\\ c\\nd\ne", true, "by | then");
+        String record = codec.encode(task);
+
+        assertFalse(record.contains("\n"));
+        Task decoded = codec.decode(record);
+        assertInstanceOf(DeadlineTask.class, decoded);
+        assertEquals(task.getDescription(), decoded.getDescription());
+        assertEquals("by | then", ((DeadlineTask) decoded).getBy());
+        assertTrue(decoded.isDone());
+    }
+
+    @Test
+    @DisplayName("decode should accept legacy records with loose spacing")
+    void decode_legacyRecords_decodesFields() {
+        Task todo = codec.decode("  T|1|   spaced out  ");
+        assertEquals("spaced out", todo.getDescription());
+        assertTrue(todo.isDone());
+
+        Task path = codec.decode("T | 0 | copy C:\\temp");
+        assertEquals("copy C:\\temp", path.getDescription());
+
+        Task event = codec.decode("E|0|event|Jan 1 2025|Jan 2 2025|ignored");
+        assertEquals("[E][ ] event (from: Jan 1 2025 to: Jan 2 2025)", event.toString());
+    }
+
+    @Test
+    @DisplayName("decode should reject malformed records")
+    void decode_malformedRecords_throwsException() {
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("INVALID|FORMAT|LINE"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("T | 0"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("D | 0 | no date |"));
+        assertThrows(IllegalArgumentException.class, () -> codec.decode("E | 0 | event | Jan 1 2025"));
+    }
+}
@@ -0,0 +1,54 @@
+package seedu.nixchats.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import nixchats.DeadlineTask;
+import nixchats.EventTask;
+import nixchats.Task;
+import nixchats.ToDoTask;
+import nixchats.util.StringPool;
+
+/**
+ * Contains unit tests for {@code StringPool}.
+ */
+public class StringPoolTest {
+
+    @Test
+    @DisplayName("intern should return one shared instance for equal strings")
+    void intern_equalStrings_returnsSameInstance() {
+        String first = StringPool.intern(new String("buy groceries"));
+        String second = StringPool.intern(new String("buy groceries"));
+        assertEquals("buy groceries", second);
+        assertSame(first, second);
+        assertNull(StringPool.intern(null));
+    }
+
+    @Test
+    @DisplayName("tasks should share their description and date strings")
+    void constructors_repeatedFields_shareInstances() {
+        Task todo = new ToDoTask(new String("weekly report"), false);
+        Task deadline = new DeadlineTask(new String("weekly report"), false, new String("Jan 31 2025"));
+        EventTask event = new EventTask("meeting", false, new String("Jan 31 2025"), new String("Jan 31 2025"));
+        assertSame(todo.getDescription(), deadline.getDescription());
+        assertSame(((DeadlineTask) deadline).getBy(), event.getFrom());
+        assertSame(event.getFrom(), event.getTo());
+    }
+
+    @Test
+    @DisplayName("hit rate should count lookups that found a pooled instance")
+    void getHitRate_repeatedLookups_countsHits() {
+        StringPool.resetStats();
+        StringPool.intern(new String("hit rate check"));
+        StringPool.intern(new String("hit rate check"));
+        StringPool.intern(new String("hit rate check"));
+        StringPool.intern(new String("hit rate check"));
+        assertEquals(4, StringPool.getLookupCount());
+        assertTrue(StringPool.getHitRate() >= 0.75);
+    }
+}